@@ -0,0 +1,16 @@
+package com.ca.capicturebackend.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 允许从从库读取（统计分析、列表等可以接受少量延迟的接口）
+ * <p>
+ * 当前用户刚写入过数据时仍然读主库，保证读到自己的修改
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadReplica {
+}
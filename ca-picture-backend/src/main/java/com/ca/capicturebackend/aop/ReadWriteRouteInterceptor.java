@@ -0,0 +1,102 @@
+package com.ca.capicturebackend.aop;
+
+import com.ca.capicturebackend.annotation.ReadReplica;
+import org.apache.shardingsphere.infra.hint.HintManager;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.util.function.Supplier;
+
+/**
+ * 读写分离路由
+ * <p>
+ * 接口默认只访问主库；标注了 {@link ReadReplica} 的接口读从库。
+ * 用户写入（POST 接口）后的一段时间内，该用户的所有请求都读主库，避免从库延迟导致读不到自己刚上传、编辑的内容。
+ * 定时任务等非接口调用不经过这里，由 ShardingSphere 默认路由（事务外的查询读从库）。
+ * 写入缓存的数据会被长时间使用，需要通过 {@link #readPrimary(Supplier)} 从主库读取。
+ */
+@Aspect
+@Component
+public class ReadWriteRouteInterceptor {
+
+    // 写入后读主库的时长，需大于从库的复制延迟
+    private static final long READ_YOUR_WRITES_MILLIS = 10 * 1000L;
+
+    private static final String LAST_WRITE_TIME_ATTRIBUTE = "lastWriteTime";
+
+    /**
+     * 执行拦截
+     *
+     * @param joinPoint
+     * @return
+     */
+    @Around("@within(org.springframework.web.bind.annotation.RestController)")
+    public Object doInterceptor(ProceedingJoinPoint joinPoint) throws Throwable {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (!(requestAttributes instanceof ServletRequestAttributes)) {
+            return joinPoint.proceed();
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) requestAttributes).getRequest();
+        boolean readReplica = ((MethodSignature) joinPoint.getSignature()).getMethod().isAnnotationPresent(ReadReplica.class);
+        // 允许读从库，且用户最近没有写入
+        if (readReplica && !hasRecentWrite(request)) {
+            return joinPoint.proceed();
+        }
+        try (HintManager hintManager = HintManager.getInstance()) {
+            hintManager.setWriteRouteOnly();
+            Object result = joinPoint.proceed();
+            if (!readReplica && "POST".equalsIgnoreCase(request.getMethod())) {
+                markWrite(request);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 在主库上执行查询（如填充缓存），已经在主库路由中时直接执行
+     * <p>
+     * HintManager 每个线程只能有一个实例，这里创建的实例只在没有路由时存在，不会与拦截器中的冲突
+     */
+    public static <T> T readPrimary(Supplier<T> query) {
+        if (HintManager.isInstantiated()) {
+            // 只有本类创建 HintManager，且都是只读主库
+            return query.get();
+        }
+        try (HintManager hintManager = HintManager.getInstance()) {
+            hintManager.setWriteRouteOnly();
+            return query.get();
+        }
+    }
+
+    private boolean hasRecentWrite(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return false;
+        }
+        Long lastWriteTime = (Long) session.getAttribute(LAST_WRITE_TIME_ATTRIBUTE);
+        return lastWriteTime != null && System.currentTimeMillis() - lastWriteTime < READ_YOUR_WRITES_MILLIS;
+    }
+
+    /**
+     * 记录用户的写入时间（只记录已登录的用户，未登录用户不会写入数据）
+     */
+    private void markWrite(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return;
+        }
+        try {
+            session.setAttribute(LAST_WRITE_TIME_ATTRIBUTE, System.currentTimeMillis());
+        } catch (IllegalStateException e) {
+            // 会话已失效（如退出登录）
+        }
+    }
+}
@@ -1,10 +1,7 @@
 package com.ca.capicturebackend.api.aliyunai;
 
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.ContentType;
 import cn.hutool.http.Header;
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.ca.capicturebackend.api.aliyunai.model.CreateOutPaintingTaskRequest;
@@ -12,10 +9,16 @@ import com.ca.capicturebackend.api.aliyunai.model.CreateOutPaintingTaskResponse;
 import com.ca.capicturebackend.api.aliyunai.model.GetOutPaintingTaskResponse;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
+import com.ca.capicturebackend.manager.http.HttpResult;
+import com.ca.capicturebackend.manager.http.OutboundHttpClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+
 @Slf4j
 @Component
 public class AliYunAiApi {
@@ -23,11 +26,18 @@ public class AliYunAiApi {
     @Value("${aliYunAi.apiKey}")
     private String apiKey;
 
+    // 接口基础地址，可指向本地桩服务进行联调测试
+    @Value("${aliYunAi.baseUrl:https://dashscope.aliyuncs.com}")
+    private String baseUrl;
+
+    @Resource
+    private OutboundHttpClient outboundHttpClient;
+
     // 创建任务地址
-    public static final String CREATE_OUT_PAINTING_TASK_URL = "https://dashscope.aliyuncs.com/api/v1/services/aigc/image2image/out-painting";
+    public static final String CREATE_OUT_PAINTING_TASK_PATH = "/api/v1/services/aigc/image2image/out-painting";
 
     // 查询任务状态
-    public static final String GET_OUT_PAINTING_TASK_URL = "https://dashscope.aliyuncs.com/api/v1/tasks/%s";
+    public static final String GET_OUT_PAINTING_TASK_PATH = "/api/v1/tasks/%s";
 
     /**
      * 创建任务
@@ -40,33 +50,31 @@ public class AliYunAiApi {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "扩图参数为空");
         }
         // 发送请求
-        HttpRequest httpRequest = HttpRequest.post(CREATE_OUT_PAINTING_TASK_URL)
-                .header(Header.AUTHORIZATION, "Bearer " + apiKey)
-                // 必须开启异步处理，设置为enable。
-                .header("X-DashScope-Async", "enable")
-                .header(Header.CONTENT_TYPE, ContentType.JSON.getValue())
-                .body(JSONUtil.toJsonStr(createOutPaintingTaskRequest));
-        try (HttpResponse httpResponse = httpRequest.execute()) {
-            if (!httpResponse.isOk()) {
-                log.error("请求异常：{}", httpResponse.body());
-                String errorMessage = "";
-                try {
-                    JSONObject jsonObject = JSONUtil.parseObj(httpResponse.body());
-                    errorMessage = jsonObject.getStr("message") == null ? "" : "：" + jsonObject.getStr("message");
-                } catch (Exception e) {
-                    log.error(String.valueOf(e));
-                }
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "AI 扩图失败" + errorMessage);
+        Map<String, String> headers = new HashMap<>();
+        headers.put(Header.AUTHORIZATION.getValue(), "Bearer " + apiKey);
+        // 必须开启异步处理，设置为enable。
+        headers.put("X-DashScope-Async", "enable");
+        HttpResult httpResult = outboundHttpClient.postJson(baseUrl + CREATE_OUT_PAINTING_TASK_PATH, headers,
+                JSONUtil.toJsonStr(createOutPaintingTaskRequest));
+        if (!httpResult.isOk()) {
+            log.error("请求异常：{}", httpResult.getBody());
+            String errorMessage = "";
+            try {
+                JSONObject jsonObject = JSONUtil.parseObj(httpResult.getBody());
+                errorMessage = jsonObject.getStr("message") == null ? "" : "：" + jsonObject.getStr("message");
+            } catch (Exception e) {
+                log.error(String.valueOf(e));
             }
-            CreateOutPaintingTaskResponse response = JSONUtil.toBean(httpResponse.body(), CreateOutPaintingTaskResponse.class);
-            String errorCode = response.getCode();
-            if (StrUtil.isNotBlank(errorCode)) {
-                String errorMessage = response.getMessage();
-                log.error("AI 扩图失败，errorCode:{}, errorMessage:{}", errorCode, errorMessage);
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "AI 扩图接口响应异常");
-            }
-            return response;
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "AI 扩图失败" + errorMessage);
+        }
+        CreateOutPaintingTaskResponse response = JSONUtil.toBean(httpResult.getBody(), CreateOutPaintingTaskResponse.class);
+        String errorCode = response.getCode();
+        if (StrUtil.isNotBlank(errorCode)) {
+            String errorMessage = response.getMessage();
+            log.error("AI 扩图失败，errorCode:{}, errorMessage:{}", errorCode, errorMessage);
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "AI 扩图接口响应异常");
         }
+        return response;
     }
 
     /**
@@ -79,13 +87,12 @@ public class AliYunAiApi {
         if (StrUtil.isBlank(taskId)) {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "任务 id 不能为空");
         }
-        try (HttpResponse httpResponse = HttpRequest.get(String.format(GET_OUT_PAINTING_TASK_URL, taskId))
-                .header(Header.AUTHORIZATION, "Bearer " + apiKey)
-                .execute()) {
-            if (!httpResponse.isOk()) {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取任务失败");
-            }
-            return JSONUtil.toBean(httpResponse.body(), GetOutPaintingTaskResponse.class);
+        Map<String, String> headers = new HashMap<>();
+        headers.put(Header.AUTHORIZATION.getValue(), "Bearer " + apiKey);
+        HttpResult httpResult = outboundHttpClient.get(baseUrl + String.format(GET_OUT_PAINTING_TASK_PATH, taskId), headers);
+        if (!httpResult.isOk()) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取任务失败");
         }
+        return JSONUtil.toBean(httpResult.getBody(), GetOutPaintingTaskResponse.class);
     }
 }
@@ -5,29 +5,34 @@ import com.ca.capicturebackend.api.imagesearch.sub.GetImageFirstUrlApi;
 import com.ca.capicturebackend.api.imagesearch.sub.GetImageListApi;
 import com.ca.capicturebackend.api.imagesearch.sub.GetImagePageUrlApi;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
 import java.util.List;
 
 @Slf4j
+@Component
 public class ImageSearchApiFacade {
 
+    @Resource
+    private GetImagePageUrlApi getImagePageUrlApi;
+
+    @Resource
+    private GetImageFirstUrlApi getImageFirstUrlApi;
+
+    @Resource
+    private GetImageListApi getImageListApi;
+
     /**
      * 搜索图片
      *
      * @param imageUrl
      * @return
      */
-    public static List<ImageSearchResult> searchImage(String imageUrl) {
-        String imagePageUrl = GetImagePageUrlApi.getImagePageUrl(imageUrl);
-        String imageFirstUrl = GetImageFirstUrlApi.getImageFirstUrl(imagePageUrl);
-        List<ImageSearchResult> imageList = GetImageListApi.getImageList(imageFirstUrl);
+    public List<ImageSearchResult> searchImage(String imageUrl) {
+        String imagePageUrl = getImagePageUrlApi.getImagePageUrl(imageUrl);
+        String imageFirstUrl = getImageFirstUrlApi.getImageFirstUrl(imagePageUrl);
+        List<ImageSearchResult> imageList = getImageListApi.getImageList(imageFirstUrl);
         return imageList;
     }
-
-    public static void main(String[] args) {
-        // 测试以图搜图功能
-        String imageUrl = "https://www.codefather.cn/logo.png";
-        List<ImageSearchResult> resultList = searchImage(imageUrl);
-        System.out.println("结果列表" + resultList);
-    }
 }
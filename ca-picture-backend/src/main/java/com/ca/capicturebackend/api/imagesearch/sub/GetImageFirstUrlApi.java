@@ -2,30 +2,41 @@ package com.ca.capicturebackend.api.imagesearch.sub;
 
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
+import com.ca.capicturebackend.manager.http.HttpResult;
+import com.ca.capicturebackend.manager.http.OutboundHttpClient;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Slf4j
+@Component
 public class GetImageFirstUrlApi {
 
+    @Resource
+    private OutboundHttpClient outboundHttpClient;
+
     /**
      * 获取图片列表页面地址
      *
      * @param url
      * @return
      */
-    public static String getImageFirstUrl(String url) {
+    public String getImageFirstUrl(String url) {
         try {
-            // 使用 Jsoup 获取 HTML 内容
-            Document document = Jsoup.connect(url)
-                    .timeout(5000)
-                    .get();
+            // 获取 HTML 内容，交给 Jsoup 解析
+            HttpResult response = outboundHttpClient.get(url, null);
+            if (!response.isOk()) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "接口调用失败");
+            }
+            Document document = Jsoup.parse(response.getBody(), url);
 
             // 获取所有 <script> 标签
             Elements scriptElements = document.getElementsByTag("script");
@@ -52,11 +63,4 @@ public class GetImageFirstUrlApi {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "搜索失败");
         }
     }
-
-    public static void main(String[] args) {
-        // 请求目标 URL
-        String url = "https://graph.baidu.com/s?card_key=&entrance=GENERAL&extUiData[isLogoShow]=1&f=all&isLogoShow=1&session_id=11740712792581497239&sign=126b8e97cd54acd88139901741862191&tpl_from=pc";
-        String imageFirstUrl = getImageFirstUrl(url);
-        System.out.println("搜索成功，结果 URL：" + imageFirstUrl);
-    }
 }
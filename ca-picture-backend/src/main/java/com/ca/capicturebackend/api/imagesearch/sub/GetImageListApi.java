@@ -1,34 +1,41 @@
 package com.ca.capicturebackend.api.imagesearch.sub;
 
-import cn.hutool.http.HttpResponse;
-import cn.hutool.http.HttpUtil;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.ca.capicturebackend.api.imagesearch.model.ImageSearchResult;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
+import com.ca.capicturebackend.manager.http.HttpResult;
+import com.ca.capicturebackend.manager.http.OutboundHttpClient;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
 
 import java.util.List;
 
 @Slf4j
+@Component
 public class GetImageListApi {
 
+    @Resource
+    private OutboundHttpClient outboundHttpClient;
+
     /**
      * 获取图片列表
      *
      * @param url
      * @return
      */
-    public static List<ImageSearchResult> getImageList(String url) {
+    public List<ImageSearchResult> getImageList(String url) {
         try {
             // 发起GET请求
-            HttpResponse response = HttpUtil.createGet(url).execute();
+            HttpResult response = outboundHttpClient.get(url, null);
 
             // 获取响应内容
             int statusCode = response.getStatus();
-            String body = response.body();
+            String body = response.getBody();
 
             // 处理响应
             if (statusCode == 200) {
@@ -48,7 +55,7 @@ public class GetImageListApi {
      *
      * @param responseBody 接口返回的JSON字符串
      */
-    private static List<ImageSearchResult> processResponse(String responseBody) {
+    private List<ImageSearchResult> processResponse(String responseBody) {
         // 解析响应对象
         JSONObject jsonObject = new JSONObject(responseBody);
         if (!jsonObject.containsKey("data")) {
@@ -61,10 +68,4 @@ public class GetImageListApi {
         JSONArray list = data.getJSONArray("list");
         return JSONUtil.toList(list, ImageSearchResult.class);
     }
-
-    public static void main(String[] args) {
-        String url = "https://graph.baidu.com/ajax/pcsimi?carousel=503&entrance=GENERAL&extUiData%5BisLogoShow%5D=1&inspire=general_pc&limit=30&next=2&render_type=card&session_id=11740712792581497239&sign=126b8e97cd54acd88139901741862191&tk=70489&tpl_from=pc";
-        List<ImageSearchResult> imageList = getImageList(url);
-        System.out.println("搜索成功" + imageList);
-    }
 }
@@ -2,28 +2,34 @@ package com.ca.capicturebackend.api.imagesearch.sub;
 
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.URLUtil;
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
 import cn.hutool.http.HttpStatus;
 import cn.hutool.json.JSONUtil;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
+import com.ca.capicturebackend.manager.http.HttpResult;
+import com.ca.capicturebackend.manager.http.OutboundHttpClient;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
 @Slf4j
+@Component
 public class GetImagePageUrlApi {
 
+    @Resource
+    private OutboundHttpClient outboundHttpClient;
+
     /**
      * 获取图片页面地址
      *
      * @param imageUrl
      * @return
      */
-    public static String getImagePageUrl(String imageUrl) {
+    public String getImagePageUrl(String imageUrl) {
         // 1. 准备请求参数
         Map<String, Object> formData = new HashMap<>();
         formData.put("image", imageUrl);
@@ -37,17 +43,15 @@ public class GetImagePageUrlApi {
 
         try {
             // 2. 发送 POST 请求到百度接口
-            HttpResponse response = HttpRequest.post(url)
-                    .header("acs-token", RandomUtil.randomString(1))
-                    .form(formData)
-                    .timeout(5000)
-                    .execute();
+            Map<String, String> headers = new HashMap<>();
+            headers.put("acs-token", RandomUtil.randomString(1));
+            HttpResult response = outboundHttpClient.postForm(url, headers, formData);
             // 判断响应状态
             if (HttpStatus.HTTP_OK != response.getStatus()) {
                 throw new BusinessException(ErrorCode.OPERATION_ERROR, "接口调用失败");
             }
             // 解析响应
-            String responseBody = response.body();
+            String responseBody = response.getBody();
             Map<String, Object> result = JSONUtil.toBean(responseBody, Map.class);
 
             // 3. 处理响应结果
@@ -68,11 +72,4 @@ public class GetImagePageUrlApi {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "搜索失败");
         }
     }
-
-    public static void main(String[] args) {
-        // 测试以图搜图功能
-        String imageUrl = "https://www.codefather.cn/logo.png";
-        String result = getImagePageUrl(imageUrl);
-        System.out.println("搜索成功，结果 URL：" + result);
-    }
 }
@@ -1,16 +1,30 @@
 package com.ca.capicturebackend.config;
 
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.http.ContentType;
 import cn.hutool.http.Header;
+import com.ca.capicturebackend.manager.auth.annotation.SaSpaceCheckPermission;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
+import javax.annotation.Resource;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 请求包装过滤器
+ * <p>
+ * 只有标注了 {@link SaSpaceCheckPermission} 的接口才需要在拦截器中读取请求体做空间鉴权，
+ * 仅对这些接口的 JSON 请求包一层，其余请求不做额外的缓冲
  *
  * @author pine
  */
@@ -18,13 +32,21 @@ import java.io.IOException;
 @Component
 public class HttpRequestWrapperFilter implements Filter {
 
+    @Lazy
+    @Resource(name = "requestMappingHandlerMapping")
+    private RequestMappingHandlerMapping requestMappingHandlerMapping;
+
+    /**
+     * 需要空间鉴权的接口路径（不含 context-path），首次请求时初始化
+     */
+    private volatile Set<String> spaceAuthPaths;
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws ServletException, IOException {
         if (request instanceof HttpServletRequest) {
             HttpServletRequest servletRequest = (HttpServletRequest) request;
             String contentType = servletRequest.getHeader(Header.CONTENT_TYPE.getValue());
-            if (ContentType.JSON.getValue().equals(contentType)) {
-                // 可以再细粒度一些，只有需要进行空间权限校验的接口才需要包一层
+            if (StrUtil.startWithIgnoreCase(contentType, ContentType.JSON.getValue()) && isSpaceAuthRequest(servletRequest)) {
                 chain.doFilter(new RequestWrapper(servletRequest), response);
             } else {
                 chain.doFilter(request, response);
@@ -32,4 +54,33 @@ public class HttpRequestWrapperFilter implements Filter {
         }
     }
 
+    /**
+     * 是否为需要空间鉴权的接口
+     */
+    private boolean isSpaceAuthRequest(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return getSpaceAuthPaths().contains(path);
+    }
+
+    private Set<String> getSpaceAuthPaths() {
+        Set<String> paths = spaceAuthPaths;
+        if (paths == null) {
+            synchronized (this) {
+                paths = spaceAuthPaths;
+                if (paths == null) {
+                    paths = new HashSet<>();
+                    for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : requestMappingHandlerMapping.getHandlerMethods().entrySet()) {
+                        HandlerMethod handlerMethod = entry.getValue();
+                        if (handlerMethod.hasMethodAnnotation(SaSpaceCheckPermission.class)
+                                || AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), SaSpaceCheckPermission.class)) {
+                            paths.addAll(entry.getKey().getPatternValues());
+                        }
+                    }
+                    spaceAuthPaths = paths;
+                }
+            }
+        }
+        return paths;
+    }
+
 }
@@ -1,7 +1,10 @@
 package com.ca.capicturebackend.config;
 
+import cn.hutool.core.thread.ThreadFactoryBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -19,4 +22,18 @@ public class ThreadPoolConfig {
                 new ThreadPoolExecutor.CallerRunsPolicy() // 拒绝策略
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * 共享的定时调度线程池（外部任务轮询、延迟任务等），同时作为 @Scheduled 的调度器
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService scheduledExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                4,
+                ThreadFactoryBuilder.create().setNamePrefix("sharedScheduler-").build()
+        );
+        // 取消的任务立即从队列移除，避免堆积
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -1,15 +1,24 @@
 package com.ca.capicturebackend.controller;
 
+import com.ca.capicturebackend.annotation.AuthCheck;
 import com.ca.capicturebackend.common.BaseResponse;
 import com.ca.capicturebackend.common.ResultUtils;
+import com.ca.capicturebackend.constant.UserConstant;
+import com.ca.capicturebackend.manager.CacheManager;
+import com.ca.capicturebackend.model.vo.CacheHotKeyStatsVO;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.annotation.Resource;
+
 @RestController
 @RequestMapping("/")
 public class MainController {
 
+    @Resource
+    private CacheManager cacheManager;
+
     /**
      * 健康检查
      */
@@ -17,4 +26,13 @@ public class MainController {
     public BaseResponse<String> health() {
         return ResultUtils.success("ok");
     }
+
+    /**
+     * 缓存热点 key 统计（仅管理员可用，当前实例的统计）
+     */
+    @GetMapping("/cache/hotkeys")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<CacheHotKeyStatsVO> getCacheHotKeyStats() {
+        return ResultUtils.success(cacheManager.getHotKeyStats());
+    }
 }
@@ -5,7 +5,7 @@ import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.ca.capicturebackend.annotation.AuthCheck;
-import com.ca.capicturebackend.api.aliyunai.AliYunAiApi;
+import com.ca.capicturebackend.annotation.ReadReplica;
 import com.ca.capicturebackend.api.aliyunai.model.CreateOutPaintingTaskResponse;
 import com.ca.capicturebackend.api.aliyunai.model.GetOutPaintingTaskResponse;
 import com.ca.capicturebackend.api.imagesearch.ImageSearchApiFacade;
@@ -17,14 +17,20 @@ import com.ca.capicturebackend.constant.UserConstant;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.exception.ThrowUtils;
+import com.ca.capicturebackend.manager.OutPaintingTaskManager;
+import com.ca.capicturebackend.manager.PictureCountManager;
+import com.ca.capicturebackend.manager.PictureQueryStatsManager;
 import com.ca.capicturebackend.manager.auth.StpKit;
 import com.ca.capicturebackend.manager.auth.annotation.SaSpaceCheckPermission;
 import com.ca.capicturebackend.manager.auth.model.SpaceUserPermissionConstant;
+import com.ca.capicturebackend.manager.sharding.PictureMigrationFenceManager;
 import com.ca.capicturebackend.model.dto.picture.*;
 import com.ca.capicturebackend.model.entity.Picture;
 import com.ca.capicturebackend.model.entity.Space;
 import com.ca.capicturebackend.model.entity.User;
 import com.ca.capicturebackend.model.enums.PictureReviewStatusEnum;
+import com.ca.capicturebackend.model.enums.PageCountModeEnum;
+import com.ca.capicturebackend.model.vo.PictureQueryStatsVO;
 import com.ca.capicturebackend.model.vo.PictureTagCategory;
 import com.ca.capicturebackend.model.vo.PictureVO;
 import com.ca.capicturebackend.service.PictureService;
@@ -54,7 +60,19 @@ public class PictureController {
     private SpaceService spaceService;
 
     @Resource
-    private AliYunAiApi aliYunAiApi;
+    private OutPaintingTaskManager outPaintingTaskManager;
+
+    @Resource
+    private PictureCountManager pictureCountManager;
+
+    @Resource
+    private PictureQueryStatsManager pictureQueryStatsManager;
+
+    @Resource
+    private ImageSearchApiFacade imageSearchApiFacade;
+
+    @Resource
+    private PictureMigrationFenceManager pictureMigrationFenceManager;
 
     /**
      * 上传图片（可重新上传）
@@ -132,8 +150,10 @@ public class PictureController {
         User loginUser = userService.getLoginUser(request);
         pictureService.fillReviewParams(picture, loginUser);
         // 操作数据库
+        pictureMigrationFenceManager.checkWritable(oldPicture.getSpaceId());
         boolean result = pictureService.updateById(picture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        pictureCountManager.invalidate(oldPicture.getSpaceId());
         return ResultUtils.success(true);
     }
 
@@ -207,12 +227,10 @@ public class PictureController {
      */
     @PostMapping("/list/page")
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    @ReadReplica
     public BaseResponse<Page<Picture>> listPictureByPage(@RequestBody PictureQueryRequest pictureQueryRequest) {
-        long current = pictureQueryRequest.getCurrent();
-        long size = pictureQueryRequest.getPageSize();
-        // 查询数据库
-        Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                pictureService.getQueryWrapper(pictureQueryRequest));
+        // 查询数据库（总数使用缓存）
+        Page<Picture> picturePage = pictureService.listPictureByPage(pictureQueryRequest, PageCountModeEnum.CACHED);
         return ResultUtils.success(picturePage);
     }
 
@@ -221,9 +239,9 @@ public class PictureController {
      */
     @Deprecated
     @PostMapping("/list/page/vo")
+    @ReadReplica
     public BaseResponse<Page<PictureVO>> listPictureVOByPage(@RequestBody PictureQueryRequest pictureQueryRequest,
                                                              HttpServletRequest request) {
-        long current = pictureQueryRequest.getCurrent();
         long size = pictureQueryRequest.getPageSize();
         // 限制爬虫
         ThrowUtils.throwIf(size > 20, ErrorCode.PARAMS_ERROR);
@@ -246,9 +264,8 @@ public class PictureController {
 //                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
 //            }
         }
-        // 查询数据库
-        Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                pictureService.getQueryWrapper(pictureQueryRequest));
+        // 查询数据库（空间详情页展示图片总数，总数使用缓存的精确值）
+        Page<Picture> picturePage = pictureService.listPictureByPage(pictureQueryRequest, PageCountModeEnum.CACHED);
         // 获取封装类
         return ResultUtils.success(pictureService.getPictureVOPage(picturePage, request));
     }
@@ -257,6 +274,7 @@ public class PictureController {
      * 分页获取图片列表（封装类，有缓存）
      */
     @PostMapping("/list/page/vo/cache")
+    @ReadReplica
     public BaseResponse<Page<PictureVO>> listPictureVOByPageWithCache(@RequestBody PictureQueryRequest pictureQueryRequest,
                                                                       HttpServletRequest request) {
         // 限制爬虫
@@ -281,11 +299,21 @@ public class PictureController {
 //                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
 //            }
         }
-        // 查询缓存和数据库
-        Page<PictureVO> result = pictureService.getPictureVOPageWithCache(pictureQueryRequest, request);
+        // 查询缓存和数据库（主页只用于分页，没有筛选条件时使用估算的总数）
+        Page<PictureVO> result = pictureService.getPictureVOPageWithCache(pictureQueryRequest, PageCountModeEnum.ESTIMATED, request);
         return ResultUtils.success(result);
     }
 
+    /**
+     * 获取请求最多的分页查询及其缓存命中率（仅管理员可用，当前实例的统计）
+     */
+    @GetMapping("/list/page/vo/cache/stats")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<List<PictureQueryStatsVO>> listPictureQueryStats(@RequestParam(defaultValue = "20") int topN) {
+        ThrowUtils.throwIf(topN <= 0 || topN > 1000, ErrorCode.PARAMS_ERROR);
+        return ResultUtils.success(pictureQueryStatsManager.getTopQueries(topN));
+    }
+
     /**
      * 图片审核
      *
@@ -333,7 +361,7 @@ public class PictureController {
         ThrowUtils.throwIf(pictureId == null || pictureId <= 0, ErrorCode.PARAMS_ERROR);
         Picture oldPicture = pictureService.getById(pictureId);
         ThrowUtils.throwIf(oldPicture == null, ErrorCode.NOT_FOUND_ERROR);
-        List<ImageSearchResult> resultList = ImageSearchApiFacade.searchImage(oldPicture.getThumbnailUrl());
+        List<ImageSearchResult> resultList = imageSearchApiFacade.searchImage(oldPicture.getThumbnailUrl());
         return ResultUtils.success(resultList);
     }
 
@@ -346,6 +374,7 @@ public class PictureController {
      */
     @PostMapping("/search/color")
     @SaSpaceCheckPermission(value = SpaceUserPermissionConstant.PICTURE_VIEW)
+    @ReadReplica
     public BaseResponse<List<PictureVO>> searchPictureByColor(@RequestBody SearchPictureByColorRequest searchPictureByColorRequest, HttpServletRequest request) {
         ThrowUtils.throwIf(searchPictureByColorRequest == null, ErrorCode.PARAMS_ERROR);
         String picColor = searchPictureByColorRequest.getPicColor();
@@ -415,7 +444,8 @@ public class PictureController {
     @GetMapping("/out_painting/get_task")
     public BaseResponse<GetOutPaintingTaskResponse> getPictureOutPaintingTask(String taskId) {
         ThrowUtils.throwIf(StrUtil.isBlank(taskId), ErrorCode.PARAMS_ERROR);
-        GetOutPaintingTaskResponse task = aliYunAiApi.getOutPaintingTask(taskId);
+        // 任务状态由服务端轮询并缓存，优先读取缓存
+        GetOutPaintingTaskResponse task = outPaintingTaskManager.getTask(taskId);
         return ResultUtils.success(task);
     }
 
@@ -4,6 +4,7 @@ import cn.hutool.core.bean.BeanUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.ca.capicturebackend.annotation.AuthCheck;
+import com.ca.capicturebackend.annotation.ReadReplica;
 import com.ca.capicturebackend.common.BaseResponse;
 import com.ca.capicturebackend.common.DeleteRequest;
 import com.ca.capicturebackend.common.ResultUtils;
@@ -12,6 +13,7 @@ import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.exception.ThrowUtils;
 import com.ca.capicturebackend.manager.CosManager;
+import com.ca.capicturebackend.manager.SpaceUploadStatManager;
 import com.ca.capicturebackend.model.dto.picture.ToDeletePictureDto;
 import com.ca.capicturebackend.model.dto.space.*;
 import com.ca.capicturebackend.model.dto.space.analyze.*;
@@ -48,6 +50,9 @@ public class SpaceAnalyzeController {
     @Resource
     private SpaceAnalyzeService spaceAnalyzeService;
 
+    @Resource
+    private SpaceUploadStatManager spaceUploadStatManager;
+
     /**
      * 获取空间使用状态
      *
@@ -56,6 +61,7 @@ public class SpaceAnalyzeController {
      * @return
      */
     @PostMapping("/usage")
+    @ReadReplica
     public BaseResponse<SpaceUsageAnalyzeResponse> getSpaceUsageAnalyze(
             @RequestBody SpaceUsageAnalyzeRequest spaceUsageAnalyzeRequest,
             HttpServletRequest request
@@ -73,6 +79,7 @@ public class SpaceAnalyzeController {
      * @return
      */
     @PostMapping("/category")
+    @ReadReplica
     public BaseResponse<List<SpaceCategoryAnalyzeResponse>> getSpaceCategoryAnalyze(@RequestBody SpaceCategoryAnalyzeRequest spaceCategoryAnalyzeRequest, HttpServletRequest request) {
         ThrowUtils.throwIf(spaceCategoryAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
         User loginUser = userService.getLoginUser(request);
@@ -88,6 +95,7 @@ public class SpaceAnalyzeController {
      * @return
      */
     @PostMapping("/tag")
+    @ReadReplica
     public BaseResponse<List<SpaceTagAnalyzeResponse>> getSpaceTagAnalyze(@RequestBody SpaceTagAnalyzeRequest spaceTagAnalyzeRequest, HttpServletRequest request) {
         ThrowUtils.throwIf(spaceTagAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
         User loginUser = userService.getLoginUser(request);
@@ -103,6 +111,7 @@ public class SpaceAnalyzeController {
      * @return
      */
     @PostMapping("/size")
+    @ReadReplica
     public BaseResponse<List<SpaceSizeAnalyzeResponse>> getSpaceSizeAnalyze(@RequestBody SpaceSizeAnalyzeRequest spaceSizeAnalyzeRequest, HttpServletRequest request) {
         ThrowUtils.throwIf(spaceSizeAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
         User loginUser = userService.getLoginUser(request);
@@ -118,6 +127,7 @@ public class SpaceAnalyzeController {
      * @return
      */
     @PostMapping("/user")
+    @ReadReplica
     public BaseResponse<List<SpaceUserAnalyzeResponse>> getSpaceUserAnalyze(@RequestBody SpaceUserAnalyzeRequest spaceUserAnalyzeRequest, HttpServletRequest request) {
         ThrowUtils.throwIf(spaceUserAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
         User loginUser = userService.getLoginUser(request);
@@ -133,6 +143,7 @@ public class SpaceAnalyzeController {
      * @return
      */
     @PostMapping("/rank")
+    @ReadReplica
     public BaseResponse<List<Space>> getSpaceRankAnalyze(@RequestBody SpaceRankAnalyzeRequest spaceRankAnalyzeRequest, HttpServletRequest request) {
         ThrowUtils.throwIf(spaceRankAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
         User loginUser = userService.getLoginUser(request);
@@ -140,4 +151,14 @@ public class SpaceAnalyzeController {
         return ResultUtils.success(resultList);
     }
 
+    /**
+     * 回填上传统计的历史数据（仅管理员可用，后台执行）
+     */
+    @PostMapping("/user/backfill")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> backfillSpaceUserAnalyze() {
+        spaceUploadStatManager.submitBackfill();
+        return ResultUtils.success(true);
+    }
+
 }
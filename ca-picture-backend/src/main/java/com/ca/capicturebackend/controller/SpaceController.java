@@ -1,9 +1,9 @@
 package com.ca.capicturebackend.controller;
 
 import cn.hutool.core.bean.BeanUtil;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.ca.capicturebackend.annotation.AuthCheck;
+import com.ca.capicturebackend.annotation.ReadReplica;
 import com.ca.capicturebackend.common.BaseResponse;
 import com.ca.capicturebackend.common.DeleteRequest;
 import com.ca.capicturebackend.common.ResultUtils;
@@ -11,16 +11,14 @@ import com.ca.capicturebackend.constant.UserConstant;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.exception.ThrowUtils;
-import com.ca.capicturebackend.manager.CosManager;
+import com.ca.capicturebackend.manager.SpacePurgeManager;
 import com.ca.capicturebackend.manager.auth.SpaceUserAuthManager;
-import com.ca.capicturebackend.model.dto.picture.ToDeletePictureDto;
+import com.ca.capicturebackend.manager.sharding.DynamicShardingManager;
 import com.ca.capicturebackend.model.dto.space.*;
-import com.ca.capicturebackend.model.entity.Picture;
 import com.ca.capicturebackend.model.entity.Space;
 import com.ca.capicturebackend.model.entity.User;
 import com.ca.capicturebackend.model.enums.SpaceLevelEnum;
 import com.ca.capicturebackend.model.vo.SpaceVO;
-import com.ca.capicturebackend.service.PictureService;
 import com.ca.capicturebackend.service.SpaceService;
 import com.ca.capicturebackend.service.UserService;
 import lombok.extern.slf4j.Slf4j;
@@ -47,13 +45,14 @@ public class SpaceController {
     private UserService userService;
 
     @Resource
-    private PictureService pictureService;
+    private SpaceUserAuthManager spaceUserAuthManager;
 
     @Resource
-    private CosManager cosManager;
+    private SpacePurgeManager spacePurgeManager;
 
-    @Resource
-    private SpaceUserAuthManager spaceUserAuthManager;
+    // 数据库分表（可选）
+    @Autowired(required = false)
+    private DynamicShardingManager dynamicShardingManager;
 
     /**
      * 创建空间
@@ -87,17 +86,8 @@ public class SpaceController {
         User loginUser = userService.getLoginUser(request);
         Long spaceId = deleteRequest.getId();
         spaceService.deleteSpace(spaceId, loginUser);
-        // 清理图片表中的数据
-        QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("spaceId", spaceId);
-        List<Picture> toDeletePicture = pictureService.list(queryWrapper);
-        pictureService.removeByIds(toDeletePicture);
-        // 删除对象存储中对应空间的图片
-        List<ToDeletePictureDto> toDeletePictureDtoList = toDeletePicture.stream()
-                .map(ToDeletePictureDto::pictureToDeletePicture)
-                .collect(Collectors.toList());
-        List<String> toDeleteUrlList = pictureService.pictureUrlToKey(toDeletePictureDtoList);
-        cosManager.deleteObjectByBatch(toDeleteUrlList);
+        // 后台分批清理空间内的图片和对象存储中的文件
+        spacePurgeManager.submit(spaceId);
         return ResultUtils.success(true);
     }
 
@@ -129,9 +119,24 @@ public class SpaceController {
         // 操作数据库
         boolean result = spaceService.updateById(space);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 升级为旗舰版时，后台把已有图片迁移到空间分表
+        if (dynamicShardingManager != null && space.getSpaceLevel() != null
+                && !space.getSpaceLevel().equals(oldSpace.getSpaceLevel())) {
+            dynamicShardingManager.upgradeSpacePictureTable(spaceService.getById(id));
+        }
         return ResultUtils.success(true);
     }
 
+    /**
+     * 把非旗舰版空间的图片分散到分桶表（仅管理员可用，后台执行）
+     */
+    @PostMapping("/shard/rebalance")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> rebalancePictureShards() {
+        ThrowUtils.throwIf(dynamicShardingManager == null, ErrorCode.OPERATION_ERROR, "未开启动态分表");
+        return ResultUtils.success(dynamicShardingManager.rebalanceToBuckets());
+    }
+
     /**
      * 根据 id 获取空间（仅管理员可用）
      */
@@ -167,6 +172,7 @@ public class SpaceController {
      */
     @PostMapping("/list/page")
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    @ReadReplica
     public BaseResponse<Page<Space>> listSpaceByPage(@RequestBody SpaceQueryRequest spaceQueryRequest) {
         long current = spaceQueryRequest.getCurrent();
         long size = spaceQueryRequest.getPageSize();
@@ -180,6 +186,7 @@ public class SpaceController {
      * 分页获取空间列表（封装类）
      */
     @PostMapping("/list/page/vo")
+    @ReadReplica
     public BaseResponse<Page<SpaceVO>> listSpaceVOByPage(@RequestBody SpaceQueryRequest spaceQueryRequest,
                                                              HttpServletRequest request) {
         long current = spaceQueryRequest.getCurrent();
@@ -7,6 +7,7 @@ import com.ca.capicturebackend.common.ResultUtils;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.exception.ThrowUtils;
+import com.ca.capicturebackend.manager.auth.SpaceUserAuthCache;
 import com.ca.capicturebackend.manager.auth.annotation.SaSpaceCheckPermission;
 import com.ca.capicturebackend.manager.auth.model.SpaceUserPermissionConstant;
 import com.ca.capicturebackend.model.dto.spaceuser.SpaceUserAddRequest;
@@ -39,6 +40,9 @@ public class SpaceUserController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private SpaceUserAuthCache spaceUserAuthCache;
+
     /**
      * 添加成员到空间
      *
@@ -75,6 +79,9 @@ public class SpaceUserController {
         // 操作数据库
         boolean result = spaceUserService.removeById(id);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 成员角色变化，清除权限缓存
+        spaceUserAuthCache.evictSpaceRole(oldSpaceUser.getSpaceId(), oldSpaceUser.getUserId());
+        spaceUserAuthCache.evictSpaceUser(id);
         return ResultUtils.success(true);
     }
 
@@ -142,6 +149,8 @@ public class SpaceUserController {
         // 操作数据库
         boolean result = spaceUserService.updateById(spaceUser);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 成员角色变化，清除权限缓存
+        spaceUserAuthCache.evictSpaceRole(oldSpaceUser.getSpaceId(), oldSpaceUser.getUserId());
         return ResultUtils.success(true);
     }
 
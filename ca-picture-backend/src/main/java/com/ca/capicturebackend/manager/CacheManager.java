@@ -4,8 +4,10 @@ import cn.hutool.core.convert.Convert;
 import cn.hutool.core.lang.TypeReference;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.json.JSONUtil;
+import com.ca.capicturebackend.aop.ReadWriteRouteInterceptor;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
+import com.ca.capicturebackend.model.vo.CacheHotKeyStatsVO;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
@@ -13,14 +15,13 @@ import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.data.redis.core.*;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import java.lang.reflect.ParameterizedType;
 import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -47,6 +48,34 @@ public class CacheManager {
             .expireAfterWrite(5L, TimeUnit.MINUTES)
             .build();
 
+    // 热点探测的子窗口时长（秒）和子窗口数，统计最近 1 分钟的访问
+    private static final long HOT_KEY_SLOT_SECONDS = 10L;
+
+    private static final int HOT_KEY_SLOT_COUNT = 6;
+
+    // 1 分钟内访问次数达到阈值的 key 判定为热点，低于阈值的一半时移出热点
+    private static final int HOT_KEY_THRESHOLD = 100;
+
+    // 热点数据从 Redis 同步的间隔（秒）
+    private static final long HOT_KEY_REFRESH_SECONDS = 30L;
+
+    // Redis 中的数据剩余时间少于该值（秒）时，提前查询数据库续期
+    private static final long HOT_KEY_RELOAD_BEFORE_EXPIRE_SECONDS = 60L;
+
+    /**
+     * 热点 key 探测
+     */
+    private final HotKeyDetector HOT_KEY_DETECTOR = new HotKeyDetector(HOT_KEY_SLOT_COUNT, 4096);
+
+    /**
+     * 热点数据的本地缓存，与普通本地缓存分开，不会被大量普通数据挤出；
+     * 过期时间更长，由定时任务主动刷新，保证与 Redis 的数据相差不超过刷新间隔
+     */
+    private final Cache<String, HotEntry> HOT_CACHE = Caffeine.newBuilder()
+            .maximumSize(1_000L)
+            .expireAfterWrite(30L, TimeUnit.MINUTES)
+            .build();
+
     /**
      * 使用缓存查询数据
      *
@@ -69,12 +98,20 @@ public class CacheManager {
             long emptyTtl,
             TimeUnit timeUnit) {
 
+        // 0. 记录访问并查询热点数据
+        int accessCount = HOT_KEY_DETECTOR.increment(cacheKey);
+        HotEntry hotEntry = HOT_CACHE.getIfPresent(cacheKey);
+        if (hotEntry != null) {
+            return JSONUtil.toBean(hotEntry.value, typeReference, false);
+        }
+
         // 1. 先查本地缓存
         String cachedValue = LOCAL_CACHE.getIfPresent(cacheKey);
         if (cachedValue != null) {
             if (EMPTY_VALUE.equals(cachedValue)) {
                 return getEmptyObject(typeReference);
             }
+            promoteIfHot(cacheKey, cachedValue, accessCount, lockKey, dbQueryFunction, normalTtl, timeUnit);
             return JSONUtil.toBean(cachedValue, typeReference, false);
         }
 
@@ -82,10 +119,12 @@ public class CacheManager {
         ValueOperations<String, String> opsForValue = redisTemplate.opsForValue();
         cachedValue = opsForValue.get(cacheKey);
         if (cachedValue != null) {
+            // 空值也写入本地缓存，重复查询不存在的数据时不再访问 Redis
+            LOCAL_CACHE.put(cacheKey, cachedValue);
             if (EMPTY_VALUE.equals(cachedValue)) {
                 return getEmptyObject(typeReference);
             }
-            LOCAL_CACHE.put(cacheKey, cachedValue);
+            promoteIfHot(cacheKey, cachedValue, accessCount, lockKey, dbQueryFunction, normalTtl, timeUnit);
             return JSONUtil.toBean(cachedValue, typeReference, false);
         }
 
@@ -96,7 +135,8 @@ public class CacheManager {
             lockAcquired = lock.tryLock(3, 15, TimeUnit.SECONDS);
             if (lockAcquired) {
                 // 4. 查询数据库
-                T dbData = dbQueryFunction.get();
+                // 从主库读取，避免把从库的旧数据写入缓存
+                T dbData = ReadWriteRouteInterceptor.readPrimary(dbQueryFunction);
                 String cacheValue = JSONUtil.toJsonStr(dbData);
                 int expireTime = Convert.toInt(RandomUtil.randomFloat(1, 2) * normalTtl);
 
@@ -104,8 +144,10 @@ public class CacheManager {
                     // 有数据，正常缓存
                     LOCAL_CACHE.put(cacheKey, cacheValue);
                     opsForValue.set(cacheKey, cacheValue, expireTime, timeUnit);
+                    promoteIfHot(cacheKey, cacheValue, accessCount, lockKey, dbQueryFunction, normalTtl, timeUnit);
                 } else {
                     // 无数据，缓存空值
+                    LOCAL_CACHE.put(cacheKey, EMPTY_VALUE);
                     opsForValue.set(cacheKey, EMPTY_VALUE, emptyTtl, timeUnit);
                     throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "图片不存在");
                 }
@@ -129,6 +171,7 @@ public class CacheManager {
      */
     public void delete(String cacheKey) {
         LOCAL_CACHE.invalidate(cacheKey);
+        HOT_CACHE.invalidate(cacheKey);
         redisTemplate.delete(cacheKey);
     }
 
@@ -142,6 +185,7 @@ public class CacheManager {
         try {
             Thread.sleep(500); // 缩短到 500ms
             LOCAL_CACHE.invalidate(cacheKey);
+            HOT_CACHE.invalidate(cacheKey);
             redisTemplate.delete(cacheKey);
         } catch (InterruptedException e) {
             e.printStackTrace();
@@ -213,6 +257,141 @@ public class CacheManager {
 
         // 批量删除
         LOCAL_CACHE.invalidateAll(keysToDelete);
+        HOT_CACHE.invalidateAll(HOT_CACHE.asMap().keySet().stream()
+                .filter(key -> key.startsWith(prefix))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * 定时切换热点探测的子窗口，并刷新热点数据：
+     * 访问次数降到阈值一半以下的移出热点；Redis 中的数据即将过期时提前查询数据库续期，否则从 Redis 同步最新数据
+     */
+    @Scheduled(fixedRate = HOT_KEY_SLOT_SECONDS * 1000)
+    public void refreshHotKeys() {
+        HOT_KEY_DETECTOR.rotate();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, HotEntry> entry : HOT_CACHE.asMap().entrySet()) {
+            String cacheKey = entry.getKey();
+            HotEntry hotEntry = entry.getValue();
+            if (HOT_KEY_DETECTOR.estimate(cacheKey) < HOT_KEY_THRESHOLD / 2) {
+                HOT_CACHE.invalidate(cacheKey);
+                continue;
+            }
+            if (now - hotEntry.refreshTime < TimeUnit.SECONDS.toMillis(HOT_KEY_REFRESH_SECONDS)) {
+                continue;
+            }
+            try {
+                refreshHotEntry(cacheKey, hotEntry);
+            } catch (Exception e) {
+                log.warn("刷新热点缓存失败，key: {}", cacheKey, e);
+                HOT_CACHE.invalidate(cacheKey);
+            }
+        }
+    }
+
+    /**
+     * 获取热点 key 统计（当前实例）
+     */
+    public CacheHotKeyStatsVO getHotKeyStats() {
+        List<CacheHotKeyStatsVO.HotKey> hotKeys = HOT_CACHE.asMap().entrySet().stream()
+                .map(entry -> {
+                    CacheHotKeyStatsVO.HotKey hotKey = new CacheHotKeyStatsVO.HotKey();
+                    hotKey.setKey(entry.getKey());
+                    hotKey.setEstimatedCount(HOT_KEY_DETECTOR.estimate(entry.getKey()));
+                    hotKey.setHotSince(new Date(entry.getValue().hotSince));
+                    hotKey.setRefreshTime(new Date(entry.getValue().refreshTime));
+                    return hotKey;
+                })
+                .sorted(Comparator.comparing(CacheHotKeyStatsVO.HotKey::getEstimatedCount).reversed())
+                .collect(Collectors.toList());
+        long totalRequests = HOT_KEY_DETECTOR.getTotal();
+        long hotKeyRequests = hotKeys.stream().mapToLong(CacheHotKeyStatsVO.HotKey::getEstimatedCount).sum();
+        CacheHotKeyStatsVO statsVO = new CacheHotKeyStatsVO();
+        statsVO.setWindowSeconds(HOT_KEY_SLOT_SECONDS * HOT_KEY_SLOT_COUNT);
+        statsVO.setThreshold(HOT_KEY_THRESHOLD);
+        statsVO.setTotalRequests(totalRequests);
+        // 估算值只会偏大，比例最大取 1
+        statsVO.setHotKeyShare(totalRequests == 0 ? 0D : Math.min(1D, (double) hotKeyRequests / totalRequests));
+        statsVO.setHotKeys(hotKeys);
+        return statsVO;
+    }
+
+    /**
+     * 访问次数达到阈值时放入热点缓存
+     */
+    private <T> void promoteIfHot(String cacheKey, String cacheValue, int accessCount, String lockKey,
+                                  Supplier<T> dbQueryFunction, long normalTtl, TimeUnit timeUnit) {
+        if (accessCount < HOT_KEY_THRESHOLD) {
+            return;
+        }
+        HOT_CACHE.put(cacheKey, new HotEntry(cacheValue, lockKey, dbQueryFunction, normalTtl, timeUnit));
+        log.info("缓存 key 成为热点，key: {}, 访问次数: {}", cacheKey, accessCount);
+    }
+
+    private void refreshHotEntry(String cacheKey, HotEntry hotEntry) {
+        ValueOperations<String, String> opsForValue = redisTemplate.opsForValue();
+        Long expireSeconds = redisTemplate.getExpire(cacheKey, TimeUnit.SECONDS);
+        // 不存在（-2）或即将过期时查询数据库续期，只由一个实例执行
+        if (expireSeconds != null && expireSeconds != -1 && expireSeconds < HOT_KEY_RELOAD_BEFORE_EXPIRE_SECONDS) {
+            RLock lock = redissonClient.getLock(hotEntry.lockKey);
+            if (lock.tryLock()) {
+                try {
+                    Object dbData = ReadWriteRouteInterceptor.readPrimary(hotEntry.dbQueryFunction);
+                    if (dbData == null) {
+                        HOT_CACHE.invalidate(cacheKey);
+                        return;
+                    }
+                    String cacheValue = JSONUtil.toJsonStr(dbData);
+                    int expireTime = Convert.toInt(RandomUtil.randomFloat(1, 2) * hotEntry.normalTtl);
+                    opsForValue.set(cacheKey, cacheValue, expireTime, hotEntry.timeUnit);
+                    hotEntry.update(cacheValue);
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        String cachedValue = opsForValue.get(cacheKey);
+        if (cachedValue == null || EMPTY_VALUE.equals(cachedValue)) {
+            // 已被删除且还没有重新加载，交给正常的查询流程
+            HOT_CACHE.invalidate(cacheKey);
+            return;
+        }
+        hotEntry.update(cachedValue);
+    }
+
+    /**
+     * 热点数据
+     */
+    private static class HotEntry {
+
+        private volatile String value;
+
+        private final String lockKey;
+
+        // 续期时查询数据库的函数
+        private final Supplier<?> dbQueryFunction;
+
+        private final long normalTtl;
+
+        private final TimeUnit timeUnit;
+
+        private final long hotSince = System.currentTimeMillis();
+
+        private volatile long refreshTime = hotSince;
+
+        private HotEntry(String value, String lockKey, Supplier<?> dbQueryFunction, long normalTtl, TimeUnit timeUnit) {
+            this.value = value;
+            this.lockKey = lockKey;
+            this.dbQueryFunction = dbQueryFunction;
+            this.normalTtl = normalTtl;
+            this.timeUnit = timeUnit;
+        }
+
+        private void update(String value) {
+            this.value = value;
+            this.refreshTime = System.currentTimeMillis();
+        }
     }
 
     private <T> T getEmptyObject(TypeReference<T> typeReference) {
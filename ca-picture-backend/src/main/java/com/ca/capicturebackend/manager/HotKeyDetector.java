@@ -0,0 +1,105 @@
+package com.ca.capicturebackend.manager;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 热点 key 探测（滑动窗口 Count-Min Sketch）
+ * <p>
+ * 把统计时长分为若干个子窗口，每个子窗口一个 Count-Min Sketch，访问时只写当前子窗口，估算时把各子窗口的估算值相加；
+ * 定期调用 {@link #rotate()} 切换到下一个子窗口并清空其中最旧的数据。内存占用固定，与 key 的数量无关，估算值只会偏大。
+ */
+public class HotKeyDetector {
+
+    private static final int DEPTH = 4;
+
+    private final int width;
+
+    private final AtomicIntegerArray[] windows;
+
+    // 每个子窗口的访问总数
+    private final AtomicLongArray windowTotals;
+
+    private volatile int current;
+
+    /**
+     * @param windowCount 子窗口数
+     * @param width       每行的计数器数，必须是 2 的幂
+     */
+    public HotKeyDetector(int windowCount, int width) {
+        this.width = width;
+        this.windows = new AtomicIntegerArray[windowCount];
+        for (int i = 0; i < windowCount; i++) {
+            windows[i] = new AtomicIntegerArray(DEPTH * width);
+        }
+        this.windowTotals = new AtomicLongArray(windowCount);
+    }
+
+    /**
+     * 记录一次访问，返回整个窗口内的估算访问次数
+     */
+    public int increment(String key) {
+        long hash = MurmurHash.hash64(key);
+        int window = current;
+        AtomicIntegerArray counters = windows[window];
+        windowTotals.incrementAndGet(window);
+        for (int i = 0; i < DEPTH; i++) {
+            counters.incrementAndGet(index(hash, i));
+        }
+        return estimate(hash);
+    }
+
+    /**
+     * 整个窗口内的估算访问次数
+     */
+    public int estimate(String key) {
+        return estimate(MurmurHash.hash64(key));
+    }
+
+    /**
+     * 整个窗口内的访问总数
+     */
+    public long getTotal() {
+        long total = 0L;
+        for (int i = 0; i < windowTotals.length(); i++) {
+            total += windowTotals.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * 切换到下一个子窗口，清空其中的旧数据
+     */
+    public void rotate() {
+        int next = (current + 1) % windows.length;
+        AtomicIntegerArray counters = windows[next];
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        windowTotals.set(next, 0L);
+        current = next;
+    }
+
+    private int estimate(long hash) {
+        int total = 0;
+        for (AtomicIntegerArray counters : windows) {
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, counters.get(index(hash, i)));
+            }
+            total += min;
+        }
+        return total;
+    }
+
+    /**
+     * 第 row 行的计数器下标，由 64 位哈希的高低 32 位组合出 DEPTH 个哈希
+     */
+    private int index(long hash, int row) {
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        return row * width + ((hash1 + row * hash2) & (width - 1));
+    }
+}
@@ -0,0 +1,120 @@
+package com.ca.capicturebackend.manager;
+
+import cn.hutool.json.JSONUtil;
+import com.ca.capicturebackend.model.entity.User;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 登录用户缓存
+ * <p>
+ * 每个用户在 Redis 中维护一个版本号，用户信息变化（修改、删除、改密、改角色）时自增版本号。
+ * 读取时先比较版本号：本地缓存版本一致直接返回，其次查 Redis 中的用户快照，都不一致才查数据库。
+ * 版本号读取失败时退回查库，不影响登录校验的正确性。
+ */
+@Slf4j
+@Component
+public class LoginUserCacheManager {
+
+    // Redis 中用户快照的过期时间
+    private static final long USER_CACHE_TTL_SECONDS = 30 * 60;
+
+    // 没有版本号时（从未修改过）的默认版本
+    private static final String INITIAL_VERSION = "0";
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+
+    // 用户 id => 带版本的用户信息
+    private final Cache<Long, VersionedUser> localCache = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterWrite(10L, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * 获取用户，版本号变化时才调用 loader 查询数据库
+     *
+     * @param userId 用户 id
+     * @param loader 查询数据库的函数
+     * @return 用户，不存在时返回 null
+     */
+    public User getUser(Long userId, Function<Long, User> loader) {
+        String version;
+        try {
+            version = redisTemplate.opsForValue().get(getVersionKey(userId));
+        } catch (Exception e) {
+            log.warn("读取用户版本号失败，userId={}", userId, e);
+            return loader.apply(userId);
+        }
+        if (version == null) {
+            version = INITIAL_VERSION;
+        }
+        // 1. 本地缓存
+        VersionedUser cached = localCache.getIfPresent(userId);
+        if (cached != null && version.equals(cached.getVersion())) {
+            return cached.getUser();
+        }
+        // 2. Redis 快照
+        String cacheKey = getCacheKey(userId);
+        String cachedValue = redisTemplate.opsForValue().get(cacheKey);
+        if (cachedValue != null) {
+            cached = JSONUtil.toBean(cachedValue, VersionedUser.class);
+            if (version.equals(cached.getVersion()) && cached.getUser() != null) {
+                localCache.put(userId, cached);
+                return cached.getUser();
+            }
+        }
+        // 3. 查询数据库
+        User user = loader.apply(userId);
+        if (user == null) {
+            localCache.invalidate(userId);
+            return null;
+        }
+        cached = new VersionedUser();
+        cached.setVersion(version);
+        cached.setUser(user);
+        localCache.put(userId, cached);
+        redisTemplate.opsForValue().set(cacheKey, JSONUtil.toJsonStr(cached), USER_CACHE_TTL_SECONDS, TimeUnit.SECONDS);
+        return user;
+    }
+
+    /**
+     * 用户信息变化后调用，使所有实例上的缓存失效
+     */
+    public void bumpVersion(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        redisTemplate.opsForValue().increment(getVersionKey(userId));
+        redisTemplate.delete(getCacheKey(userId));
+        localCache.invalidate(userId);
+    }
+
+    private String getVersionKey(Long userId) {
+        return CommonKeyEnum.USER_VERSION_PREFIX.key(String.valueOf(userId));
+    }
+
+    private String getCacheKey(Long userId) {
+        return CommonKeyEnum.USER_CACHE_PREFIX.key(String.valueOf(userId));
+    }
+
+    /**
+     * 带版本号的用户信息
+     */
+    @Data
+    public static class VersionedUser {
+
+        private String version;
+
+        private User user;
+    }
+}
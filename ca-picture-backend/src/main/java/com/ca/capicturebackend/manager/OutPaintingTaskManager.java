@@ -0,0 +1,215 @@
+package com.ca.capicturebackend.manager;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.ca.capicturebackend.api.aliyunai.AliYunAiApi;
+import com.ca.capicturebackend.api.aliyunai.model.GetOutPaintingTaskResponse;
+import com.ca.capicturebackend.manager.websocket.PictureEditHandler;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditMessageTypeEnum;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditResponseMessage;
+import com.ca.capicturebackend.model.dto.picture.PictureUploadRequest;
+import com.ca.capicturebackend.model.entity.Picture;
+import com.ca.capicturebackend.model.entity.User;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import com.ca.capicturebackend.service.PictureService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI 扩图任务跟踪
+ * <p>
+ * 创建任务后由服务端在共享调度线程池中按指数退避轮询任务状态，状态写入 Redis 供前端查询，
+ * 任务结束后通过图片编辑 WebSocket 推送结果，并可选地将结果图走上传流程保存到图库。
+ */
+@Slf4j
+@Component
+public class OutPaintingTaskManager {
+
+    @Resource
+    private AliYunAiApi aliYunAiApi;
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Resource
+    private ScheduledExecutorService scheduledExecutor;
+
+    @Lazy
+    @Resource
+    private PictureEditHandler pictureEditHandler;
+
+    @Lazy
+    @Resource
+    private PictureService pictureService;
+
+    // 首次轮询延迟（毫秒）
+    private static final long INITIAL_DELAY_MILLIS = 2000;
+
+    // 最大轮询间隔（毫秒）
+    private static final long MAX_DELAY_MILLIS = 30000;
+
+    // 轮询总时长上限（毫秒），超过后放弃跟踪
+    private static final long MAX_TRACK_MILLIS = 10 * 60 * 1000;
+
+    // 任务结束状态的缓存时间（小时），与结果图链接有效期一致
+    private static final long STATUS_TTL_HOURS = 24;
+
+    // 未跟踪任务的未结束状态缓存时间（秒），过期后查询接口，避免轮询停止（超时、重启）后一直返回旧状态
+    private static final long PENDING_STATUS_TTL_SECONDS = 5;
+
+    // 跟踪中的任务，未结束状态保留到下一次轮询之后再多留的时间（毫秒），覆盖轮询本身的耗时
+    private static final long POLL_TTL_MARGIN_MILLIS = 5000;
+
+    /**
+     * 开始跟踪任务
+     *
+     * @param taskId    任务 id
+     * @param picture   原图
+     * @param loginUser 创建任务的用户
+     * @param autoSave  成功后是否自动保存结果图
+     */
+    public void track(String taskId, Picture picture, User loginUser, boolean autoSave) {
+        if (StrUtil.isBlank(taskId)) {
+            return;
+        }
+        // 先写入初始状态，避免前端查询时穿透到接口
+        GetOutPaintingTaskResponse initResponse = new GetOutPaintingTaskResponse();
+        GetOutPaintingTaskResponse.Output output = new GetOutPaintingTaskResponse.Output();
+        output.setTaskId(taskId);
+        output.setTaskStatus("PENDING");
+        initResponse.setOutput(output);
+        saveTaskStatus(taskId, initResponse, INITIAL_DELAY_MILLIS + POLL_TTL_MARGIN_MILLIS);
+        long deadline = System.currentTimeMillis() + MAX_TRACK_MILLIS;
+        schedulePoll(taskId, picture, loginUser, autoSave, INITIAL_DELAY_MILLIS, deadline);
+    }
+
+    /**
+     * 获取任务状态，优先读取缓存
+     * <p>
+     * 结束状态缓存 24 小时；跟踪中的任务由轮询刷新缓存，缓存保留到下一次轮询之后；
+     * 其他未结束状态只缓存几秒，缓存过期后查询接口并写回缓存
+     *
+     * @param taskId
+     * @return
+     */
+    public GetOutPaintingTaskResponse getTask(String taskId) {
+        String cacheValue = redisTemplate.opsForValue().get(getTaskKey(taskId));
+        if (StrUtil.isNotBlank(cacheValue)) {
+            return JSONUtil.toBean(cacheValue, GetOutPaintingTaskResponse.class);
+        }
+        GetOutPaintingTaskResponse response = aliYunAiApi.getOutPaintingTask(taskId);
+        if (response != null && response.getOutput() != null) {
+            saveTaskStatus(taskId, response);
+        }
+        return response;
+    }
+
+    /**
+     * 提交下一次轮询
+     */
+    private void schedulePoll(String taskId, Picture picture, User loginUser, boolean autoSave, long delayMillis, long deadline) {
+        scheduledExecutor.schedule(() -> poll(taskId, picture, loginUser, autoSave, delayMillis, deadline),
+                delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 轮询一次任务状态
+     */
+    private void poll(String taskId, Picture picture, User loginUser, boolean autoSave, long delayMillis, long deadline) {
+        GetOutPaintingTaskResponse response = null;
+        try {
+            response = aliYunAiApi.getOutPaintingTask(taskId);
+        } catch (Exception e) {
+            log.warn("查询 AI 扩图任务失败，taskId = {}", taskId, e);
+        }
+        // 指数退避
+        long nextDelay = Math.min(delayMillis * 2, MAX_DELAY_MILLIS);
+        boolean tracking = System.currentTimeMillis() < deadline;
+        // 继续跟踪时缓存保留到下一次轮询之后，停止跟踪后按未跟踪任务处理
+        long pendingTtlMillis = tracking ? nextDelay + POLL_TTL_MARGIN_MILLIS : TimeUnit.SECONDS.toMillis(PENDING_STATUS_TTL_SECONDS);
+        if (response != null && response.getOutput() != null) {
+            saveTaskStatus(taskId, response, pendingTtlMillis);
+            if (isFinished(response)) {
+                onFinished(response, picture, loginUser, autoSave);
+                return;
+            }
+        } else if (tracking) {
+            // 本次查询失败，保留上一次的状态到下一次轮询
+            redisTemplate.expire(getTaskKey(taskId), pendingTtlMillis, TimeUnit.MILLISECONDS);
+        }
+        if (!tracking) {
+            log.warn("AI 扩图任务轮询超时，停止跟踪，taskId = {}", taskId);
+            return;
+        }
+        schedulePoll(taskId, picture, loginUser, autoSave, nextDelay, deadline);
+    }
+
+    /**
+     * 任务结束：可选保存结果图，并推送给正在协同编辑该图片的用户
+     */
+    private void onFinished(GetOutPaintingTaskResponse response, Picture picture, User loginUser, boolean autoSave) {
+        GetOutPaintingTaskResponse.Output output = response.getOutput();
+        boolean succeeded = "SUCCEEDED".equals(output.getTaskStatus());
+        if (succeeded && autoSave && StrUtil.isNotBlank(output.getOutputImageUrl())) {
+            try {
+                PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
+                pictureUploadRequest.setSpaceId(picture.getSpaceId());
+                pictureUploadRequest.setPicName(picture.getName() + "_扩图");
+                pictureService.uploadPicture(output.getOutputImageUrl(), pictureUploadRequest, loginUser);
+            } catch (Exception e) {
+                log.error("AI 扩图结果保存失败，taskId = {}", output.getTaskId(), e);
+            }
+        }
+        PictureEditResponseMessage pictureEditResponseMessage = new PictureEditResponseMessage();
+        pictureEditResponseMessage.setType(PictureEditMessageTypeEnum.OUT_PAINTING_RESULT.getValue());
+        pictureEditResponseMessage.setMessage(succeeded ? "AI 扩图完成" : "AI 扩图失败");
+        pictureEditResponseMessage.setOutPaintingTask(output);
+        try {
+            pictureEditHandler.broadcastToPicture(picture.getId(), pictureEditResponseMessage);
+        } catch (Exception e) {
+            log.error("AI 扩图结果推送失败，taskId = {}", output.getTaskId(), e);
+        }
+    }
+
+    /**
+     * 任务是否已结束
+     */
+    private boolean isFinished(GetOutPaintingTaskResponse response) {
+        if (response == null || response.getOutput() == null) {
+            return false;
+        }
+        String taskStatus = response.getOutput().getTaskStatus();
+        return "SUCCEEDED".equals(taskStatus) || "FAILED".equals(taskStatus) || "UNKNOWN".equals(taskStatus);
+    }
+
+    private void saveTaskStatus(String taskId, GetOutPaintingTaskResponse response) {
+        if (isFinished(response)) {
+            redisTemplate.opsForValue().set(getTaskKey(taskId), JSONUtil.toJsonStr(response), STATUS_TTL_HOURS, TimeUnit.HOURS);
+        } else {
+            redisTemplate.opsForValue().set(getTaskKey(taskId), JSONUtil.toJsonStr(response),
+                    PENDING_STATUS_TTL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 保存跟踪中任务的状态，未结束状态按指定时间缓存
+     */
+    private void saveTaskStatus(String taskId, GetOutPaintingTaskResponse response, long pendingTtlMillis) {
+        if (isFinished(response)) {
+            saveTaskStatus(taskId, response);
+        } else {
+            redisTemplate.opsForValue().set(getTaskKey(taskId), JSONUtil.toJsonStr(response),
+                    pendingTtlMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private String getTaskKey(String taskId) {
+        return CommonKeyEnum.OUT_PAINTING_TASK_PREFIX.key(taskId);
+    }
+}
@@ -0,0 +1,251 @@
+package com.ca.capicturebackend.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.ca.capicturebackend.aop.ReadWriteRouteInterceptor;
+import com.ca.capicturebackend.mapper.PictureMapper;
+import com.ca.capicturebackend.model.entity.Picture;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 图片 id 布隆过滤器
+ * <p>
+ * 在本地内存中维护已存在图片 id 的布隆过滤器，查询不存在的图片时在访问 Redis、数据库之前直接拒绝，防止缓存穿透。
+ * 新增图片时通过 Redis 频道通知所有实例加入新 id；定期从数据库重建，按当前图片数重新确定容量，并清除已删除的图片。
+ * 第一次构建完成前不做判断。
+ * <p>
+ * Redis 频道的消息最多投递一次，实例断线期间的通知会丢失，因此过滤器只对重建时扫描过的 id（不超过当时的最大 id）做判断，
+ * 更大的 id 一律视为可能存在，直到下次重建；重建从主库读取，避免从库延迟漏掉刚新增的图片。
+ */
+@Slf4j
+@Component
+public class PictureBloomFilterManager {
+
+    // 重建时每批读取的 id 数
+    private static final int REBUILD_BATCH_SIZE = 5000;
+
+    // 最小容量
+    private static final long MIN_EXPECTED_INSERTIONS = 1_000_000L;
+
+    // 误判率
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    // 当前使用的过滤器，为 null 表示还没有构建
+    private volatile BloomFilter bloomFilter;
+
+    // 重建期间新增的 id，重建完成后补充到新的过滤器
+    private volatile Queue<Long> rebuildingIds;
+
+    private RTopic idTopic;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("pictureBloomFilter-").build());
+
+    @PostConstruct
+    public void initialize() {
+        idTopic = redissonClient.getTopic(CommonKeyEnum.PICTURE_BLOOM_PREFIX.key("ids"), StringCodec.INSTANCE);
+        idTopic.addListener(String.class, (channel, message) -> addLocal(Long.valueOf(message)));
+        rebuildExecutor.execute(this::rebuild);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 图片是否可能存在，返回 false 时一定不存在
+     */
+    public boolean mightContain(long pictureId) {
+        BloomFilter current = bloomFilter;
+        return current == null || current.mightContain(pictureId);
+    }
+
+    /**
+     * 新增图片后加入过滤器并通知其他实例
+     */
+    public void add(long pictureId) {
+        addLocal(pictureId);
+        try {
+            idTopic.publish(String.valueOf(pictureId));
+        } catch (Exception e) {
+            // 其他实例在下次重建前可能误判该图片不存在
+            log.error("通知新增图片 id 失败，pictureId={}", pictureId, e);
+        }
+    }
+
+    /**
+     * 定期重建；新增的 id 超过容量时提前重建
+     */
+    @Scheduled(fixedDelay = 6 * 60 * 60 * 1000, initialDelay = 6 * 60 * 60 * 1000)
+    public void scheduleRebuild() {
+        rebuildExecutor.execute(this::rebuild);
+    }
+
+    private void addLocal(long pictureId) {
+        Queue<Long> pendingIds = rebuildingIds;
+        if (pendingIds != null) {
+            pendingIds.add(pictureId);
+        }
+        BloomFilter current = bloomFilter;
+        if (current != null && current.put(pictureId)) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        rebuildingIds = new ConcurrentLinkedQueue<>();
+        try {
+            BloomFilter next = ReadWriteRouteInterceptor.readPrimary(this::scan);
+            if (next == null) {
+                return;
+            }
+            // 切换前后各补充一次重建期间新增的 id
+            drainTo(next);
+            bloomFilter = next;
+            drainTo(next);
+            log.info("图片 id 布隆过滤器重建完成，最大 id={}, 容量={}", next.maxId, next.expectedInsertions);
+        } catch (Exception e) {
+            log.error("图片 id 布隆过滤器重建失败", e);
+        } finally {
+            rebuildingIds = null;
+        }
+    }
+
+    /**
+     * 扫描开始时的最大 id 及之前的所有 id，之后新增的 id 由通知和 {@link #drainTo} 补充；线程被中断时返回 null
+     */
+    private BloomFilter scan() {
+        Long pictureCount = pictureMapper.selectCount(null);
+        List<Object> maxIds = pictureMapper.selectObjs(Wrappers.<Picture>query().select("MAX(id)"));
+        long maxId = CollUtil.isEmpty(maxIds) || maxIds.get(0) == null ? 0L : ((Number) maxIds.get(0)).longValue();
+        BloomFilter next = new BloomFilter(Math.max(pictureCount * 2, MIN_EXPECTED_INSERTIONS), FALSE_POSITIVE_PROBABILITY, maxId);
+        long lastId = 0L;
+        while (lastId < maxId) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            List<Picture> pictureList = pictureMapper.selectList(Wrappers.<Picture>lambdaQuery()
+                    .select(Picture::getId)
+                    .gt(Picture::getId, lastId)
+                    .le(Picture::getId, maxId)
+                    .orderByAsc(Picture::getId)
+                    .last("limit " + REBUILD_BATCH_SIZE));
+            if (CollUtil.isEmpty(pictureList)) {
+                break;
+            }
+            for (Picture picture : pictureList) {
+                next.put(picture.getId());
+            }
+            lastId = pictureList.get(pictureList.size() - 1).getId();
+        }
+        return next;
+    }
+
+    private void drainTo(BloomFilter target) {
+        Long pictureId;
+        while ((pictureId = rebuildingIds.poll()) != null) {
+            target.put(pictureId);
+        }
+    }
+
+    /**
+     * 布隆过滤器，使用 AtomicLongArray 保存位图，支持并发写入；只对不超过 maxId 的 id 做判断
+     */
+    static class BloomFilter {
+
+        private final AtomicLongArray bits;
+
+        private final long bitSize;
+
+        private final int hashCount;
+
+        private final long expectedInsertions;
+
+        // 构建时覆盖的最大 id
+        private final long maxId;
+
+        private final AtomicLong insertions = new AtomicLong();
+
+        BloomFilter(long expectedInsertions, double fpp, long maxId) {
+            long bitSize = (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((bitSize + 63) / 64));
+            this.bitSize = bits.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) this.bitSize / expectedInsertions * Math.log(2)));
+            this.expectedInsertions = expectedInsertions;
+            this.maxId = maxId;
+        }
+
+        /**
+         * 加入 id，返回加入后是否已经超过容量
+         */
+        boolean put(long value) {
+            long hash1 = mix(value);
+            long hash2 = mix(hash1);
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(hash1 + i * hash2, bitSize);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long oldValue;
+                do {
+                    oldValue = bits.get(word);
+                    if ((oldValue & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, oldValue, oldValue | mask));
+            }
+            return insertions.incrementAndGet() == expectedInsertions + 1;
+        }
+
+        boolean mightContain(long value) {
+            if (value > maxId) {
+                return true;
+            }
+            long hash1 = mix(value);
+            long hash2 = mix(hash1);
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(hash1 + i * hash2, bitSize);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * MurmurHash3 的 64 位混淆函数
+         */
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            value *= 0xc4ceb9fe1a85ec53L;
+            value ^= value >>> 33;
+            return value;
+        }
+    }
+}
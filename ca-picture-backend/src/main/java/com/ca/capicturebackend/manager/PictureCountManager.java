@@ -0,0 +1,102 @@
+package com.ca.capicturebackend.manager;
+
+import com.ca.capicturebackend.aop.ReadWriteRouteInterceptor;
+import com.ca.capicturebackend.model.dto.picture.PictureQueryRequest;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import com.ca.capicturebackend.utils.PictureQueryFingerprintUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 图片分页总数
+ * <p>
+ * 精确总数按筛选条件的指纹（不含分页、排序参数）缓存；每个范围（空间 / 公共图库 / 全部）有一个版本号，
+ * 图片新增、删除、编辑、审核时递增版本号，旧版本的缓存自然失效。
+ * 只按范围筛选时，可以直接用 {@link SpaceUploadStatManager} 维护的图片数作为估算值，不查询数据库；
+ * 该图片数不区分审核状态，按审核状态筛选时不能估算。
+ */
+@Slf4j
+@Component
+public class PictureCountManager {
+
+    // 总数缓存时长（秒），版本号保证数据变化后立即失效，这里只用于回收不再使用的缓存
+    private static final long COUNT_CACHE_SECONDS = 10 * 60;
+
+    private static final String SCOPE_ALL = "all";
+
+    private static final String SCOPE_PUBLIC = "public";
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Resource
+    private SpaceUploadStatManager spaceUploadStatManager;
+
+    /**
+     * 获取缓存的精确总数，没有缓存时统计并缓存
+     */
+    public long getCachedCount(PictureQueryRequest pictureQueryRequest, Supplier<Long> countLoader) {
+        String scope = getScope(pictureQueryRequest);
+        String version = redisTemplate.opsForValue().get(getVersionKey(scope));
+        String hashKey = PictureQueryFingerprintUtils.fingerprint(pictureQueryRequest, false);
+        String countKey = CommonKeyEnum.PICTURE_COUNT_PREFIX.key(scope, version == null ? "0" : version, hashKey);
+        String cachedCount = redisTemplate.opsForValue().get(countKey);
+        if (cachedCount != null) {
+            return Long.parseLong(cachedCount);
+        }
+        // 从主库统计，避免缓存从库延迟的总数
+        long count = ReadWriteRouteInterceptor.readPrimary(countLoader);
+        redisTemplate.opsForValue().set(countKey, String.valueOf(count), COUNT_CACHE_SECONDS, TimeUnit.SECONDS);
+        return count;
+    }
+
+    /**
+     * 获取估算的总数，筛选条件不适合估算或者没有估算值时返回 null
+     */
+    public Long getEstimatedCount(PictureQueryRequest pictureQueryRequest) {
+        if (!isUnselective(pictureQueryRequest)) {
+            return null;
+        }
+        return spaceUploadStatManager.getTotalCount(pictureQueryRequest.getSpaceId(),
+                pictureQueryRequest.isNullSpaceId(), pictureQueryRequest.getSpaceId() == null && !pictureQueryRequest.isNullSpaceId());
+    }
+
+    /**
+     * 空间（spaceId 为 null 表示公共图库）的图片发生变化，使该范围和全部图片的总数缓存失效
+     */
+    public void invalidate(Long spaceId) {
+        try {
+            redisTemplate.opsForValue().increment(getVersionKey(spaceId == null ? SCOPE_PUBLIC : String.valueOf(spaceId)));
+            redisTemplate.opsForValue().increment(getVersionKey(SCOPE_ALL));
+        } catch (Exception e) {
+            log.error("更新图片总数缓存版本失败，spaceId={}", spaceId, e);
+        }
+    }
+
+    /**
+     * 是否只按范围筛选
+     */
+    private static boolean isUnselective(PictureQueryRequest pictureQueryRequest) {
+        PictureQueryRequest scopeQueryRequest = new PictureQueryRequest();
+        scopeQueryRequest.setSpaceId(pictureQueryRequest.getSpaceId());
+        scopeQueryRequest.setNullSpaceId(pictureQueryRequest.isNullSpaceId());
+        return PictureQueryFingerprintUtils.canonicalize(scopeQueryRequest, false)
+                .equals(PictureQueryFingerprintUtils.canonicalize(pictureQueryRequest, false));
+    }
+
+    private static String getScope(PictureQueryRequest pictureQueryRequest) {
+        if (pictureQueryRequest.getSpaceId() != null) {
+            return String.valueOf(pictureQueryRequest.getSpaceId());
+        }
+        return pictureQueryRequest.isNullSpaceId() ? SCOPE_PUBLIC : SCOPE_ALL;
+    }
+
+    private static String getVersionKey(String scope) {
+        return CommonKeyEnum.PICTURE_COUNT_PREFIX.key(scope, "version");
+    }
+}
@@ -0,0 +1,78 @@
+package com.ca.capicturebackend.manager;
+
+import com.ca.capicturebackend.model.vo.PictureQueryStatsVO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 图片分页查询的缓存命中统计
+ * <p>
+ * 按查询条件指纹在本地记录请求次数和缓存命中次数（每个实例单独统计），用于判断哪些查询值得缓存。
+ * 只保留最近活跃的查询，长时间没有请求的查询会被移除。
+ */
+@Component
+public class PictureQueryStatsManager {
+
+    private final Cache<String, QueryStats> statsCache = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterAccess(1L, TimeUnit.HOURS)
+            .build();
+
+    /**
+     * 记录一次查询
+     *
+     * @param fingerprint 查询条件指纹
+     * @param query       规范化后的查询条件，只在第一次记录时计算
+     * @param hit         是否命中缓存
+     */
+    public void record(String fingerprint, Supplier<String> query, boolean hit) {
+        QueryStats stats = statsCache.get(fingerprint, key -> new QueryStats(query.get()));
+        stats.requestCount.increment();
+        if (hit) {
+            stats.hitCount.increment();
+        }
+    }
+
+    /**
+     * 获取请求次数最多的查询
+     */
+    public List<PictureQueryStatsVO> getTopQueries(int topN) {
+        return statsCache.asMap().entrySet().stream()
+                .map(entry -> {
+                    QueryStats stats = entry.getValue();
+                    long requestCount = stats.requestCount.sum();
+                    long hitCount = stats.hitCount.sum();
+                    PictureQueryStatsVO statsVO = new PictureQueryStatsVO();
+                    statsVO.setFingerprint(entry.getKey());
+                    statsVO.setQuery(stats.query);
+                    statsVO.setRequestCount(requestCount);
+                    statsVO.setHitCount(hitCount);
+                    statsVO.setHitRate(requestCount == 0 ? 0D : (double) hitCount / requestCount);
+                    return statsVO;
+                })
+                .sorted(Comparator.comparing(PictureQueryStatsVO::getRequestCount).reversed())
+                .limit(topN)
+                .collect(Collectors.toList());
+    }
+
+    private static class QueryStats {
+
+        private final String query;
+
+        private final LongAdder requestCount = new LongAdder();
+
+        private final LongAdder hitCount = new LongAdder();
+
+        private QueryStats(String query) {
+            this.query = query;
+        }
+    }
+}
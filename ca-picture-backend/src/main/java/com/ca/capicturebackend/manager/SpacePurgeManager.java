@@ -0,0 +1,166 @@
+package com.ca.capicturebackend.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.ca.capicturebackend.manager.sharding.DynamicShardingManager;
+import com.ca.capicturebackend.model.dto.picture.ToDeletePictureDto;
+import com.ca.capicturebackend.model.entity.Picture;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import com.ca.capicturebackend.service.PictureService;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * 已删除空间的图片清理
+ * <p>
+ * 删除空间时只标记删除并登记清理任务，图片数据和对象存储文件在后台分批清理，每批删除的对象数不超过 COS 批量删除的上限。
+ * 每批先删文件再删数据，中断后重新执行只会处理剩下的图片，登记的任务在服务重启后会继续执行。
+ */
+@Slf4j
+@Component
+public class SpacePurgeManager {
+
+    // 每批清理的图片数（每张图片最多 3 个对象，COS 单次批量删除最多 1000 个）
+    private static final int PURGE_BATCH_SIZE = 300;
+
+    @Resource
+    private PictureService pictureService;
+
+    @Resource
+    private CosManager cosManager;
+
+    @Resource
+    private CacheManager cacheManager;
+
+    @Resource
+    private SpaceUploadStatManager spaceUploadStatManager;
+
+    @Resource
+    private PictureCountManager pictureCountManager;
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    // 数据库分表（可选）
+    @Autowired(required = false)
+    private DynamicShardingManager dynamicShardingManager;
+
+    // 清理任务串行执行，避免与正常请求争抢数据库和 COS
+    private final ExecutorService purgeExecutor = Executors.newSingleThreadExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("spacePurge-").build());
+
+    /**
+     * 登记并开始清理（空间已标记删除）
+     */
+    public void submit(Long spaceId) {
+        redisTemplate.opsForSet().add(getPendingKey(), String.valueOf(spaceId));
+        purgeExecutor.execute(() -> purge(spaceId));
+    }
+
+    /**
+     * 定期继续未完成的清理任务（如服务重启或清理失败）
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000, initialDelay = 60 * 1000)
+    public void resumePendingPurges() {
+        Set<String> spaceIds = redisTemplate.opsForSet().members(getPendingKey());
+        if (CollUtil.isEmpty(spaceIds)) {
+            return;
+        }
+        for (String spaceId : spaceIds) {
+            purgeExecutor.execute(() -> purge(Long.valueOf(spaceId)));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purgeExecutor.shutdownNow();
+    }
+
+    private void purge(Long spaceId) {
+        // 多个实例可能同时继续同一个任务，只由一个实例执行
+        RLock lock = redissonClient.getLock(CommonKeyEnum.SPACE_PURGE_PREFIX.key("lock", String.valueOf(spaceId)));
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            long purged = 0L;
+            long lastId = 0L;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Picture> pictureList = pictureService.lambdaQuery()
+                        .select(Picture::getId, Picture::getUserId, Picture::getCreateTime,
+                                Picture::getUrl, Picture::getOriginalUrl, Picture::getThumbnailUrl)
+                        .eq(Picture::getSpaceId, spaceId)
+                        .gt(Picture::getId, lastId)
+                        .orderByAsc(Picture::getId)
+                        .last("limit " + PURGE_BATCH_SIZE)
+                        .list();
+                if (CollUtil.isEmpty(pictureList)) {
+                    break;
+                }
+                purgeBatch(spaceId, pictureList);
+                purged += pictureList.size();
+                lastId = pictureList.get(pictureList.size() - 1).getId();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            // 旗舰版空间的分表已经没有有效数据，直接删除
+            if (dynamicShardingManager != null) {
+                dynamicShardingManager.dropSpacePictureTable(spaceId);
+            }
+            spaceUploadStatManager.evictSpace(spaceId);
+            redisTemplate.opsForSet().remove(getPendingKey(), String.valueOf(spaceId));
+            log.info("已删除空间的图片清理完成，spaceId={}, 图片数={}", spaceId, purged);
+        } catch (Exception e) {
+            log.error("清理已删除空间的图片失败，稍后重试，spaceId={}", spaceId, e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void purgeBatch(Long spaceId, List<Picture> pictureList) {
+        // 删除对象存储中的文件
+        List<ToDeletePictureDto> toDeletePictureDtoList = pictureList.stream()
+                .map(ToDeletePictureDto::pictureToDeletePicture)
+                .collect(Collectors.toList());
+        cosManager.deleteObjectByBatch(pictureService.pictureUrlToKey(toDeletePictureDtoList));
+        // 删除数据（带上 spaceId，只路由到该空间所在的表）
+        List<Long> pictureIdList = pictureList.stream().map(Picture::getId).collect(Collectors.toList());
+        pictureService.lambdaUpdate()
+                .eq(Picture::getSpaceId, spaceId)
+                .in(Picture::getId, pictureIdList)
+                .remove();
+        // 从全部图片的上传统计中扣除（查询结果中没有 spaceId，需要补上）
+        pictureList.forEach(picture -> picture.setSpaceId(spaceId));
+        spaceUploadStatManager.recordDelete(pictureList);
+        pictureCountManager.invalidate(spaceId);
+        // 删除图片缓存
+        for (Long pictureId : pictureIdList) {
+            String hashKey = DigestUtils.md5DigestAsHex(String.valueOf(pictureId).getBytes());
+            cacheManager.delete(CommonKeyEnum.PICTURE_CACHE_PREFIX.key("getPictureVOWithCache", hashKey));
+        }
+    }
+
+    private String getPendingKey() {
+        return CommonKeyEnum.SPACE_PURGE_PREFIX.key("pending");
+    }
+}
@@ -0,0 +1,327 @@
+package com.ca.capicturebackend.manager;
+
+import cn.hutool.core.util.IdUtil;
+import com.ca.capicturebackend.exception.BusinessException;
+import com.ca.capicturebackend.exception.ErrorCode;
+import com.ca.capicturebackend.mapper.SpaceMapper;
+import com.ca.capicturebackend.model.entity.Space;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 空间额度管理
+ * <p>
+ * 空间已用额度以 Redis 为准：上传前用 Lua 脚本原子地检查并预占额度，上传成功后确认、失败后释放，
+ * 并发上传不会超出额度；额度变化先累计在 Redis 中，定时批量写回 space 表，热门团队空间不再每次上传都争抢同一行锁。
+ * <p>
+ * Redis 中每个空间一个 Hash：usedSize / usedCount 已用额度，reservedSize / reservedCount 预占中的额度，
+ * pendingSize / pendingCount 还没写回数据库的变化量。
+ * <p>
+ * 每笔预占同时记录在空间的有序集合中（成员为 预占 id:条数:大小，分数为过期时间），确认或释放时移除；
+ * 实例崩溃等原因没有确认也没有释放的预占，在之后的预占、结算脚本中按过期时间自动释放，不会永久占用额度。
+ */
+@Slf4j
+@Component
+public class SpaceQuotaManager {
+
+    // 空间额度在 Redis 中的保留时间，远大于写回间隔，过期时不会有未写回的变化量
+    private static final long QUOTA_TTL_SECONDS = 24 * 60 * 60L;
+
+    // 预占的最长持有时间，超过后视为泄漏，自动释放
+    private static final long RESERVATION_TIMEOUT_MILLIS = 10 * 60 * 1000L;
+
+    // 结果：额度不存在（需要从数据库加载）
+    private static final long RESULT_NOT_LOADED = -1L;
+
+    private static final long RESULT_COUNT_EXCEEDED = 1L;
+
+    private static final long RESULT_SIZE_EXCEEDED = 2L;
+
+    /**
+     * 从数据库加载额度（已存在时不覆盖），预占额度从 0 开始，同时清除旧的预占记录
+     * KEYS[1] 额度 key，KEYS[2] 预占记录；ARGV: usedSize, usedCount, ttl
+     */
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+                    "redis.call('DEL', KEYS[2]) " +
+                    "redis.call('HSET', KEYS[1], 'usedSize', ARGV[1], 'usedCount', ARGV[2], " +
+                    "'reservedSize', 0, 'reservedCount', 0, 'pendingSize', 0, 'pendingCount', 0) " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+                    "return 1", Long.class);
+
+    /**
+     * 预占额度，沿用原有规则：已用（含预占）条数达到上限、或已用（含预占）大小达到上限时拒绝
+     * KEYS[1] 额度 key，KEYS[2] 预占记录；ARGV: count, size, maxCount, maxSize, ttl, 预占成员, 过期时间, 当前时间
+     */
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+                    releaseExpiredScript("KEYS[2]", "ARGV[8]") +
+                    "local q = redis.call('HMGET', KEYS[1], 'usedSize', 'usedCount', 'reservedSize', 'reservedCount') " +
+                    "local count = tonumber(ARGV[1]) " +
+                    "if count > 0 and tonumber(q[2]) + tonumber(q[4]) + count > tonumber(ARGV[3]) then return 1 end " +
+                    "if tonumber(q[1]) + tonumber(q[3]) >= tonumber(ARGV[4]) then return 2 end " +
+                    "redis.call('HINCRBY', KEYS[1], 'reservedCount', count) " +
+                    "redis.call('HINCRBY', KEYS[1], 'reservedSize', ARGV[2]) " +
+                    "redis.call('ZADD', KEYS[2], ARGV[7], ARGV[6]) " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[5]) " +
+                    "redis.call('EXPIRE', KEYS[2], ARGV[5]) " +
+                    "return 0", Long.class);
+
+    /**
+     * 释放预占并记入实际变化量（释放时实际变化量为 0），同时更新空间排行；
+     * 预占已经过期释放时（不在预占记录中）不再重复释放
+     * KEYS[1] 额度 key，KEYS[2] 待写回的空间集合，KEYS[3] 空间排行，KEYS[4] 预占记录；
+     * ARGV: reservedCount, reservedSize, countDelta, sizeDelta, spaceId, 预占成员（没有预占时为空）, 当前时间
+     */
+    private static final RedisScript<Long> SETTLE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+                    releaseExpiredScript("KEYS[4]", "ARGV[7]") +
+                    "if ARGV[6] ~= '' and redis.call('ZREM', KEYS[4], ARGV[6]) == 1 then " +
+                    "redis.call('HINCRBY', KEYS[1], 'reservedCount', -tonumber(ARGV[1])) " +
+                    "redis.call('HINCRBY', KEYS[1], 'reservedSize', -tonumber(ARGV[2])) " +
+                    "end " +
+                    "if tonumber(ARGV[3]) ~= 0 or tonumber(ARGV[4]) ~= 0 then " +
+                    "redis.call('HINCRBY', KEYS[1], 'usedCount', ARGV[3]) " +
+                    "local usedSize = redis.call('HINCRBY', KEYS[1], 'usedSize', ARGV[4]) " +
+                    "redis.call('ZADD', KEYS[3], usedSize, ARGV[5]) " +
+                    "redis.call('HINCRBY', KEYS[1], 'pendingCount', ARGV[3]) " +
+                    "redis.call('HINCRBY', KEYS[1], 'pendingSize', ARGV[4]) " +
+                    "redis.call('SADD', KEYS[2], ARGV[5]) " +
+                    "end " +
+                    "return 0", Long.class);
+
+    /**
+     * 取出并清零待写回的变化量，返回 {pendingSize, pendingCount}
+     * KEYS[1] 额度 key
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> DRAIN_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return {0, 0} end " +
+                    "local q = redis.call('HMGET', KEYS[1], 'pendingSize', 'pendingCount') " +
+                    "redis.call('HSET', KEYS[1], 'pendingSize', 0, 'pendingCount', 0) " +
+                    "return {tonumber(q[1]), tonumber(q[2])}", List.class);
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Resource
+    private SpaceMapper spaceMapper;
+
+    /**
+     * 预占额度，额度不足时抛出异常
+     *
+     * @param space 空间（需要包含最新的 maxCount / maxSize）
+     * @param count 预占的图片数（更新已有图片时为 0）
+     * @param size  预估的图片大小，未知时为 0
+     * @return 预占凭证，上传结束后必须 {@link #commit} 或 {@link #release}
+     */
+    public QuotaReservation reserve(Space space, int count, long size) {
+        QuotaReservation reservation = new QuotaReservation(space.getId(), count, size);
+        List<String> keys = Arrays.asList(getQuotaKey(space.getId()), getReservationKey(space.getId()));
+        long now = System.currentTimeMillis();
+        Object[] args = {String.valueOf(count), String.valueOf(size), String.valueOf(space.getMaxCount()),
+                String.valueOf(space.getMaxSize()), String.valueOf(QUOTA_TTL_SECONDS), reservation.getMember(),
+                String.valueOf(now + RESERVATION_TIMEOUT_MILLIS), String.valueOf(now)};
+        Long result = redisTemplate.execute(RESERVE_SCRIPT, keys, args);
+        if (result != null && result == RESULT_NOT_LOADED) {
+            load(space.getId());
+            result = redisTemplate.execute(RESERVE_SCRIPT, keys, args);
+        }
+        if (result != null && result == RESULT_COUNT_EXCEEDED) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间条数不足");
+        }
+        if (result != null && result == RESULT_SIZE_EXCEEDED) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间额度不足");
+        }
+        return reservation;
+    }
+
+    /**
+     * 确认预占，记入实际的变化量
+     *
+     * @param countDelta 实际增加的图片数
+     * @param sizeDelta  实际增加的大小（更新图片时为新旧图片大小之差）
+     */
+    public void commit(QuotaReservation reservation, int countDelta, long sizeDelta) {
+        settle(reservation.getSpaceId(), reservation, countDelta, sizeDelta);
+    }
+
+    /**
+     * 释放预占（上传或入库失败）
+     */
+    public void release(QuotaReservation reservation) {
+        try {
+            settle(reservation.getSpaceId(), reservation, 0, 0L);
+        } catch (Exception e) {
+            log.error("释放空间额度失败，spaceId={}", reservation.getSpaceId(), e);
+        }
+    }
+
+    /**
+     * 直接调整已用额度（如删除图片）
+     */
+    public void adjust(Long spaceId, int countDelta, long sizeDelta) {
+        settle(spaceId, null, countDelta, sizeDelta);
+    }
+
+    /**
+     * @param reservation 要结算的预占，直接调整额度时为 null
+     */
+    private void settle(Long spaceId, QuotaReservation reservation, int countDelta, long sizeDelta) {
+        List<String> keys = Arrays.asList(getQuotaKey(spaceId), getDirtyKey(), SpaceRankManager.getRankKey(),
+                getReservationKey(spaceId));
+        Object[] args = {String.valueOf(reservation == null ? 0 : reservation.getCount()),
+                String.valueOf(reservation == null ? 0L : reservation.getSize()),
+                String.valueOf(countDelta), String.valueOf(sizeDelta), String.valueOf(spaceId),
+                reservation == null ? "" : reservation.getMember(), String.valueOf(System.currentTimeMillis())};
+        Long result = redisTemplate.execute(SETTLE_SCRIPT, keys, args);
+        if (result != null && result == RESULT_NOT_LOADED) {
+            // 额度已过期（长时间没有上传），直接从数据库加载后再记入
+            load(spaceId);
+            redisTemplate.execute(SETTLE_SCRIPT, keys, args);
+        }
+    }
+
+    /**
+     * 删除空间时清除额度
+     */
+    public void evict(Long spaceId) {
+        redisTemplate.delete(Arrays.asList(getQuotaKey(spaceId), getReservationKey(spaceId)));
+        redisTemplate.opsForSet().remove(getDirtyKey(), String.valueOf(spaceId));
+        redisTemplate.opsForZSet().remove(SpaceRankManager.getRankKey(), String.valueOf(spaceId));
+    }
+
+    /**
+     * 获取 Redis 中的已用大小（包括还没写回数据库的部分），额度未加载时返回 null
+     */
+    public List<Object> getUsedSizes(List<Long> spaceIds) {
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long spaceId : spaceIds) {
+                connection.hashCommands().hGet(getQuotaKey(spaceId).getBytes(StandardCharsets.UTF_8),
+                        "usedSize".getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 定时把额度变化量批量写回 space 表
+     */
+    @Scheduled(fixedDelay = 5 * 1000)
+    public void flush() {
+        Set<String> spaceIds = redisTemplate.opsForSet().members(getDirtyKey());
+        if (spaceIds == null || spaceIds.isEmpty()) {
+            return;
+        }
+        for (String spaceIdStr : spaceIds) {
+            // 先移出集合再取变化量，期间新的变化会重新加入集合，不会丢失
+            redisTemplate.opsForSet().remove(getDirtyKey(), spaceIdStr);
+            Long spaceId = Long.valueOf(spaceIdStr);
+            List<?> pending = redisTemplate.execute(DRAIN_SCRIPT, Collections.singletonList(getQuotaKey(spaceId)));
+            long pendingSize = toLong(pending, 0);
+            long pendingCount = toLong(pending, 1);
+            if (pendingSize == 0 && pendingCount == 0) {
+                continue;
+            }
+            try {
+                spaceMapper.update(null, Wrappers.<Space>lambdaUpdate()
+                        .eq(Space::getId, spaceId)
+                        .setSql("totalSize = totalSize + {0}", pendingSize)
+                        .setSql("totalCount = totalCount + {0}", pendingCount));
+            } catch (Exception e) {
+                log.error("空间额度写回失败，spaceId={}", spaceId, e);
+                // 放回 Redis，下次重试
+                redisTemplate.opsForHash().increment(getQuotaKey(spaceId), "pendingSize", pendingSize);
+                redisTemplate.opsForHash().increment(getQuotaKey(spaceId), "pendingCount", pendingCount);
+                redisTemplate.opsForSet().add(getDirtyKey(), spaceIdStr);
+            }
+        }
+    }
+
+    /**
+     * 从数据库加载已用额度
+     */
+    private void load(Long spaceId) {
+        Space space = spaceMapper.selectById(spaceId);
+        if (space == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+        }
+        redisTemplate.execute(LOAD_SCRIPT, Arrays.asList(getQuotaKey(spaceId), getReservationKey(spaceId)),
+                String.valueOf(space.getTotalSize() == null ? 0L : space.getTotalSize()),
+                String.valueOf(space.getTotalCount() == null ? 0L : space.getTotalCount()),
+                String.valueOf(QUOTA_TTL_SECONDS));
+    }
+
+    /**
+     * 释放已过期的预占：从额度中减去并移出预占记录
+     *
+     * @param reservationKey 预占记录的 KEYS 引用
+     * @param now            当前时间的 ARGV 引用
+     */
+    private static String releaseExpiredScript(String reservationKey, String now) {
+        return "local expired = redis.call('ZRANGEBYSCORE', " + reservationKey + ", '-inf', " + now + ") " +
+                "for _, member in ipairs(expired) do " +
+                "local count, size = string.match(member, ':(%-?%d+):(%-?%d+)$') " +
+                "redis.call('HINCRBY', KEYS[1], 'reservedCount', -tonumber(count)) " +
+                "redis.call('HINCRBY', KEYS[1], 'reservedSize', -tonumber(size)) " +
+                "end " +
+                "if #expired > 0 then redis.call('ZREMRANGEBYSCORE', " + reservationKey + ", '-inf', " + now + ") end ";
+    }
+
+    private static long toLong(List<?> values, int index) {
+        if (values == null || values.size() <= index || values.get(index) == null) {
+            return 0L;
+        }
+        return ((Number) values.get(index)).longValue();
+    }
+
+    private String getQuotaKey(Long spaceId) {
+        return CommonKeyEnum.SPACE_QUOTA_PREFIX.key(String.valueOf(spaceId));
+    }
+
+    private String getReservationKey(Long spaceId) {
+        return CommonKeyEnum.SPACE_QUOTA_PREFIX.key(String.valueOf(spaceId), "reservations");
+    }
+
+    private String getDirtyKey() {
+        return CommonKeyEnum.SPACE_QUOTA_PREFIX.key("dirty");
+    }
+
+    /**
+     * 额度预占凭证
+     */
+    @Getter
+    public static class QuotaReservation {
+
+        private final Long spaceId;
+
+        private final int count;
+
+        private final long size;
+
+        // 预占记录中的成员：预占 id:条数:大小
+        private final String member;
+
+        QuotaReservation(Long spaceId, int count, long size) {
+            this.spaceId = spaceId;
+            this.count = count;
+            this.size = size;
+            this.member = IdUtil.fastSimpleUUID() + ":" + count + ":" + size;
+        }
+    }
+}
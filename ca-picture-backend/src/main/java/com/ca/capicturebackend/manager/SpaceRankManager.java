@@ -0,0 +1,120 @@
+package com.ca.capicturebackend.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.ca.capicturebackend.mapper.SpaceMapper;
+import com.ca.capicturebackend.model.entity.Space;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 空间使用排行
+ * <p>
+ * 用 Redis 有序集合按已用大小维护所有空间，额度变化时由 {@link SpaceQuotaManager} 在同一个 Lua 脚本中更新，
+ * 查询前 N 名只需 O(log n + N)，不再对 space 表全表排序；定期与数据库对账，修正遗漏的变化并移除已删除的空间。
+ */
+@Slf4j
+@Component
+public class SpaceRankManager {
+
+    // 对账时每批读取的空间数
+    private static final int RECONCILE_BATCH_SIZE = 1000;
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Resource
+    private SpaceMapper spaceMapper;
+
+    @Resource
+    private SpaceQuotaManager spaceQuotaManager;
+
+    /**
+     * 获取已用大小前 N 的空间（id、名称、创建人、已用大小），排行还没有建立时返回 null
+     */
+    public List<Space> getTopSpaces(int topN) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = redisTemplate.opsForZSet()
+                .reverseRangeWithScores(getRankKey(), 0, topN - 1);
+        if (CollUtil.isEmpty(tuples)) {
+            return null;
+        }
+        List<Long> spaceIds = tuples.stream()
+                .map(tuple -> Long.valueOf(tuple.getValue()))
+                .collect(Collectors.toList());
+        Map<Long, Space> spaceMap = spaceMapper.selectList(Wrappers.<Space>lambdaQuery()
+                        .select(Space::getId, Space::getSpaceName, Space::getUserId)
+                        .in(Space::getId, spaceIds))
+                .stream()
+                .collect(Collectors.toMap(Space::getId, Function.identity()));
+        List<Space> result = new ArrayList<>(tuples.size());
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            Space space = spaceMap.get(Long.valueOf(tuple.getValue()));
+            // 已删除但还没对账的空间
+            if (space == null) {
+                continue;
+            }
+            space.setTotalSize(tuple.getScore() == null ? 0L : tuple.getScore().longValue());
+            result.add(space);
+        }
+        return result;
+    }
+
+    /**
+     * 定期与数据库对账：已用大小以 Redis 中的额度为准（包含还没写回的部分），没有加载额度的空间取数据库的值
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000, initialDelay = 10 * 1000)
+    public void reconcile() {
+        String rankKey = getRankKey();
+        Set<String> existingIds = new HashSet<>();
+        long lastId = 0L;
+        while (true) {
+            List<Space> spaceList = spaceMapper.selectList(Wrappers.<Space>lambdaQuery()
+                    .select(Space::getId, Space::getTotalSize)
+                    .gt(Space::getId, lastId)
+                    .orderByAsc(Space::getId)
+                    .last("limit " + RECONCILE_BATCH_SIZE));
+            if (CollUtil.isEmpty(spaceList)) {
+                break;
+            }
+            List<Long> spaceIds = spaceList.stream().map(Space::getId).collect(Collectors.toList());
+            List<Object> usedSizes = spaceQuotaManager.getUsedSizes(spaceIds);
+            Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>(spaceList.size());
+            for (int i = 0; i < spaceList.size(); i++) {
+                Space space = spaceList.get(i);
+                Object usedSize = usedSizes.get(i);
+                long totalSize = usedSize != null ? Long.parseLong(usedSize.toString())
+                        : (space.getTotalSize() == null ? 0L : space.getTotalSize());
+                String member = String.valueOf(space.getId());
+                tuples.add(ZSetOperations.TypedTuple.of(member, (double) totalSize));
+                existingIds.add(member);
+            }
+            redisTemplate.opsForZSet().add(rankKey, tuples);
+            lastId = spaceIds.get(spaceIds.size() - 1);
+        }
+        // 移除已删除的空间
+        Long rankSize = redisTemplate.opsForZSet().zCard(rankKey);
+        if (rankSize != null && rankSize > existingIds.size()) {
+            Set<String> members = redisTemplate.opsForZSet().range(rankKey, 0, -1);
+            if (members != null) {
+                Object[] staleIds = members.stream().filter(member -> !existingIds.contains(member)).toArray();
+                if (staleIds.length > 0) {
+                    redisTemplate.opsForZSet().remove(rankKey, staleIds);
+                }
+            }
+        }
+        log.info("空间排行对账完成，空间数={}", existingIds.size());
+    }
+
+    public static String getRankKey() {
+        return CommonKeyEnum.SPACE_RANK_PREFIX.key("totalSize");
+    }
+}
@@ -0,0 +1,293 @@
+package com.ca.capicturebackend.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.ca.capicturebackend.mapper.PictureMapper;
+import com.ca.capicturebackend.model.entity.Picture;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 空间上传统计
+ * <p>
+ * 按天记录每个范围（空间 / 公共图库 / 全部）、每个用户的上传数量，每个范围的 Hash 以日期为字段，
+ * 上传、删除图片时增减对应日期的计数，按周、按月统计时合并每天的计数，查询代价只与天数有关，与图片数量无关。
+ * 历史数据由回填任务从 picture 表统计，回填完成前仍按原 SQL 统计。
+ */
+@Slf4j
+@Component
+public class SpaceUploadStatManager {
+
+    // 回填时每批读取的图片数
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private static final String SCOPE_ALL = "all";
+
+    private static final String SCOPE_PUBLIC = "public";
+
+    private static final String USER_ALL = "all";
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private CacheManager cacheManager;
+
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("uploadStatBackfill-").build());
+
+    /**
+     * 记录上传（新增图片）
+     */
+    public void recordUpload(Long spaceId, Long userId, Date createTime) {
+        Picture picture = new Picture();
+        picture.setSpaceId(spaceId);
+        picture.setUserId(userId);
+        picture.setCreateTime(createTime);
+        increment(Collections.singletonList(picture), 1);
+    }
+
+    /**
+     * 记录删除，图片需要包含 spaceId、userId、createTime
+     */
+    public void recordDelete(List<Picture> pictureList) {
+        increment(pictureList, -1);
+    }
+
+    /**
+     * 删除空间的统计（空间的图片已清理完）
+     */
+    public void evictSpace(Long spaceId) {
+        cacheManager.deleteRedisCacheByPrefix(getStatKey(String.valueOf(spaceId), ""));
+    }
+
+    /**
+     * 获取上传数量，按时间维度（day / week / month）合并并按时间升序，回填还没有完成时返回 null
+     *
+     * @param spaceId   空间 id，queryPublic、queryAll 时为 null
+     * @param queryPublic 是否统计公共图库
+     * @param queryAll  是否统计全部图片
+     * @param userId    用户 id，为 null 时统计所有用户
+     */
+    public Map<String, Long> getUploadCounts(Long spaceId, boolean queryPublic, boolean queryAll, Long userId,
+                                             String timeDimension) {
+        if (!Boolean.TRUE.toString().equals(redisTemplate.opsForValue().get(getBackfilledKey()))) {
+            return null;
+        }
+        String scope = queryAll ? SCOPE_ALL : (queryPublic ? SCOPE_PUBLIC : String.valueOf(spaceId));
+        String user = userId == null ? USER_ALL : String.valueOf(userId);
+        Map<Object, Object> dayCounts = redisTemplate.opsForHash().entries(getStatKey(scope, user));
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<Object, Object> entry : dayCounts.entrySet()) {
+            long count = Long.parseLong(entry.getValue().toString());
+            if (count <= 0) {
+                continue;
+            }
+            LocalDate day = LocalDate.parse(entry.getKey().toString());
+            result.merge(toPeriod(day, timeDimension), count, Long::sum);
+        }
+        return result;
+    }
+
+    /**
+     * 获取图片总数（所有用户每天上传数量之和，不区分审核状态），回填还没有完成时返回 null
+     */
+    public Long getTotalCount(Long spaceId, boolean queryPublic, boolean queryAll) {
+        if (!Boolean.TRUE.toString().equals(redisTemplate.opsForValue().get(getBackfilledKey()))) {
+            return null;
+        }
+        String scope = queryAll ? SCOPE_ALL : (queryPublic ? SCOPE_PUBLIC : String.valueOf(spaceId));
+        List<Object> dayCounts = redisTemplate.opsForHash().values(getStatKey(scope, USER_ALL));
+        long total = 0L;
+        for (Object dayCount : dayCounts) {
+            total += Long.parseLong(dayCount.toString());
+        }
+        return Math.max(total, 0L);
+    }
+
+    /**
+     * 回填历史数据（仅统计今天之前的数据，今天的计数由上传、删除时实时维护）
+     * <p>
+     * 先把 picture 表的统计累加到临时的 Hash 中，全部扫描完后再覆盖正式 Hash 中对应日期的计数，内存占用与图片数量无关。
+     * 可以重复执行，用于修正计数偏差。
+     */
+    public void submitBackfill() {
+        backfillExecutor.execute(this::backfill);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+
+    private void backfill() {
+        // 多个实例只由一个实例执行
+        RLock lock = redissonClient.getLock(CommonKeyEnum.SPACE_UPLOAD_STAT_PREFIX.key("backfill", "lock"));
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            String today = DateUtil.formatDate(new Date());
+            String tempKeysKey = CommonKeyEnum.SPACE_UPLOAD_STAT_PREFIX.key("backfill", "keys");
+            // 清理上次中断的回填留下的临时数据
+            Set<String> staleKeys = redisTemplate.opsForSet().members(tempKeysKey);
+            if (CollUtil.isNotEmpty(staleKeys)) {
+                for (String staleKey : staleKeys) {
+                    redisTemplate.delete(getBackfillKey(staleKey));
+                }
+            }
+            redisTemplate.delete(tempKeysKey);
+            long scanned = 0L;
+            long lastId = 0L;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Picture> pictureList = pictureMapper.selectList(Wrappers.<Picture>lambdaQuery()
+                        .select(Picture::getId, Picture::getSpaceId, Picture::getUserId, Picture::getCreateTime)
+                        .gt(Picture::getId, lastId)
+                        .orderByAsc(Picture::getId)
+                        .last("limit " + BACKFILL_BATCH_SIZE));
+                if (CollUtil.isEmpty(pictureList)) {
+                    break;
+                }
+                // 在内存中按范围和日期汇总本批数据后再写入临时 Hash
+                Map<String, Map<String, Long>> batchCounts = new HashMap<>();
+                for (Picture picture : pictureList) {
+                    String day = DateUtil.formatDate(picture.getCreateTime());
+                    if (day.compareTo(today) >= 0) {
+                        continue;
+                    }
+                    for (String statKey : getStatKeys(picture)) {
+                        batchCounts.computeIfAbsent(statKey, key -> new HashMap<>()).merge(day, 1L, Long::sum);
+                    }
+                }
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Map.Entry<String, Map<String, Long>> entry : batchCounts.entrySet()) {
+                        String tempKey = getBackfillKey(entry.getKey());
+                        connection.setCommands().sAdd(bytes(tempKeysKey), bytes(entry.getKey()));
+                        for (Map.Entry<String, Long> dayCount : entry.getValue().entrySet()) {
+                            connection.hashCommands().hIncrBy(bytes(tempKey), bytes(dayCount.getKey()), dayCount.getValue());
+                        }
+                    }
+                    return null;
+                });
+                scanned += pictureList.size();
+                lastId = pictureList.get(pictureList.size() - 1).getId();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            // 覆盖正式 Hash 中今天之前的计数
+            Set<String> statKeys = redisTemplate.opsForSet().members(tempKeysKey);
+            if (statKeys != null) {
+                for (String statKey : statKeys) {
+                    String tempKey = getBackfillKey(statKey);
+                    Map<Object, Object> dayCounts = redisTemplate.opsForHash().entries(tempKey);
+                    if (!dayCounts.isEmpty()) {
+                        redisTemplate.opsForHash().putAll(statKey, dayCounts);
+                    }
+                    redisTemplate.delete(tempKey);
+                }
+            }
+            redisTemplate.delete(tempKeysKey);
+            redisTemplate.opsForValue().set(getBackfilledKey(), Boolean.TRUE.toString());
+            log.info("上传统计回填完成，图片数={}, 统计数={}", scanned, statKeys == null ? 0 : statKeys.size());
+        } catch (Exception e) {
+            log.error("上传统计回填失败", e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void increment(List<Picture> pictureList, long delta) {
+        if (CollUtil.isEmpty(pictureList)) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Picture picture : pictureList) {
+                    Date createTime = picture.getCreateTime() == null ? new Date() : picture.getCreateTime();
+                    byte[] day = bytes(DateUtil.formatDate(createTime));
+                    for (String statKey : getStatKeys(picture)) {
+                        connection.hashCommands().hIncrBy(bytes(statKey), day, delta);
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // 统计不影响上传、删除，偏差可以通过重新回填修正
+            log.error("更新上传统计失败", e);
+        }
+    }
+
+    /**
+     * 一张图片影响的统计：所在范围的该用户和所有用户、全部图片的该用户和所有用户
+     */
+    private List<String> getStatKeys(Picture picture) {
+        String scope = picture.getSpaceId() == null ? SCOPE_PUBLIC : String.valueOf(picture.getSpaceId());
+        String user = String.valueOf(picture.getUserId());
+        return Arrays.asList(
+                getStatKey(scope, user),
+                getStatKey(scope, USER_ALL),
+                getStatKey(SCOPE_ALL, user),
+                getStatKey(SCOPE_ALL, USER_ALL));
+    }
+
+    /**
+     * 把日期转换为统计周期，格式与 MySQL DATE_FORMAT 的 %Y-%m-%d、%Y-%u、%Y-%m 一致
+     */
+    static String toPeriod(LocalDate day, String timeDimension) {
+        switch (timeDimension) {
+            case "day":
+                return day.toString();
+            case "week":
+                // %u：周一为一周的第一天，1 月 1 日所在的周有 4 天及以上属于当年时为第 1 周，否则为第 0 周
+                int firstDayOffset = LocalDate.of(day.getYear(), 1, 1).getDayOfWeek().getValue()
+                        - DayOfWeek.MONDAY.getValue();
+                int week = (day.getDayOfYear() - 1 + firstDayOffset) / 7 + (firstDayOffset <= 3 ? 1 : 0);
+                return String.format("%d-%02d", day.getYear(), week);
+            case "month":
+                return String.format("%d-%02d", day.getYear(), day.getMonthValue());
+            default:
+                throw new IllegalArgumentException("不支持的时间维度：" + timeDimension);
+        }
+    }
+
+    private String getStatKey(String scope, String user) {
+        return CommonKeyEnum.SPACE_UPLOAD_STAT_PREFIX.key(scope, user);
+    }
+
+    private String getBackfillKey(String statKey) {
+        return CommonKeyEnum.SPACE_UPLOAD_STAT_PREFIX.key("backfill", statKey);
+    }
+
+    private String getBackfilledKey() {
+        return CommonKeyEnum.SPACE_UPLOAD_STAT_PREFIX.key("backfilled");
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,174 @@
+package com.ca.capicturebackend.manager.auth;
+
+import com.ca.capicturebackend.model.entity.Picture;
+import com.ca.capicturebackend.model.entity.Space;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 空间权限本地缓存
+ * <p>
+ * 缓存鉴权用到的数据：图片所属空间、空间类型与创建人、成员记录所属空间、用户在空间中的角色。
+ * 其中只有成员角色会变化，成员增删改、空间删除时需调用对应的失效方法；
+ * 其余数据创建后不会改变，过期时间只是兜底。
+ * <p>
+ * 每个空间在 Redis 中维护一个版本号，成员角色变化、空间删除时自增版本号，
+ * 读取空间和成员角色时先比较版本号，版本不一致才重新加载，所有实例上的缓存同时失效。
+ * 版本号读取失败时直接加载，不影响鉴权的正确性。
+ */
+@Slf4j
+@Component
+public class SpaceUserAuthCache {
+
+    /**
+     * 不是空间成员时缓存的角色（Caffeine 不缓存 null）
+     */
+    public static final String NO_ROLE = "";
+
+    // 没有版本号时（从未变化过）的默认版本
+    private static final String INITIAL_VERSION = "0";
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+
+    // 图片 id => 图片（仅 id、spaceId、userId）
+    private final Cache<Long, Picture> pictureCache = Caffeine.newBuilder()
+            .maximumSize(50_000L)
+            .expireAfterWrite(30L, TimeUnit.MINUTES)
+            .build();
+
+    // 空间 id => 带版本的空间（仅 id、spaceType、userId）
+    private final Cache<Long, Versioned<Space>> spaceCache = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterWrite(30L, TimeUnit.MINUTES)
+            .build();
+
+    // 空间成员 id => 空间 id
+    private final Cache<Long, Long> spaceUserSpaceCache = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterWrite(30L, TimeUnit.MINUTES)
+            .build();
+
+    // spaceId:userId => 带版本的空间角色
+    private final Cache<String, Versioned<String>> spaceRoleCache = Caffeine.newBuilder()
+            .maximumSize(100_000L)
+            .expireAfterWrite(30L, TimeUnit.MINUTES)
+            .build();
+
+    public Picture getPicture(Long pictureId, Function<Long, Picture> loader) {
+        return pictureCache.get(pictureId, loader);
+    }
+
+    public Space getSpace(Long spaceId, Function<Long, Space> loader) {
+        String version = getVersion(spaceId);
+        if (version == null) {
+            return loader.apply(spaceId);
+        }
+        Versioned<Space> cached = spaceCache.getIfPresent(spaceId);
+        if (cached != null && version.equals(cached.version)) {
+            return cached.value;
+        }
+        Space space = loader.apply(spaceId);
+        if (space == null) {
+            spaceCache.invalidate(spaceId);
+            return null;
+        }
+        spaceCache.put(spaceId, new Versioned<>(version, space));
+        return space;
+    }
+
+    public Long getSpaceIdBySpaceUserId(Long spaceUserId, Function<Long, Long> loader) {
+        return spaceUserSpaceCache.get(spaceUserId, loader);
+    }
+
+    public String getSpaceRole(Long spaceId, Long userId, Function<String, String> loader) {
+        String roleKey = getRoleKey(spaceId, userId);
+        String version = getVersion(spaceId);
+        if (version == null) {
+            return loader.apply(roleKey);
+        }
+        Versioned<String> cached = spaceRoleCache.getIfPresent(roleKey);
+        if (cached != null && version.equals(cached.version)) {
+            return cached.value;
+        }
+        String spaceRole = loader.apply(roleKey);
+        spaceRoleCache.put(roleKey, new Versioned<>(version, spaceRole));
+        return spaceRole;
+    }
+
+    /**
+     * 成员角色变化（添加、修改、移除成员）
+     */
+    public void evictSpaceRole(Long spaceId, Long userId) {
+        bumpVersion(spaceId);
+        spaceRoleCache.invalidate(getRoleKey(spaceId, userId));
+    }
+
+    /**
+     * 成员记录被删除
+     * <p>
+     * 成员 id 不会复用，其他实例上残留的映射不会被用到，只清除本地缓存
+     */
+    public void evictSpaceUser(Long spaceUserId) {
+        spaceUserSpaceCache.invalidate(spaceUserId);
+    }
+
+    /**
+     * 空间被删除，清除空间及其全部成员角色
+     */
+    public void evictSpace(Long spaceId) {
+        bumpVersion(spaceId);
+        spaceCache.invalidate(spaceId);
+        String prefix = spaceId + ":";
+        spaceRoleCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        spaceUserSpaceCache.asMap().values().removeIf(spaceId::equals);
+    }
+
+    /**
+     * 读取空间的版本号，读取失败时返回 null
+     */
+    private String getVersion(Long spaceId) {
+        try {
+            String version = redisTemplate.opsForValue().get(getVersionKey(spaceId));
+            return version == null ? INITIAL_VERSION : version;
+        } catch (Exception e) {
+            log.warn("读取空间权限版本号失败，spaceId={}", spaceId, e);
+            return null;
+        }
+    }
+
+    private void bumpVersion(Long spaceId) {
+        redisTemplate.opsForValue().increment(getVersionKey(spaceId));
+    }
+
+    private String getVersionKey(Long spaceId) {
+        return CommonKeyEnum.SPACE_AUTH_VERSION_PREFIX.key(String.valueOf(spaceId));
+    }
+
+    private String getRoleKey(Long spaceId, Long userId) {
+        return spaceId + ":" + userId;
+    }
+
+    /**
+     * 带版本号的缓存值
+     */
+    private static class Versioned<T> {
+
+        private final String version;
+
+        private final T value;
+
+        private Versioned(String version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
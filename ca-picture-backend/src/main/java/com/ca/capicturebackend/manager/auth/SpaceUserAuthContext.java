@@ -2,12 +2,11 @@ package com.ca.capicturebackend.manager.auth;
 
 import com.ca.capicturebackend.model.entity.Picture;
 import com.ca.capicturebackend.model.entity.Space;
-import com.ca.capicturebackend.model.entity.SpaceUser;
 import lombok.Data;
 
 /**
  * SpaceUserAuthContext
- * 表示用户在特定空间内的授权上下文，包括关联的图片、空间和用户信息。
+ * 表示用户在特定空间内的授权上下文，包括关联的图片和空间信息。
  */
 @Data
 public class SpaceUserAuthContext {
@@ -41,9 +40,4 @@ public class SpaceUserAuthContext {
      * 空间信息
      */
     private Space space;
-
-    /**
-     * 空间用户信息
-     */
-    private SpaceUser spaceUser;
 }
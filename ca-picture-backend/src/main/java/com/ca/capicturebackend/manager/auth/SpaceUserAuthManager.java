@@ -16,7 +16,10 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 空间成员权限管理器
@@ -30,11 +33,24 @@ public class SpaceUserAuthManager {
     @Resource
     private SpaceUserService spaceUserService;
 
+    @Resource
+    private SpaceUserAuthCache spaceUserAuthCache;
+
     public static final SpaceUserAuthConfig SPACE_USER_AUTH_CONFIG;
 
+    /**
+     * 角色 => 权限列表（启动时解析一次，只读）
+     */
+    private static final Map<String, List<String>> ROLE_PERMISSIONS_MAP;
+
     static {
         String json = ResourceUtil.readUtf8Str("biz/spaceUserAuthConfig.json");
         SPACE_USER_AUTH_CONFIG = JSONUtil.toBean(json, SpaceUserAuthConfig.class);
+        Map<String, List<String>> rolePermissionsMap = new HashMap<>();
+        for (SpaceUserRole role : SPACE_USER_AUTH_CONFIG.getRoles()) {
+            rolePermissionsMap.put(role.getKey(), Collections.unmodifiableList(new ArrayList<>(role.getPermissions())));
+        }
+        ROLE_PERMISSIONS_MAP = Collections.unmodifiableMap(rolePermissionsMap);
     }
 
     /**
@@ -47,14 +63,29 @@ public class SpaceUserAuthManager {
         if (StrUtil.isBlank(spaceUserRole)) {
             return new ArrayList<>();
         }
-        SpaceUserRole role = SPACE_USER_AUTH_CONFIG.getRoles().stream()
-                .filter(r -> r.getKey().equals(spaceUserRole))
-                .findFirst()
-                .orElse(null);
-        if (role == null) {
+        List<String> permissions = ROLE_PERMISSIONS_MAP.get(spaceUserRole);
+        if (permissions == null) {
             return new ArrayList<>();
         }
-        return role.getPermissions();
+        return permissions;
+    }
+
+    /**
+     * 获取用户在团队空间中的角色（带缓存），不是成员时返回空字符串
+     *
+     * @param spaceId
+     * @param userId
+     * @return
+     */
+    public String getSpaceRole(Long spaceId, Long userId) {
+        return spaceUserAuthCache.getSpaceRole(spaceId, userId, key -> {
+            SpaceUser spaceUser = spaceUserService.lambdaQuery()
+                    .eq(SpaceUser::getSpaceId, spaceId)
+                    .eq(SpaceUser::getUserId, userId)
+                    .select(SpaceUser::getSpaceRole)
+                    .one();
+            return spaceUser == null ? SpaceUserAuthCache.NO_ROLE : StrUtil.nullToEmpty(spaceUser.getSpaceRole());
+        });
     }
 
     public List<String> getPermissionList(Space space, User loginUser) {
@@ -84,16 +115,8 @@ public class SpaceUserAuthManager {
                     return new ArrayList<>();
                 }
             case TEAM:
-                // 团队空间，查询 SpaceUser 并获取角色和权限
-                SpaceUser spaceUser = spaceUserService.lambdaQuery()
-                        .eq(SpaceUser::getSpaceId, space.getId())
-                        .eq(SpaceUser::getUserId, loginUser.getId())
-                        .one();
-                if (spaceUser == null) {
-                    return new ArrayList<>();
-                } else {
-                    return getPermissionsByRole(spaceUser.getSpaceRole());
-                }
+                // 团队空间，获取成员角色对应的权限
+                return getPermissionsByRole(getSpaceRole(space.getId(), loginUser.getId()));
         }
         return new ArrayList<>();
     }
@@ -0,0 +1,39 @@
+package com.ca.capicturebackend.manager.auth;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.lang.reflect.Type;
+
+/**
+ * 保存 Spring 已解析的请求体
+ * <p>
+ * 接口方法内部通过 StpKit.SPACE.hasPermission 编程式鉴权时，请求体已被读取，
+ * 直接复用解析好的对象构造鉴权上下文，无需再次读取和解析
+ */
+@ControllerAdvice
+public class SpaceUserAuthRequestBodyAdvice extends RequestBodyAdviceAdapter {
+
+    public static final String REQUEST_BODY_ATTRIBUTE = SpaceUserAuthRequestBodyAdvice.class.getName() + ".REQUEST_BODY";
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter,
+                                Type targetType, Class<? extends HttpMessageConverter<?>> converterType) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(REQUEST_BODY_ATTRIBUTE, body, RequestAttributes.SCOPE_REQUEST);
+        }
+        return body;
+    }
+}
@@ -2,14 +2,13 @@ package com.ca.capicturebackend.manager.auth;
 
 import cn.dev33.satoken.stp.StpInterface;
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.convert.Convert;
 import cn.hutool.core.util.ObjUtil;
-import cn.hutool.core.util.ObjectUtil;
-import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.extra.servlet.ServletUtil;
-import cn.hutool.http.ContentType;
-import cn.hutool.http.Header;
+import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.ca.capicturebackend.config.RequestWrapper;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.manager.auth.model.SpaceUserPermissionConstant;
@@ -27,6 +26,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -40,6 +40,11 @@ import static com.ca.capicturebackend.constant.UserConstant.USER_LOGIN_STATE;
 @Component    // 保证此类被 SpringBoot 扫描，完成 Sa-Token 的自定义权限验证扩展
 public class StpInterfaceImpl implements StpInterface {
 
+    /**
+     * 请求属性：解析后的鉴权上下文
+     */
+    private static final String AUTH_CONTEXT_ATTRIBUTE = StpInterfaceImpl.class.getName() + ".AUTH_CONTEXT";
+
     @Value("${server.servlet.context-path}")
     private String contextPath;
 
@@ -58,6 +63,9 @@ public class StpInterfaceImpl implements StpInterface {
     @Resource
     private SpaceUserAuthManager spaceUserAuthManager;
 
+    @Resource
+    private SpaceUserAuthCache spaceUserAuthCache;
+
     /**
      * 返回一个账号所拥有的权限码集合
      */
@@ -85,28 +93,22 @@ public class StpInterfaceImpl implements StpInterface {
             return ADMIN_PERMISSIONS;
         }
         Long userId = loginUser.getId();
-        // 优先从上下文中获取 SpaceUser 对象
-        SpaceUser spaceUser = authContext.getSpaceUser();
-        if (spaceUser != null) {
-            return spaceUserAuthManager.getPermissionsByRole(spaceUser.getSpaceRole());
-        }
-        // 如果有 spaceUserId，必然是团队空间，通过数据库查询 SpaceUser 对象
+        // 如果有 spaceUserId，必然是团队空间，查询 SpaceUser 所属空间
         Long spaceUserId = authContext.getSpaceUserId();
         if (spaceUserId != null) {
-            spaceUser = spaceUserService.getById(spaceUserId);
-            if (spaceUser == null) {
+            Long spaceUserSpaceId = spaceUserAuthCache.getSpaceIdBySpaceUserId(spaceUserId, id -> {
+                SpaceUser dbSpaceUser = spaceUserService.lambdaQuery()
+                        .eq(SpaceUser::getId, id)
+                        .select(SpaceUser::getSpaceId)
+                        .one();
+                return dbSpaceUser == null ? null : dbSpaceUser.getSpaceId();
+            });
+            if (spaceUserSpaceId == null) {
                 throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "未找到空间用户信息");
             }
-            // 取出当前登录用户对应的 spaceUser
-            SpaceUser loginSpaceUser = spaceUserService.lambdaQuery()
-                    .eq(SpaceUser::getSpaceId, spaceUser.getSpaceId())
-                    .eq(SpaceUser::getUserId, userId)
-                    .one();
-            if (loginSpaceUser == null) {
-                return new ArrayList<>();
-            }
+            // 取出当前登录用户在该空间的角色
             // 这里会导致管理员在私有空间没有权限，可以再查一次库处理
-            return spaceUserAuthManager.getPermissionsByRole(loginSpaceUser.getSpaceRole());
+            return spaceUserAuthManager.getPermissionsByRole(spaceUserAuthManager.getSpaceRole(spaceUserSpaceId, userId));
         }
         // 如果没有 spaceUserId，尝试通过 spaceId 或 pictureId 获取 Space 对象并处理
         Long spaceId = authContext.getSpaceId();
@@ -117,10 +119,10 @@ public class StpInterfaceImpl implements StpInterface {
             if (pictureId == null) {
                 return ADMIN_PERMISSIONS;
             }
-            Picture picture = pictureService.lambdaQuery()
-                    .eq(Picture::getId, pictureId)
+            Picture picture = spaceUserAuthCache.getPicture(pictureId, id -> pictureService.lambdaQuery()
+                    .eq(Picture::getId, id)
                     .select(Picture::getId, Picture::getSpaceId, Picture::getUserId)
-                    .one();
+                    .one());
             if (picture == null) {
                 throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "未找到图片信息");
             }
@@ -136,7 +138,10 @@ public class StpInterfaceImpl implements StpInterface {
             }
         }
         // 获取 Space 对象
-        Space space = spaceService.getById(spaceId);
+        Space space = spaceUserAuthCache.getSpace(spaceId, id -> spaceService.lambdaQuery()
+                .eq(Space::getId, id)
+                .select(Space::getId, Space::getSpaceType, Space::getUserId)
+                .one());
         if (space == null) {
             throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "未找到空间信息");
         }
@@ -149,15 +154,8 @@ public class StpInterfaceImpl implements StpInterface {
                 return new ArrayList<>();
             }
         } else {
-            // 团队空间，查询 SpaceUser 并获取角色和权限
-            spaceUser = spaceUserService.lambdaQuery()
-                    .eq(SpaceUser::getSpaceId, spaceId)
-                    .eq(SpaceUser::getUserId, userId)
-                    .one();
-            if (spaceUser == null) {
-                return new ArrayList<>();
-            }
-            return spaceUserAuthManager.getPermissionsByRole(spaceUser.getSpaceRole());
+            // 团队空间，获取成员角色对应的权限
+            return spaceUserAuthManager.getPermissionsByRole(spaceUserAuthManager.getSpaceRole(spaceId, userId));
         }
     }
 
@@ -171,19 +169,37 @@ public class StpInterfaceImpl implements StpInterface {
     }
 
     /**
-     * 从请求中获取上下文对象
+     * 从请求中获取上下文对象（同一请求内只解析一次）
      */
     private SpaceUserAuthContext getAuthContextByRequest() {
         HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
-        String contentType = request.getHeader(Header.CONTENT_TYPE.getValue());
-        SpaceUserAuthContext authRequest;
-        // 获取请求参数
-        if (ContentType.JSON.getValue().equals(contentType)) {
-            String body = ServletUtil.getBody(request);
-            authRequest = JSONUtil.toBean(body, SpaceUserAuthContext.class);
+        Object cachedContext = request.getAttribute(AUTH_CONTEXT_ATTRIBUTE);
+        if (cachedContext instanceof SpaceUserAuthContext) {
+            return (SpaceUserAuthContext) cachedContext;
+        }
+        SpaceUserAuthContext authRequest = new SpaceUserAuthContext();
+        // 获取请求参数，只取鉴权需要的 id 字段，不信任请求中携带的实体对象
+        RequestWrapper requestWrapper = WebUtils.getNativeRequest(request, RequestWrapper.class);
+        Object requestBody = request.getAttribute(SpaceUserAuthRequestBodyAdvice.REQUEST_BODY_ATTRIBUTE);
+        if (requestWrapper != null) {
+            // 注解鉴权的 JSON 请求，请求体已由过滤器缓存
+            String body = requestWrapper.getBody();
+            if (JSONUtil.isTypeJSONObject(body)) {
+                JSONObject jsonObject = JSONUtil.parseObj(body);
+                authRequest.setId(jsonObject.getLong("id"));
+                authRequest.setPictureId(jsonObject.getLong("pictureId"));
+                authRequest.setSpaceId(jsonObject.getLong("spaceId"));
+                authRequest.setSpaceUserId(jsonObject.getLong("spaceUserId"));
+            }
+        } else if (requestBody != null) {
+            // 接口方法内编程式鉴权，复用 Spring 已解析的请求体
+            BeanUtil.copyProperties(requestBody, authRequest, "picture", "space");
         } else {
             Map<String, String> paramMap = ServletUtil.getParamMap(request);
-            authRequest = BeanUtil.toBean(paramMap, SpaceUserAuthContext.class);
+            authRequest.setId(Convert.toLong(paramMap.get("id")));
+            authRequest.setPictureId(Convert.toLong(paramMap.get("pictureId")));
+            authRequest.setSpaceId(Convert.toLong(paramMap.get("spaceId")));
+            authRequest.setSpaceUserId(Convert.toLong(paramMap.get("spaceUserId")));
         }
         // 根据请求路径区分 id 字段的含义
         Long id = authRequest.getId();
@@ -207,25 +223,24 @@ public class StpInterfaceImpl implements StpInterface {
                 default:
             }
         }
+        request.setAttribute(AUTH_CONTEXT_ATTRIBUTE, authRequest);
         return authRequest;
     }
 
     /**
-     * 判断对象的所有字段是否为空
+     * 判断上下文的所有 id 字段是否为空（实体字段不会从请求中解析）
      *
-     * @param object
+     * @param authContext
      * @return
      */
-    private boolean isAllFieldsNull(Object object) {
-        if (object == null) {
-            return true; // 对象本身为空
+    private boolean isAllFieldsNull(SpaceUserAuthContext authContext) {
+        if (authContext == null) {
+            return true;
         }
-        // 获取所有字段并判断是否所有字段都为空
-        return Arrays.stream(ReflectUtil.getFields(object.getClass()))
-                // 获取字段值
-                .map(field -> ReflectUtil.getFieldValue(object, field))
-                // 检查是否所有字段都为空
-                .allMatch(ObjectUtil::isEmpty);
+        return authContext.getId() == null
+                && authContext.getPictureId() == null
+                && authContext.getSpaceId() == null
+                && authContext.getSpaceUserId() == null;
     }
 
 }
@@ -0,0 +1,42 @@
+package com.ca.capicturebackend.manager.http;
+
+import lombok.Data;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 外部接口响应结果
+ */
+@Data
+public class HttpResult {
+
+    /**
+     * 状态码
+     */
+    private int status;
+
+    /**
+     * 响应头（名称不区分大小写，同名取第一个）
+     */
+    private Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * 响应体
+     */
+    private String body;
+
+    /**
+     * 是否为 2xx 响应
+     */
+    public boolean isOk() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * 获取响应头
+     */
+    public String header(String name) {
+        return headers.get(name);
+    }
+}
@@ -0,0 +1,68 @@
+package com.ca.capicturebackend.manager.http;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图（固定分桶，无锁累加）
+ */
+public class LatencyHistogram {
+
+    // 分桶上界（毫秒），最后一个桶为超出最大上界的请求
+    private static final long[] BOUNDS = {50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalMillis = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long millis, boolean error) {
+        int index = 0;
+        while (index < BOUNDS.length && millis > BOUNDS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        count.increment();
+        totalMillis.add(millis);
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * 估算分位数（返回所在分桶的上界，超出最大上界时返回 -1）
+     *
+     * @param percentile 0 ~ 1
+     */
+    public long percentile(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile);
+        long accumulated = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            accumulated += buckets[i].sum();
+            if (accumulated >= threshold) {
+                return BOUNDS[i];
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        long total = count.sum();
+        long avg = total == 0 ? 0 : totalMillis.sum() / total;
+        return String.format("count=%d, errors=%d, avg=%dms, p50<=%dms, p95<=%dms, p99<=%dms",
+                total, errors.sum(), avg, percentile(0.5), percentile(0.95), percentile(0.99));
+    }
+}
@@ -0,0 +1,294 @@
+package com.ca.capicturebackend.manager.http;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import com.ca.capicturebackend.exception.BusinessException;
+import com.ca.capicturebackend.exception.ErrorCode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 外部接口调用客户端
+ * <p>
+ * 所有对外 HTTP 调用（AI 扩图、以图搜图、URL 上传、批量抓图）统一走这里：
+ * 按主机复用长连接，独立线程池执行，按主机限制并发并熔断，记录耗时分布。
+ * 某个上游变慢时只会快速失败，不会占满 Tomcat 请求线程。
+ */
+@Slf4j
+@Component
+public class OutboundHttpClient {
+
+    // 连接池总连接数
+    private static final int MAX_TOTAL_CONNECTIONS = 200;
+
+    // 单个主机的最大连接数 / 最大并发请求数
+    private static final int MAX_PER_HOST = 20;
+
+    // 建立连接超时
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+
+    // 读取数据超时
+    private static final int SOCKET_TIMEOUT_MILLIS = 10000;
+
+    // 从连接池获取连接超时
+    private static final int CONNECTION_REQUEST_TIMEOUT_MILLIS = 2000;
+
+    // 调用方等待结果的最长时间
+    private static final long DEFAULT_WAIT_MILLIS = 30000;
+
+    // 连续失败多少次后熔断
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+
+    // 熔断持续时间
+    private static final long BREAKER_OPEN_MILLIS = 30000;
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+            + "(KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final CloseableHttpClient httpClient;
+
+    private final ThreadPoolExecutor executor;
+
+    // 各主机的并发许可、熔断器和耗时分布，URL 上传、批量抓图的主机由用户决定，只保留最近访问的主机
+    private final Cache<String, HostState> hostStates = Caffeine.newBuilder()
+            .maximumSize(1000L)
+            .expireAfterAccess(1L, TimeUnit.HOURS)
+            .build();
+
+    public OutboundHttpClient() {
+        // 空闲连接最多保留 60 秒
+        connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(MAX_TOTAL_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_PER_HOST);
+        connectionManager.setValidateAfterInactivity(2000);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+                .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+                .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT_MILLIS)
+                .build();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setUserAgent(USER_AGENT)
+                .evictExpiredConnections()
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+        executor = new ThreadPoolExecutor(
+                8,
+                64,
+                60L,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                ThreadFactoryBuilder.create().setNamePrefix("outboundHttp-").build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * GET 请求
+     */
+    public HttpResult get(String url, Map<String, String> headers) {
+        HttpGet httpGet = new HttpGet(url);
+        fillHeaders(httpGet, headers);
+        return execute(httpGet, OutboundHttpClient::toResult);
+    }
+
+    /**
+     * POST JSON 请求
+     */
+    public HttpResult postJson(String url, Map<String, String> headers, String json) {
+        HttpPost httpPost = new HttpPost(url);
+        fillHeaders(httpPost, headers);
+        httpPost.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        return execute(httpPost, OutboundHttpClient::toResult);
+    }
+
+    /**
+     * POST 表单请求
+     */
+    public HttpResult postForm(String url, Map<String, String> headers, Map<String, Object> formData) {
+        HttpPost httpPost = new HttpPost(url);
+        fillHeaders(httpPost, headers);
+        List<NameValuePair> pairs = new ArrayList<>();
+        formData.forEach((key, value) -> pairs.add(new BasicNameValuePair(key, value == null ? null : String.valueOf(value))));
+        httpPost.setEntity(new UrlEncodedFormEntity(pairs, StandardCharsets.UTF_8));
+        return execute(httpPost, OutboundHttpClient::toResult);
+    }
+
+    /**
+     * 同步执行（在独立线程池中执行，调用方最多等待默认时长）
+     */
+    public <T> T execute(HttpRequestBase request, ResponseHandler<? extends T> handler) {
+        return execute(request, handler, DEFAULT_WAIT_MILLIS);
+    }
+
+    /**
+     * 同步执行，自定义等待时长
+     */
+    public <T> T execute(HttpRequestBase request, ResponseHandler<? extends T> handler, long waitMillis) {
+        CompletableFuture<T> future = executeAsync(request, handler);
+        try {
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            request.abort();
+            log.warn("外部接口调用超时：{}", request.getURI());
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "外部服务响应超时");
+        } catch (InterruptedException e) {
+            request.abort();
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "外部服务调用被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof BusinessException) {
+                throw (BusinessException) cause;
+            }
+            log.warn("外部接口调用失败：{}，{}", request.getURI(), String.valueOf(cause));
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "外部服务调用失败");
+        }
+    }
+
+    /**
+     * 异步执行
+     * <p>
+     * 主机处于熔断状态或并发已满时直接失败，不排队等待。
+     */
+    public <T> CompletableFuture<T> executeAsync(HttpRequestBase request, ResponseHandler<? extends T> handler) {
+        String host = request.getURI().getHost();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        HostState hostState = hostStates.get(host, k -> new HostState());
+        CircuitBreaker breaker = hostState.breaker;
+        // 熔断中放行的请求就是试探请求，没有发出时要交还试探机会，否则熔断器会一直停在半开状态
+        boolean probe = breaker.getState() != CircuitBreaker.State.CLOSED;
+        if (!breaker.allowRequest()) {
+            future.completeExceptionally(new BusinessException(ErrorCode.OPERATION_ERROR, "外部服务暂不可用，请稍后重试"));
+            return future;
+        }
+        Semaphore permits = hostState.permits;
+        if (!permits.tryAcquire()) {
+            if (probe) {
+                breaker.releaseProbe();
+            }
+            future.completeExceptionally(new BusinessException(ErrorCode.OPERATION_ERROR, "外部服务繁忙，请稍后重试"));
+            return future;
+        }
+        LatencyHistogram latency = hostState.latency;
+        try {
+            executor.execute(() -> {
+                long start = System.currentTimeMillis();
+                boolean error = true;
+                try {
+                    int[] status = new int[1];
+                    T result = httpClient.execute(request, response -> {
+                        status[0] = response.getStatusLine().getStatusCode();
+                        return handler.handleResponse(response);
+                    });
+                    // 5xx 视为上游故障
+                    error = status[0] >= 500;
+                    future.complete(result);
+                } catch (BusinessException e) {
+                    // 调用方在处理响应时主动拒绝（如校验不通过），不算上游故障
+                    error = false;
+                    future.completeExceptionally(e);
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    if (error) {
+                        breaker.onFailure();
+                    } else {
+                        breaker.onSuccess();
+                    }
+                    latency.record(System.currentTimeMillis() - start, error);
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            if (probe) {
+                breaker.releaseProbe();
+            }
+            future.completeExceptionally(new BusinessException(ErrorCode.OPERATION_ERROR, "外部服务繁忙，请稍后重试"));
+        }
+        return future;
+    }
+
+    /**
+     * 定期输出各主机的调用耗时分布
+     */
+    @Scheduled(fixedRate = 5 * 60 * 1000)
+    public void logStats() {
+        hostStates.asMap().forEach((host, hostState) ->
+                log.info("外部接口统计 host={}, breaker={}, {}", host, hostState.breaker.getState(), hostState.latency));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.error("关闭 HTTP 客户端失败", e);
+        }
+    }
+
+    private static void fillHeaders(HttpRequestBase request, Map<String, String> headers) {
+        if (headers != null) {
+            headers.forEach(request::setHeader);
+        }
+    }
+
+    private static HttpResult toResult(HttpResponse response) throws IOException {
+        HttpResult result = new HttpResult();
+        result.setStatus(response.getStatusLine().getStatusCode());
+        for (Header header : response.getAllHeaders()) {
+            result.getHeaders().putIfAbsent(header.getName(), header.getValue());
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            String body = EntityUtils.toString(entity, StandardCharsets.UTF_8);
+            result.setBody(StrUtil.nullToEmpty(body));
+        }
+        return result;
+    }
+
+    /**
+     * 单个主机的调用状态
+     */
+    private static class HostState {
+
+        private final Semaphore permits = new Semaphore(MAX_PER_HOST);
+
+        private final CircuitBreaker breaker = new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS);
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
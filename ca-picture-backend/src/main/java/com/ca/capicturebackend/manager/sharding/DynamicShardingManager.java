@@ -1,10 +1,15 @@
 package com.ca.capicturebackend.manager.sharding;
 
-import com.baomidou.mybatisplus.extension.toolkit.SqlRunner;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.ca.capicturebackend.mapper.SpaceMapper;
 import com.ca.capicturebackend.model.entity.Space;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
 import com.ca.capicturebackend.model.enums.SpaceLevelEnum;
 import com.ca.capicturebackend.model.enums.SpaceTypeEnum;
-import com.ca.capicturebackend.service.SpaceService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.shardingsphere.driver.jdbc.core.connection.ShardingSphereConnection;
 import org.apache.shardingsphere.infra.metadata.database.rule.ShardingSphereRuleMetaData;
@@ -12,66 +17,167 @@ import org.apache.shardingsphere.mode.manager.ContextManager;
 import org.apache.shardingsphere.sharding.api.config.ShardingRuleConfiguration;
 import org.apache.shardingsphere.sharding.api.config.rule.ShardingTableRuleConfiguration;
 import org.apache.shardingsphere.sharding.rule.ShardingRule;
+import org.redisson.api.RLock;
+import org.redisson.api.RSet;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.sql.DataSource;
 import java.sql.SQLException;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
-//@Component
+/**
+ * 动态分表管理
+ * <p>
+ * 旗舰版团队空间的图片存放在 picture_{spaceId} 中。新增分表时只在现有 actual-data-nodes 上追加一个节点，
+ * 不重新查询所有空间，也不重新加载整个数据库的元数据（新表与 picture 结构相同）；
+ * 新节点通过 Redis 频道通知其他实例，各实例各自追加。
+ * <p>
+ * 空间升级为旗舰版时，已有图片在后台分批从 picture 迁移到分表，迁移期间空间可以正常读写，
+ * 只在最后切换路由的几秒内通过 {@link PictureMigrationFenceManager} 暂停该空间的图片写入。
+ * <p>
+ * 其他空间可以通过 {@link #rebalanceToBuckets()} 按 spaceId 哈希分散到 picture_b00 ~ picture_b63 中，
+ * 之后 picture 只保留公共图库的图片。分桶规则见 {@link PictureShardingAlgorithm#getBucketTableName}。
+ * <p>
+ * 所有迁移（包括各个实例上的）持有同一把 Redisson 锁串行执行，加锁后重新检查是否还需要迁移。
+ * 迁移完成的空间记录在 Redis 集合中，启动时只注册已完成的分表，未完成（中断）的迁移重新执行。
+ * <p>
+ * 通过 picture-sharding.dynamic=true 开启
+ */
 @Slf4j
+@Component
+@ConditionalOnProperty(prefix = "picture-sharding", name = "dynamic", havingValue = "true")
 public class DynamicShardingManager {
 
     @Resource
     private DataSource dataSource;
 
     @Resource
-    private SpaceService spaceService;
+    private SpaceMapper spaceMapper;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private ScheduledExecutorService scheduledExecutor;
+
+    @Resource
+    private PictureMigrationFenceManager pictureMigrationFenceManager;
 
     private static final String LOGIC_TABLE_NAME = "picture";
 
     private static final String DATABASE_NAME = "logic_db"; // 配置文件中的数据库名称
 
+    // actual-data-nodes 中使用的读写分离数据源
+    private static final String DATA_SOURCE_NAME = "ca_picture_rw";
+
+    // 建表、迁移直接在主库上执行
+    private static final String WRITE_DATA_SOURCE_NAME = "ca_picture";
+
+    // 每批迁移的图片数
+    private static final int MIGRATE_BATCH_SIZE = 500;
+
+    // 通知其他实例后等待多久再删除物理表，确保所有实例都已收到通知
+    private static final long CLEANUP_DELAY_SECONDS = 60L;
+
+    // 开启写屏障后等待进行中的写入完成
+    private static final long FENCE_SETTLE_MILLIS = 2000L;
+
+    // 等待所有实例确认新节点的最长时间
+    private static final long ACK_TIMEOUT_MILLIS = 30_000L;
+
+    private static final long ACK_POLL_MILLIS = 200L;
+
+    // 确认记录的保留时间
+    private static final long ACK_TTL_SECONDS = 10 * 60L;
+
+    // 本实例的标识，用于确认收到分表变更
+    private final String instanceId = IdUtil.fastSimpleUUID();
+
+    // 当前已注册的分表
+    private final Set<String> tableNames = new ConcurrentSkipListSet<>();
+
+    // 迁移任务串行执行，避免同时大量复制数据
+    private final ExecutorService migrateExecutor = Executors.newSingleThreadExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("pictureShardMigrate-").build());
+
+    private RTopic nodeTopic;
+
     @PostConstruct
     public void initialize() {
         log.info("初始化动态分表配置...");
-        updateShardingTableNodes();
+        tableNames.add(LOGIC_TABLE_NAME);
+        Set<String> migratedSpaceIds = getMigratedSet().readAll();
+        migratedSpaceIds.forEach(spaceId -> tableNames.add(LOGIC_TABLE_NAME + "_" + spaceId));
+        if (isBucketEnabled()) {
+            tableNames.addAll(getBucketTableNames());
+        }
+        applyShardingTableNodes();
+        // 监听其他实例注册、移除的分表，多个表名以逗号分隔，移除的表名以 - 开头；
+        // 需要确认的通知以 确认 id + @ 开头，应用后把本实例加入确认集合（包括发出通知的实例自己）
+        nodeTopic = redissonClient.getTopic(CommonKeyEnum.PICTURE_SHARDING_PREFIX.key("nodes"), StringCodec.INSTANCE);
+        nodeTopic.addListener(String.class, (channel, message) -> {
+            int separator = message.indexOf('@');
+            String ackId = separator < 0 ? null : message.substring(0, separator);
+            String tableNameList = message.substring(separator + 1);
+            boolean changed = false;
+            for (String tableName : StrUtil.split(tableNameList, ',')) {
+                changed |= tableName.startsWith("-") ? tableNames.remove(tableName.substring(1)) : tableNames.add(tableName);
+            }
+            if (changed) {
+                log.info("收到分表变更通知：{}", tableNameList);
+                applyShardingTableNodes();
+            }
+            if (ackId != null) {
+                RSet<String> acks = getAckSet(ackId);
+                acks.add(instanceId);
+                acks.expire(ACK_TTL_SECONDS, TimeUnit.SECONDS);
+            }
+        });
+        // 重新执行没有完成的迁移
+        fetchFlagshipTeamSpaces().stream()
+                .filter(space -> !migratedSpaceIds.contains(String.valueOf(space.getId())))
+                .forEach(this::upgradeSpacePictureTable);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        migrateExecutor.shutdownNow();
+        if (nodeTopic != null) {
+            nodeTopic.removeAllListeners();
+        }
     }
 
     /**
-     * 获取所有动态表名，包括初始表 picture 和分表 picture_{spaceId}
+     * 获取所有旗舰版团队空间（仅启动时调用一次）
      */
-    private Set<String> fetchAllPictureTableNames() {
-        // 仅对旗舰版团队空间生效
-        Set<Long> spaceIds = spaceService.lambdaQuery()
+    private List<Space> fetchFlagshipTeamSpaces() {
+        return spaceMapper.selectList(Wrappers.<Space>lambdaQuery()
+                .select(Space::getId, Space::getSpaceType, Space::getSpaceLevel)
                 .eq(Space::getSpaceType, SpaceTypeEnum.TEAM.getValue())
-                .eq(Space::getSpaceLevel, SpaceLevelEnum.FLAGSHIP.getValue())
-                .list()
-                .stream()
-                .map(Space::getId)
-                .collect(Collectors.toSet());
-        Set<String> tableNames = spaceIds.stream()
-                .map(spaceId -> LOGIC_TABLE_NAME + "_" + spaceId)
-                .collect(Collectors.toSet());
-        tableNames.add(LOGIC_TABLE_NAME); // 添加初始逻辑表
-        return tableNames;
+                .eq(Space::getSpaceLevel, SpaceLevelEnum.FLAGSHIP.getValue()));
     }
 
     /**
-     * 更新 ShardingSphere 的 actual-data-nodes 动态表名配置
+     * 用当前的分表集合更新 ShardingSphere 的 actual-data-nodes
+     * <p>
+     * alterRuleConfiguration 只重建分片规则，不需要 reloadDatabase 重新读取所有表的元数据
      */
-    private void updateShardingTableNodes() {
-        Set<String> tableNames = fetchAllPictureTableNames();
+    private synchronized void applyShardingTableNodes() {
         String newActualDataNodes = tableNames.stream()
-                .map(tableName -> "ca_picture." + tableName) // 确保前缀合法
+                .map(tableName -> DATA_SOURCE_NAME + "." + tableName) // 确保前缀合法
                 .collect(Collectors.joining(","));
-        log.info("动态分表 actual-data-nodes 配置: {}", newActualDataNodes);
+        log.info("动态分表 actual-data-nodes 节点数: {}", tableNames.size());
 
         ContextManager contextManager = getContextManager();
         ShardingSphereRuleMetaData ruleMetaData = contextManager.getMetaDataContexts()
@@ -99,7 +205,6 @@ public class DynamicShardingManager {
                     .collect(Collectors.toList());
             ruleConfig.setTables(updatedRules);
             contextManager.alterRuleConfiguration(DATABASE_NAME, Collections.singleton(ruleConfig));
-            contextManager.reloadDatabase(DATABASE_NAME);
             log.info("动态分表规则更新成功！");
         } else {
             log.error("未找到 ShardingSphere 的分片规则配置，动态分表更新失败。");
@@ -107,25 +212,405 @@ public class DynamicShardingManager {
     }
 
     /**
-     * 动态创建空间图片分表
+     * 追加分表节点，并通知其他实例
+     */
+    private void registerTableNodes(Collection<String> newTableNames) {
+        if (tableNames.addAll(newTableNames)) {
+            applyShardingTableNodes();
+        }
+        nodeTopic.publish(String.join(",", newTableNames));
+    }
+
+    /**
+     * 追加分表节点，通知其他实例并等待所有实例确认
+     *
+     * @return 是否所有收到通知的实例都已应用新节点
+     */
+    private boolean registerTableNodesAndAwait(Collection<String> newTableNames) {
+        if (tableNames.addAll(newTableNames)) {
+            applyShardingTableNodes();
+        }
+        String ackId = IdUtil.fastSimpleUUID();
+        // 返回值是收到通知的实例数
+        long receivers = nodeTopic.publish(ackId + "@" + String.join(",", newTableNames));
+        RSet<String> acks = getAckSet(ackId);
+        long deadline = System.currentTimeMillis() + ACK_TIMEOUT_MILLIS;
+        while (acks.size() < receivers) {
+            if (System.currentTimeMillis() >= deadline) {
+                log.error("等待分表节点确认超时，已确认 {} / {}，节点：{}", acks.size(), receivers, newTableNames);
+                return false;
+            }
+            sleep(ACK_POLL_MILLIS);
+        }
+        return true;
+    }
+
+    /**
+     * 删除空间后移除分表：先从路由中移除，等所有实例都切换后再删除物理表
+     *
+     * @param spaceId
+     */
+    public void dropSpacePictureTable(Long spaceId) {
+        String tableName = getTableName(spaceId);
+        getMigratedSet().remove(String.valueOf(spaceId));
+        if (!tableNames.remove(tableName)) {
+            return;
+        }
+        applyShardingTableNodes();
+        nodeTopic.publish("-" + tableName);
+        scheduledExecutor.schedule(() -> {
+            try {
+                new JdbcTemplate(getActualDataSource()).execute("DROP TABLE IF EXISTS " + tableName);
+                log.info("已删除空间分表 {}", tableName);
+            } catch (Exception e) {
+                log.error("删除空间分表失败，空间 id = {}", spaceId, e);
+            }
+        }, CLEANUP_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 动态创建空间图片分表（新建的空间，没有需要迁移的数据）
      * @param space
      */
     public void createSpacePictureTable(Space space) {
-        // 动态创建分表
         // 仅为旗舰版团队空间创建分表
-        if (space.getSpaceType() == SpaceTypeEnum.TEAM.getValue() && space.getSpaceLevel() == SpaceLevelEnum.FLAGSHIP.getValue()) {
-            Long spaceId = space.getId();
-            String tableName = "picture_" + spaceId;
-            // 创建新表
-            String createTableSql = "CREATE TABLE " + tableName + " LIKE picture";
+        if (!isFlagshipTeamSpace(space)) {
+            return;
+        }
+        Long spaceId = space.getId();
+        String tableName = getTableName(spaceId);
+        try {
+            createTable(tableName);
+            getMigratedSet().add(String.valueOf(spaceId));
+            registerTableNodes(Collections.singletonList(tableName));
+        } catch (Exception e) {
+            log.error("创建图片空间分表失败，空间 id = {}", spaceId, e);
+        }
+    }
+
+    /**
+     * 空间升级为旗舰版团队空间，后台创建分表并迁移已有图片
+     * @param space 升级后的空间
+     */
+    public void upgradeSpacePictureTable(Space space) {
+        if (!isFlagshipTeamSpace(space) || tableNames.contains(getTableName(space.getId()))) {
+            return;
+        }
+        Long spaceId = space.getId();
+        migrateExecutor.execute(() -> {
+            try {
+                runWithMigrateLock(() -> {
+                    // 其他实例可能已经完成迁移
+                    if (!getMigratedSet().contains(String.valueOf(spaceId))) {
+                        migrateSpacePictures(spaceId);
+                    }
+                });
+            } catch (Exception e) {
+                log.error("迁移空间图片到分表失败，空间 id = {}", spaceId, e);
+            }
+        });
+    }
+
+    /**
+     * 迁移步骤：
+     * 1. 创建分表，按 id 分批复制原表（picture 或所在的分桶表）中该空间的图片，此时读写仍在原表上
+     * 2. 补齐复制期间修改、新增的图片，缩小下一步需要补齐的数据量
+     * 3. 开启该空间的写屏障，等待进行中的写入完成，此后原表不再变化；
+     *    再次补齐修改、新增的图片，并删除分表中原表已经不存在的图片，分表与原表完全一致
+     * 4. 记录迁移完成，注册分表节点，等所有实例确认切换后解除写屏障，之后该空间的读写都落在分表上
+     * 5. 分批删除原表中的旧数据（有实例没有确认时保留旧数据，由人工处理）
+     * <p>
+     * 复制都使用 REPLACE，迁移中断后重新执行时会覆盖上一次复制的旧数据。
+     * 原表中没有该空间的图片时（空间为空，或者是记录迁移状态之前已经完成的迁移）不复制，直接记录完成，
+     * 避免第 3 步把分表中的数据当作已删除的图片移除
+     */
+    private void migrateSpacePictures(Long spaceId) {
+        String tableName = getTableName(spaceId);
+        String sourceTableName = getSourceTableName(spaceId);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(getActualDataSource());
+        createTable(tableName);
+        if (jdbcTemplate.queryForList("SELECT id FROM " + sourceTableName + " WHERE spaceId = ? LIMIT 1",
+                Long.class, spaceId).isEmpty()) {
+            getMigratedSet().add(String.valueOf(spaceId));
+            registerTableNodes(Collections.singletonList(tableName));
+            log.info("空间 {} 在 {} 中没有图片，直接启用分表 {}", spaceId, sourceTableName, tableName);
+            return;
+        }
+        Timestamp startTime = jdbcTemplate.queryForObject("SELECT NOW()", Timestamp.class);
+        long lastId = 0L;
+        long copied = 0L;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM " + sourceTableName + " WHERE spaceId = ? AND id > ? ORDER BY id LIMIT ?",
+                    Long.class, spaceId, lastId, MIGRATE_BATCH_SIZE);
+            if (CollUtil.isEmpty(ids)) {
+                break;
+            }
+            long maxId = ids.get(ids.size() - 1);
+            copied += jdbcTemplate.update("REPLACE INTO " + tableName
+                    + " SELECT * FROM " + sourceTableName + " WHERE spaceId = ? AND id > ? AND id <= ?", spaceId, lastId, maxId);
+            lastId = maxId;
+        }
+        Timestamp syncTime = jdbcTemplate.queryForObject("SELECT NOW()", Timestamp.class);
+        int changed = syncSpacePictures(jdbcTemplate, sourceTableName, tableName, spaceId, startTime, lastId);
+        int fencedChanged;
+        int removed;
+        boolean acked;
+        pictureMigrationFenceManager.raise(spaceId);
+        try {
+            sleep(FENCE_SETTLE_MILLIS);
+            fencedChanged = syncSpacePictures(jdbcTemplate, sourceTableName, tableName, spaceId, syncTime, lastId);
+            removed = jdbcTemplate.update("DELETE t FROM " + tableName + " t LEFT JOIN " + sourceTableName
+                    + " s ON s.id = t.id WHERE s.id IS NULL");
+            // 先记录状态，之后启动的实例直接加载分表
+            getMigratedSet().add(String.valueOf(spaceId));
+            acked = registerTableNodesAndAwait(Collections.singletonList(tableName));
+        } finally {
+            pictureMigrationFenceManager.lower(spaceId);
+        }
+        log.info("空间图片已迁移到分表 {}，复制 {} 条，补齐 {} + {} 条，移除已删除 {} 条",
+                tableName, copied, changed, fencedChanged, removed);
+        if (acked) {
+            cleanupMigratedPictures(sourceTableName, spaceId);
+        } else {
+            log.error("有实例没有确认切换到分表 {}，保留 {} 中的旧数据", tableName, sourceTableName);
+        }
+    }
+
+    /**
+     * 补齐指定时间之后修改过的图片和 id 大于 lastId 的新增图片
+     */
+    private int syncSpacePictures(JdbcTemplate jdbcTemplate, String sourceTableName, String tableName,
+                                  Long spaceId, Timestamp since, long lastId) {
+        return jdbcTemplate.update("REPLACE INTO " + tableName + " SELECT * FROM " + sourceTableName
+                + " WHERE spaceId = ? AND (updateTime >= ? OR id > ?)", spaceId, since, lastId);
+    }
+
+    /**
+     * 分批删除已迁移到分表的旧数据，每批一个小事务，避免长时间锁表
+     */
+    private void cleanupMigratedPictures(String sourceTableName, Long spaceId) {
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(getActualDataSource());
+            long deleted = 0L;
+            int rows;
+            do {
+                rows = jdbcTemplate.update("DELETE FROM " + sourceTableName + " WHERE spaceId = ? LIMIT ?", spaceId, MIGRATE_BATCH_SIZE);
+                deleted += rows;
+            } while (rows > 0);
+            log.info("已清理 {} 中空间 {} 的旧数据 {} 条", sourceTableName, spaceId, deleted);
+        } catch (Exception e) {
+            log.error("清理已迁移的图片失败，空间 id = {}", spaceId, e);
+        }
+    }
+
+    /**
+     * 把 picture 中所有非公共图库、非旗舰版空间的图片按 spaceId 哈希分散到分桶表（后台执行，可重复执行）
+     *
+     * @return 是否开始执行，已经分桶时返回 false
+     */
+    public boolean rebalanceToBuckets() {
+        if (isBucketEnabled()) {
+            return false;
+        }
+        migrateExecutor.execute(() -> {
             try {
-                SqlRunner.db().update(createTableSql);
-                // 更新分表
-                updateShardingTableNodes();
+                runWithMigrateLock(() -> {
+                    // 其他实例可能已经完成分桶
+                    if (!isBucketEnabled()) {
+                        migrateToBuckets();
+                    }
+                });
             } catch (Exception e) {
-                log.error("创建图片空间分表失败，空间 id = {}", space.getId());
+                log.error("图片分桶迁移失败", e);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 分桶迁移步骤与 {@link #migrateSpacePictures} 相同，只是一次切换所有分桶表，切换期间开启全局写屏障
+     */
+    private void migrateToBuckets() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(getActualDataSource());
+        List<String> bucketTableNames = getBucketTableNames();
+        bucketTableNames.forEach(this::createTable);
+        Timestamp startTime = jdbcTemplate.queryForObject("SELECT NOW()", Timestamp.class);
+        long lastId = 0L;
+        long copied = 0L;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, spaceId FROM picture WHERE spaceId IS NOT NULL AND id > ? ORDER BY id LIMIT ?",
+                    lastId, MIGRATE_BATCH_SIZE);
+            if (CollUtil.isEmpty(rows)) {
+                break;
+            }
+            copied += copyToBuckets(jdbcTemplate, rows);
+            lastId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+        }
+        Timestamp syncTime = jdbcTemplate.queryForObject("SELECT NOW()", Timestamp.class);
+        int changed = syncBuckets(jdbcTemplate, startTime, lastId);
+        int fencedChanged;
+        int removed = 0;
+        boolean acked;
+        pictureMigrationFenceManager.raiseAll();
+        try {
+            sleep(FENCE_SETTLE_MILLIS);
+            fencedChanged = syncBuckets(jdbcTemplate, syncTime, lastId);
+            for (String bucketTableName : bucketTableNames) {
+                removed += jdbcTemplate.update("DELETE b FROM " + bucketTableName + " b LEFT JOIN picture p"
+                        + " ON p.id = b.id WHERE p.id IS NULL");
+            }
+            // 先记录状态，之后启动的实例直接加载分桶表
+            redissonClient.getBucket(CommonKeyEnum.PICTURE_SHARDING_PREFIX.key("buckets"), StringCodec.INSTANCE).set("1");
+            acked = registerTableNodesAndAwait(bucketTableNames);
+        } finally {
+            pictureMigrationFenceManager.lowerAll();
+        }
+        log.info("图片已分散到 {} 个分桶表，复制 {} 条，补齐 {} + {} 条，移除已删除 {} 条",
+                bucketTableNames.size(), copied, changed, fencedChanged, removed);
+        if (acked) {
+            cleanupBucketedPictures(bucketTableNames);
+        } else {
+            log.error("有实例没有确认切换到分桶表，保留 picture 中的旧数据");
+        }
+    }
+
+    /**
+     * 补齐指定时间之后修改过的图片和 id 大于 lastId 的新增图片
+     */
+    private int syncBuckets(JdbcTemplate jdbcTemplate, Timestamp since, long lastId) {
+        return copyToBuckets(jdbcTemplate, jdbcTemplate.queryForList(
+                "SELECT id, spaceId FROM picture WHERE spaceId IS NOT NULL AND (updateTime >= ? OR id > ?)", since, lastId));
+    }
+
+    /**
+     * 按分桶分组后批量复制
+     */
+    private int copyToBuckets(JdbcTemplate jdbcTemplate, List<Map<String, Object>> rows) {
+        Map<String, List<Long>> bucketIdsMap = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            long spaceId = ((Number) row.get("spaceId")).longValue();
+            // 旗舰版空间已有独立分表，不参与分桶
+            if (tableNames.contains(getTableName(spaceId))) {
+                continue;
             }
+            bucketIdsMap.computeIfAbsent(PictureShardingAlgorithm.getBucketTableName(LOGIC_TABLE_NAME, spaceId), key -> new ArrayList<>())
+                    .add(((Number) row.get("id")).longValue());
         }
+        int copied = 0;
+        for (Map.Entry<String, List<Long>> entry : bucketIdsMap.entrySet()) {
+            copied += jdbcTemplate.update("REPLACE INTO " + entry.getKey()
+                    + " SELECT * FROM picture WHERE id IN (" + joinIds(entry.getValue()) + ")");
+        }
+        return copied;
+    }
+
+    /**
+     * 按分桶表中的 id 分批删除 picture 中已复制的图片，只留下公共图库；
+     * 没有复制到分桶表的图片（如旗舰版空间清理失败的旧数据）保留不动
+     */
+    private void cleanupBucketedPictures(List<String> bucketTableNames) {
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(getActualDataSource());
+            long deleted = 0L;
+            for (String bucketTableName : bucketTableNames) {
+                long lastId = 0L;
+                while (true) {
+                    List<Long> ids = jdbcTemplate.queryForList(
+                            "SELECT id FROM " + bucketTableName + " WHERE id > ? ORDER BY id LIMIT ?",
+                            Long.class, lastId, MIGRATE_BATCH_SIZE);
+                    if (CollUtil.isEmpty(ids)) {
+                        break;
+                    }
+                    deleted += jdbcTemplate.update("DELETE FROM picture WHERE spaceId IS NOT NULL AND id IN (" + joinIds(ids) + ")");
+                    lastId = ids.get(ids.size() - 1);
+                }
+            }
+            log.info("已清理 picture 中已分桶的图片 {} 条", deleted);
+        } catch (Exception e) {
+            log.error("清理已分桶的图片失败", e);
+        }
+    }
+
+    private static String joinIds(List<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    /**
+     * 持有迁移锁执行，所有实例的迁移串行进行
+     */
+    private void runWithMigrateLock(Runnable task) {
+        RLock lock = redissonClient.getLock(CommonKeyEnum.PICTURE_SHARDING_PREFIX.key("migrate", "lock"));
+        lock.lock();
+        try {
+            task.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 已经完成迁移（或新建时直接创建了分表）的空间 id
+     */
+    private RSet<String> getMigratedSet() {
+        return redissonClient.getSet(CommonKeyEnum.PICTURE_SHARDING_PREFIX.key("migrated"), StringCodec.INSTANCE);
+    }
+
+    private RSet<String> getAckSet(String ackId) {
+        return redissonClient.getSet(CommonKeyEnum.PICTURE_SHARDING_PREFIX.key("ack", ackId), StringCodec.INSTANCE);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("图片迁移被中断", e);
+        }
+    }
+
+    private boolean isBucketEnabled() {
+        return redissonClient.getBucket(CommonKeyEnum.PICTURE_SHARDING_PREFIX.key("buckets"), StringCodec.INSTANCE).isExists();
+    }
+
+    private static List<String> getBucketTableNames() {
+        List<String> bucketTableNames = new ArrayList<>(PictureShardingAlgorithm.BUCKET_COUNT);
+        for (int i = 0; i < PictureShardingAlgorithm.BUCKET_COUNT; i++) {
+            bucketTableNames.add(PictureShardingAlgorithm.getBucketTableNameByIndex(LOGIC_TABLE_NAME, i));
+        }
+        return bucketTableNames;
+    }
+
+    /**
+     * 空间当前所在的表（迁移到独立分表之前）
+     */
+    private String getSourceTableName(Long spaceId) {
+        String bucketTableName = PictureShardingAlgorithm.getBucketTableName(LOGIC_TABLE_NAME, spaceId);
+        return tableNames.contains(bucketTableName) ? bucketTableName : LOGIC_TABLE_NAME;
+    }
+
+    /**
+     * 直接在物理库上建表，不经过 ShardingSphere 的 SQL 路由
+     */
+    private void createTable(String tableName) {
+        new JdbcTemplate(getActualDataSource()).execute("CREATE TABLE IF NOT EXISTS " + tableName + " LIKE picture");
+    }
+
+    private boolean isFlagshipTeamSpace(Space space) {
+        return Objects.equals(space.getSpaceType(), SpaceTypeEnum.TEAM.getValue())
+                && Objects.equals(space.getSpaceLevel(), SpaceLevelEnum.FLAGSHIP.getValue());
+    }
+
+    private static String getTableName(Long spaceId) {
+        return LOGIC_TABLE_NAME + "_" + spaceId;
+    }
+
+    /**
+     * 获取主库的物理数据源
+     */
+    private DataSource getActualDataSource() {
+        return getContextManager().getDataSourceMap(DATABASE_NAME).get(WRITE_DATA_SOURCE_NAME);
     }
 
     /**
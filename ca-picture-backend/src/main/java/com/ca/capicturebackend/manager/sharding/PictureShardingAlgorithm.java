@@ -1,18 +1,37 @@
 package com.ca.capicturebackend.manager.sharding;
 
+import com.google.common.collect.Range;
 import org.apache.shardingsphere.sharding.api.sharding.standard.PreciseShardingValue;
 import org.apache.shardingsphere.sharding.api.sharding.standard.RangeShardingValue;
 import org.apache.shardingsphere.sharding.api.sharding.standard.StandardShardingAlgorithm;
 
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.Properties;
 
 /**
  * 图片分表算法
+ * <p>
+ * picture_{spaceId} 存放旗舰版团队空间的图片；开启分桶后，其他空间按 spaceId 哈希存放在 picture_b00 ~ picture_b63 中；
+ * picture 存放公共图库（以及未分桶时所有其他空间）的图片。分表是否生效取决于是否已注册到 actual-data-nodes，
+ * 见 {@link DynamicShardingManager}。
+ * <ul>
+ *     <li>spaceId = ?：依次尝试该空间的独立分表、所在的分桶表，都没有时路由到 picture</li>
+ *     <li>spaceId IN (...)：ShardingSphere 对每个值分别调用精确分片后取并集</li>
+ *     <li>spaceId 范围查询：picture 加上 spaceId 落在范围内的分表</li>
+ *     <li>没有 spaceId 条件（查询所有图片、公共图库、管理员统计）：ShardingSphere 全路由到所有表，
+ *     并在内存中归并 ORDER BY / GROUP BY，改写 LIMIT 后再分页</li>
+ * </ul>
  */
 public class PictureShardingAlgorithm implements StandardShardingAlgorithm<Long> {
 
+    /**
+     * 分桶数，确定后不能修改（修改需要重新迁移所有数据）
+     */
+    public static final int BUCKET_COUNT = 64;
+
+    private Properties props = new Properties();
+
     @Override
     public String doSharding(Collection<String> availableTargetNames, PreciseShardingValue<Long> preciseShardingValue) {
         Long spaceId = preciseShardingValue.getValue();
@@ -22,26 +41,71 @@ public class PictureShardingAlgorithm implements StandardShardingAlgorithm<Long>
             return logicTableName;
         }
         // 根据 spaceId 动态生成分表名
-        String realTableName = "picture_" + spaceId;
+        String realTableName = logicTableName + "_" + spaceId;
         if (availableTargetNames.contains(realTableName)) {
             return realTableName;
-        } else {
-            return logicTableName;
         }
+        String bucketTableName = getBucketTableName(logicTableName, spaceId);
+        if (availableTargetNames.contains(bucketTableName)) {
+            return bucketTableName;
+        }
+        return logicTableName;
     }
 
     @Override
-    public Collection<String> doSharding(Collection<String> collection, RangeShardingValue<Long> rangeShardingValue) {
-        return new ArrayList<>();
+    public Collection<String> doSharding(Collection<String> availableTargetNames, RangeShardingValue<Long> rangeShardingValue) {
+        String logicTableName = rangeShardingValue.getLogicTableName();
+        Range<Long> valueRange = rangeShardingValue.getValueRange();
+        Collection<String> result = new LinkedHashSet<>();
+        for (String targetName : availableTargetNames) {
+            Long spaceId = parseSpaceId(logicTableName, targetName);
+            // picture 本身和分桶表可能存放任意空间的图片，必须查询
+            if (spaceId == null || valueRange.contains(spaceId)) {
+                result.add(targetName);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 计算空间所在的分桶
+     * <p>
+     * spaceId 是雪花 id，低位分布不均匀，先乘以黄金分割常数打散，再取高 32 位取模
+     */
+    public static int getBucket(long spaceId) {
+        return (int) (((spaceId * 0x9E3779B97F4A7C15L) >>> 32) % BUCKET_COUNT);
+    }
+
+    public static String getBucketTableName(String logicTableName, long spaceId) {
+        return getBucketTableNameByIndex(logicTableName, getBucket(spaceId));
+    }
+
+    public static String getBucketTableNameByIndex(String logicTableName, int bucket) {
+        return String.format("%s_b%02d", logicTableName, bucket);
+    }
+
+    /**
+     * 从分表名 picture_{spaceId} 中解析 spaceId，不是空间分表时返回 null
+     */
+    private static Long parseSpaceId(String logicTableName, String targetName) {
+        String prefix = logicTableName + "_";
+        if (!targetName.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(targetName.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     @Override
     public Properties getProps() {
-        return null;
+        return props;
     }
 
     @Override
     public void init(Properties properties) {
-
+        this.props = properties;
     }
 }
@@ -0,0 +1,70 @@
+package com.ca.capicturebackend.manager.sharding;
+
+import com.baomidou.mybatisplus.extension.plugins.inner.DynamicTableNameInnerInterceptor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * 公共图库查询路由
+ * <p>
+ * 公共图库的图片（spaceId 为 null）只存放在 picture 中，但 ShardingSphere 无法根据 spaceId IS NULL 确定分表，
+ * 这类查询会路由到所有分表；标准分片策略也不读取 HintManager 中的分片值。
+ * 在 {@link #route(Supplier)} 中执行的查询把表名 picture 改写为 {@link #TABLE_NAME}，
+ * 它在分片规则中只有 picture 一个节点、没有分片策略（见 application.yml），查询只落在 picture 上。
+ */
+public final class PublicPictureRoute {
+
+    // 只映射到 picture 的逻辑表
+    public static final String TABLE_NAME = "picture_public";
+
+    private static final String LOGIC_TABLE_NAME = "picture";
+
+    private static final ThreadLocal<Boolean> ROUTED = new ThreadLocal<>();
+
+    private PublicPictureRoute() {
+    }
+
+    /**
+     * 只在 picture 上执行公共图库查询，只能用于 spaceId IS NULL 的查询
+     */
+    public static <T> T route(Supplier<T> query) {
+        if (isRouted()) {
+            return query.get();
+        }
+        ROUTED.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            ROUTED.remove();
+        }
+    }
+
+    public static boolean isRouted() {
+        return Boolean.TRUE.equals(ROUTED.get());
+    }
+
+    /**
+     * 改写表名的 MyBatis-Plus 插件，需要在分页插件之前添加
+     */
+    public static DynamicTableNameInnerInterceptor tableNameInterceptor() {
+        return new DynamicTableNameInnerInterceptor((sql, tableName) ->
+                isRouted() && LOGIC_TABLE_NAME.equals(tableName) ? TABLE_NAME : tableName) {
+
+            /**
+             * 分页插件在 willDoQuery 中根据原 SQL 生成 count 语句，这里提前改写，count 语句同样只查询 picture
+             */
+            @Override
+            public boolean willDoQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                       ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
+                beforeQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+                return true;
+            }
+        };
+    }
+}
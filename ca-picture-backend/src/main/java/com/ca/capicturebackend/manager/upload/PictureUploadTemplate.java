@@ -78,6 +78,9 @@ public abstract class PictureUploadTemplate {
                 return buildResult(originalFilename, compressedCiObject, uploadPath, thumbnailCiObject, imageInfo);
             }
             return buildResult(imageInfo, uploadPath, originalFilename, file);
+        } catch (BusinessException e) {
+            // 校验类异常（如下载时发现格式、大小不符）直接返回给前端
+            throw e;
         } catch (Exception e) {
             log.error("图片上传到对象存储失败", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
@@ -2,17 +2,22 @@ package com.ca.capicturebackend.manager.upload;
 
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.HttpResponse;
 import cn.hutool.http.HttpStatus;
-import cn.hutool.http.HttpUtil;
-import cn.hutool.http.Method;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.exception.ThrowUtils;
+import com.ca.capicturebackend.manager.http.OutboundHttpClient;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpGet;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
@@ -24,6 +29,22 @@ import java.util.List;
 @Service
 @Slf4j
 public class UrlPictureUpload extends PictureUploadTemplate {
+
+    @Resource
+    private OutboundHttpClient outboundHttpClient;
+
+    // 允许上传的文件类型
+    private static final List<String> ALLOW_FORMAT_LIST = Arrays.asList("image/jpeg", "image/png", "image/jpg", "image/webp");
+
+    // 文件大小上限 2MB
+    private static final long MAX_FILE_SIZE = 2 * 1024 * 1024L;
+
+    // 下载最长等待时间
+    private static final long DOWNLOAD_WAIT_MILLIS = 60000;
+
+    // 识别文件类型所需的文件头长度
+    private static final int MAGIC_BYTES_LENGTH = 12;
+
     @Override
     protected void validPicture(Object inputSource) {
         String fileUrl = (String) inputSource;
@@ -38,43 +59,7 @@ public class UrlPictureUpload extends PictureUploadTemplate {
         // 3. 校验 URL 协议
         ThrowUtils.throwIf(!fileUrl.startsWith("http://") && !fileUrl.startsWith("https://"),
                 ErrorCode.PARAMS_ERROR, "仅支持 HTTP 或 HTTPS 协议的文件地址");
-        // 4. 发送 HEAD 请求验证文件是否存在
-        HttpResponse httpResponse = null;
-        try {
-            httpResponse = HttpUtil.createRequest(Method.HEAD, fileUrl).execute();
-
-            if (httpResponse.getStatus() != HttpStatus.HTTP_OK) {
-                return;
-            }
-            // 5. 文件存在，文件类型校验
-            String contentType = httpResponse.header("Content-Type");
-            // 不为空才校验是否合法，这样校验规则相对宽松
-            if (!StrUtil.isEmpty(contentType)) {
-                // 允许上传的文件后缀
-                final List<String> ALLOW_FORMAT_LIST = Arrays.asList("image/jpeg", "image/png", "image/jpg", "image/webp");
-                ThrowUtils.throwIf(!ALLOW_FORMAT_LIST.contains(contentType.toLowerCase()),
-                        ErrorCode.PARAMS_ERROR, "不支持的文件格式");
-            }
-            // 6. 文件存在，文件大小的校验
-            String contentLengthStr = httpResponse.header("Content-Length");
-            if (!StrUtil.isEmpty(contentLengthStr)) {
-                try {
-                    long contentLength = Long.parseLong(contentLengthStr);
-                    final long ONE_M = 1024 * 1024;
-                    ThrowUtils.throwIf(contentLength > 2 * ONE_M, ErrorCode.PARAMS_ERROR, "文件大小不能超过 2MB");
-                } catch (NumberFormatException e) {
-                    throw new BusinessException(ErrorCode.PARAMS_ERROR, "文件大小格式化异常");
-                }
-            }
-        } catch (Exception e) {
-            // 没必要报错，不需要影响图片上传只需要打印日志即可
-            log.error("文件 HEAD 校验失败  {}", e.getMessage());
-        } finally {
-            // 释放资源
-            if (httpResponse != null) {
-                httpResponse.close();
-            }
-        }
+        // 文件是否存在、类型与大小在下载时一并校验，避免额外的 HEAD 请求
     }
 
     @Override
@@ -91,11 +76,89 @@ public class UrlPictureUpload extends PictureUploadTemplate {
         return originFilename;
     }
 
+    /**
+     * 一次 GET 请求边下载边校验：先校验响应头，再校验文件头，下载过程中超出大小立即中断
+     *
+     * @param inputSource
+     * @param file
+     * @throws Exception
+     */
     @Override
     protected void processFile(Object inputSource, File file) throws Exception {
         String fileUrl = (String) inputSource;
-        // 下载文件到临时目录
-        HttpUtil.downloadFile(fileUrl, file);
+        HttpGet httpGet = new HttpGet(fileUrl);
+        outboundHttpClient.execute(httpGet, response -> {
+            // 1. 校验文件是否存在
+            if (response.getStatusLine().getStatusCode() != HttpStatus.HTTP_OK) {
+                httpGet.abort();
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "文件不存在或无法访问");
+            }
+            // 2. 校验文件类型（响应头不为空才校验，规则相对宽松，最终以文件头为准）
+            Header contentTypeHeader = response.getFirstHeader("Content-Type");
+            if (contentTypeHeader != null && StrUtil.isNotBlank(contentTypeHeader.getValue())) {
+                String contentType = StrUtil.subBefore(contentTypeHeader.getValue(), ";", false).trim().toLowerCase();
+                if (!ALLOW_FORMAT_LIST.contains(contentType)) {
+                    httpGet.abort();
+                    throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的文件格式");
+                }
+            }
+            // 3. 校验文件大小
+            HttpEntity entity = response.getEntity();
+            ThrowUtils.throwIf(entity == null, ErrorCode.PARAMS_ERROR, "文件内容为空");
+            if (entity.getContentLength() > MAX_FILE_SIZE) {
+                httpGet.abort();
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "文件大小不能超过 2MB");
+            }
+            // 4. 先读取文件头校验真实格式，再边下载边校验大小
+            try (InputStream in = entity.getContent(); OutputStream out = new FileOutputStream(file)) {
+                byte[] buffer = new byte[8192];
+                int headLength = 0;
+                while (headLength < MAGIC_BYTES_LENGTH) {
+                    int read = in.read(buffer, headLength, MAGIC_BYTES_LENGTH - headLength);
+                    if (read == -1) {
+                        break;
+                    }
+                    headLength += read;
+                }
+                if (!isAllowedImage(buffer, headLength)) {
+                    httpGet.abort();
+                    throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的文件格式");
+                }
+                out.write(buffer, 0, headLength);
+                long total = headLength;
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    total += read;
+                    if (total > MAX_FILE_SIZE) {
+                        httpGet.abort();
+                        throw new BusinessException(ErrorCode.PARAMS_ERROR, "文件大小不能超过 2MB");
+                    }
+                    out.write(buffer, 0, read);
+                }
+            }
+            return null;
+        }, DOWNLOAD_WAIT_MILLIS);
     }
-}
 
+    /**
+     * 根据文件头判断是否为允许的图片格式（jpeg / png / webp）
+     *
+     * @param head
+     * @param length
+     * @return
+     */
+    private static boolean isAllowedImage(byte[] head, int length) {
+        // JPEG：FF D8 FF
+        if (length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+            return true;
+        }
+        // PNG：89 50 4E 47 0D 0A 1A 0A
+        if (length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G'
+                && head[4] == 0x0D && head[5] == 0x0A && head[6] == 0x1A && head[7] == 0x0A) {
+            return true;
+        }
+        // WEBP：RIFF????WEBP
+        return length >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P';
+    }
+}
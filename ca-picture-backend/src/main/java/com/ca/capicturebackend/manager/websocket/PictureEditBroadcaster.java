@@ -0,0 +1,624 @@
+package com.ca.capicturebackend.manager.websocket;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.ca.capicturebackend.manager.websocket.binary.PictureEditBinaryCodec;
+import com.ca.capicturebackend.manager.websocket.binary.PictureEditBinaryHandler;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditActionEnum;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditBroadcastMessage;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditMessageTypeEnum;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditResponseMessage;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import com.ca.capicturebackend.model.vo.UserVO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图片编辑消息广播
+ * <p>
+ * 每张图片对应一个 Redis 频道，节点上有该图片的会话时才订阅。
+ * 广播时发布到频道，每个节点收到后只推送给本节点的会话，因此同一张图片的用户可以连接到不同节点。
+ * <p>
+ * 推送在独立的推送线程上执行（按图片 id 固定线程，保证同一图片的消息顺序），不占用事件处理线程和 Redis 订阅线程；
+ * 推送线程只把消息放入每个会话的发送队列，由发送线程实际发出，慢客户端不会阻塞推送线程。
+ * 发送队列积压过多、单次发送超时或推送线程积压过多时直接断开相关会话，客户端重连后通过操作日志重放恢复状态。
+ * <p>
+ * 频道中传递的始终是 JSON 消息；本节点有二进制协议的会话时，再转换为二进制帧发送（见 {@link PictureEditBinaryCodec}）。
+ */
+@Slf4j
+@Component
+public class PictureEditBroadcaster {
+
+    // 推送线程数
+    private static final int FAN_OUT_LANES = 4;
+
+    // 每个推送线程最多积压的任务数
+    private static final int FAN_OUT_QUEUE_SIZE = 10_000;
+
+    // 发送线程数
+    private static final int SEND_THREADS = 8;
+
+    // 单次发送最长耗时，超过后断开该会话
+    private static final int SEND_TIME_LIMIT_MILLIS = 1_000;
+
+    // 单个会话的发送队列上限（字节），超过后断开该会话
+    private static final int SEND_BUFFER_SIZE_LIMIT = 512 * 1024;
+
+    // Tomcat 阻塞发送超时（默认 20 秒），与发送时间上限保持一致
+    private static final String BLOCKING_SEND_TIMEOUT_PROPERTY = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    // 二进制协议下连续编辑动作的合并窗口
+    private static final long EDIT_ACTION_BATCH_MILLIS = 50L;
+
+    // 订阅锁的分段数
+    private static final int SUBSCRIPTION_LOCK_COUNT = 64;
+
+    // 二进制会话已经收到过用户信息的用户 id 集合
+    private static final String KNOWN_USERS_ATTRIBUTE = "knownUserIds";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private ScheduledExecutorService scheduledExecutor;
+
+    // 二进制协议下待合并发送的编辑动作，key: pictureId（只在该图片的推送线程上读写）
+    private final Map<Long, PendingEditActions> pendingEditActions = new ConcurrentHashMap<>();
+
+    // 本节点的会话，key: pictureId, value: sessionId => 带发送缓冲的会话
+    private final Map<Long, Map<String, WebSocketSession>> pictureSessions = new ConcurrentHashMap<>();
+
+    // 本节点订阅的频道监听器，key: pictureId, value: 监听器 id
+    private final Map<Long, Integer> pictureListenerIds = new ConcurrentHashMap<>();
+
+    // 订阅、取消订阅按图片 id 分段加锁
+    private final Object[] subscriptionLocks = new Object[SUBSCRIPTION_LOCK_COUNT];
+
+    private final ThreadPoolExecutor[] fanOutLanes = new ThreadPoolExecutor[FAN_OUT_LANES];
+
+    // 发送线程，每个会话同时最多占用一个线程
+    private final ExecutorService sendExecutor = Executors.newFixedThreadPool(SEND_THREADS,
+            ThreadFactoryBuilder.create().setNamePrefix("pictureEditSend-").build());
+
+    public PictureEditBroadcaster() {
+        for (int i = 0; i < SUBSCRIPTION_LOCK_COUNT; i++) {
+            subscriptionLocks[i] = new Object();
+        }
+        for (int i = 0; i < FAN_OUT_LANES; i++) {
+            fanOutLanes[i] = new ThreadPoolExecutor(
+                    1,
+                    1,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(FAN_OUT_QUEUE_SIZE),
+                    ThreadFactoryBuilder.create().setNamePrefix("pictureEditFanOut-" + i + "-").build()
+            );
+        }
+    }
+
+    /**
+     * 添加会话，该图片在本节点的第一个会话加入时订阅频道
+     */
+    public void addSession(Long pictureId, WebSocketSession session) {
+        WebSocketSession sendSession = decorate(session);
+        AtomicBoolean first = new AtomicBoolean();
+        pictureSessions.compute(pictureId, (id, sessions) -> {
+            if (sessions == null) {
+                sessions = new ConcurrentHashMap<>();
+                first.set(true);
+            }
+            sessions.put(session.getId(), sendSession);
+            return sessions;
+        });
+        // 订阅会阻塞等待 Redis，放在 compute 之外，不占用 ConcurrentHashMap 的桶锁
+        if (first.get()) {
+            syncSubscription(pictureId);
+        }
+    }
+
+    /**
+     * 移除会话，该图片在本节点的最后一个会话离开时取消订阅
+     */
+    public void removeSession(Long pictureId, WebSocketSession session) {
+        AtomicBoolean last = new AtomicBoolean();
+        pictureSessions.computeIfPresent(pictureId, (id, sessions) -> {
+            sessions.remove(session.getId());
+            if (sessions.isEmpty()) {
+                last.set(true);
+                return null;
+            }
+            return sessions;
+        });
+        if (last.get()) {
+            syncSubscription(pictureId);
+        }
+    }
+
+    /**
+     * 广播给该图片在所有节点上的会话
+     *
+     * @param pictureId      图片 id
+     * @param message        消息内容
+     * @param excludeSession 不接收消息的会话，可为 null
+     */
+    public void broadcast(Long pictureId, String message, WebSocketSession excludeSession) {
+        PictureEditBroadcastMessage broadcastMessage = new PictureEditBroadcastMessage();
+        broadcastMessage.setExcludeSessionId(excludeSession == null ? null : excludeSession.getId());
+        broadcastMessage.setPayload(message);
+        try {
+            getTopic(pictureId).publish(encode(broadcastMessage));
+        } catch (Exception e) {
+            // Redis 不可用时至少保证本节点的用户能收到
+            log.warn("图片编辑消息发布失败，仅推送本节点，pictureId={}", pictureId, e);
+            deliverLocal(pictureId, broadcastMessage);
+        }
+    }
+
+    /**
+     * 只发送给本节点的某个会话
+     */
+    public void sendTo(Long pictureId, WebSocketSession session, String message) {
+        executeOnLane(pictureId, () -> {
+            Map<String, WebSocketSession> sessions = pictureSessions.get(pictureId);
+            WebSocketSession sendSession = sessions == null ? null : sessions.get(session.getId());
+            if (sendSession == null) {
+                return;
+            }
+            if (isBinary(sendSession)) {
+                PictureEditBroadcastMessage broadcastMessage = new PictureEditBroadcastMessage();
+                broadcastMessage.setPayload(message);
+                deliverBinary(pictureId, broadcastMessage, Collections.singletonList(sendSession));
+            } else {
+                send(pictureId, sendSession, new TextMessage(message));
+            }
+        });
+    }
+
+    /**
+     * 发送 ping（存活检测）
+     */
+    public void ping(Long pictureId, WebSocketSession session) {
+        executeOnLane(pictureId, () -> {
+            Map<String, WebSocketSession> sessions = pictureSessions.get(pictureId);
+            WebSocketSession sendSession = sessions == null ? null : sessions.get(session.getId());
+            if (sendSession != null) {
+                send(pictureId, sendSession, new PingMessage());
+            }
+        });
+    }
+
+    /**
+     * 该用户在本节点是否有该图片的会话
+     */
+    public boolean hasUserSession(Long pictureId, Long userId) {
+        Map<String, WebSocketSession> sessions = pictureSessions.get(pictureId);
+        if (sessions == null) {
+            return false;
+        }
+        for (WebSocketSession session : sessions.values()) {
+            if (userId.equals(session.getAttributes().get("userId")) && session.isOpen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 本节点有会话的图片数
+     */
+    public int getRoomCount() {
+        return pictureSessions.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor fanOutLane : fanOutLanes) {
+            fanOutLane.shutdown();
+        }
+        sendExecutor.shutdown();
+    }
+
+    /**
+     * 按本节点当前是否有该图片的会话订阅或取消订阅
+     * <p>
+     * 会话的加入和离开可能交错执行，这里不按调用方看到的变化订阅，而是在锁内重新读取当前状态，
+     * 最后一次调用总能使订阅状态与会话一致
+     */
+    private void syncSubscription(Long pictureId) {
+        synchronized (subscriptionLocks[lane(pictureId, SUBSCRIPTION_LOCK_COUNT)]) {
+            boolean hasSessions = pictureSessions.containsKey(pictureId);
+            boolean subscribed = pictureListenerIds.containsKey(pictureId);
+            if (hasSessions && !subscribed) {
+                subscribe(pictureId);
+            } else if (!hasSessions && subscribed) {
+                unsubscribe(pictureId);
+            }
+        }
+    }
+
+    private void subscribe(Long pictureId) {
+        int listenerId = getTopic(pictureId).addListener(String.class, (channel, msg) ->
+                deliverLocal(pictureId, decode(msg)));
+        pictureListenerIds.put(pictureId, listenerId);
+    }
+
+    private void unsubscribe(Long pictureId) {
+        Integer listenerId = pictureListenerIds.remove(pictureId);
+        if (listenerId != null) {
+            getTopic(pictureId).removeListener(listenerId);
+        }
+    }
+
+    /**
+     * 交给推送线程，推送给本节点的会话
+     */
+    private void deliverLocal(Long pictureId, PictureEditBroadcastMessage broadcastMessage) {
+        executeOnLane(pictureId, () -> {
+            Map<String, WebSocketSession> sessions = pictureSessions.get(pictureId);
+            if (CollUtil.isEmpty(sessions)) {
+                return;
+            }
+            // 同一条消息只构造一次，发给所有会话
+            TextMessage textMessage = new TextMessage(broadcastMessage.getPayload());
+            String excludeSessionId = broadcastMessage.getExcludeSessionId();
+            boolean hasBinarySession = false;
+            for (WebSocketSession session : sessions.values()) {
+                if (isBinary(session)) {
+                    hasBinarySession = true;
+                    continue;
+                }
+                // 排除掉的 session 不发送
+                if (session.getId().equals(excludeSessionId)) {
+                    continue;
+                }
+                send(pictureId, session, textMessage);
+            }
+            if (hasBinarySession) {
+                deliverBinary(pictureId, broadcastMessage, null);
+            }
+        });
+    }
+
+    /**
+     * 转换为二进制帧，推送给本节点的二进制协议会话（在该图片的推送线程上执行）
+     *
+     * @param targets 指定接收的会话，为 null 时发给该图片的所有二进制会话，此时连续的编辑动作会合并发送
+     */
+    private void deliverBinary(Long pictureId, PictureEditBroadcastMessage broadcastMessage, List<WebSocketSession> targets) {
+        PictureEditResponseMessage pictureEditResponseMessage;
+        try {
+            pictureEditResponseMessage = objectMapper.readValue(broadcastMessage.getPayload(), PictureEditResponseMessage.class);
+        } catch (IOException e) {
+            log.warn("图片编辑消息解析失败，pictureId={}", pictureId, e);
+            return;
+        }
+        PictureEditMessageTypeEnum typeEnum = PictureEditMessageTypeEnum.getEnumByValue(pictureEditResponseMessage.getType());
+        if (typeEnum == null) {
+            return;
+        }
+        UserVO user = pictureEditResponseMessage.getUser();
+        long userId = user == null || user.getId() == null ? 0L : user.getId();
+        String excludeSessionId = broadcastMessage.getExcludeSessionId();
+        if (typeEnum == PictureEditMessageTypeEnum.EDIT_ACTION && targets == null) {
+            PictureEditActionEnum actionEnum = PictureEditActionEnum.getEnumByValue(pictureEditResponseMessage.getEditAction());
+            if (actionEnum != null) {
+                appendEditAction(pictureId, user, userId, excludeSessionId, actionEnum);
+            }
+            return;
+        }
+        // 先发出之前合并中的编辑动作，保证顺序
+        flushEditActions(pictureId);
+        byte[] frame;
+        if (typeEnum == PictureEditMessageTypeEnum.EDIT_ACTION) {
+            PictureEditActionEnum actionEnum = PictureEditActionEnum.getEnumByValue(pictureEditResponseMessage.getEditAction());
+            if (actionEnum == null) {
+                return;
+            }
+            frame = PictureEditBinaryCodec.encodeEditActions(userId, Collections.singletonList(actionEnum));
+        } else {
+            frame = PictureEditBinaryCodec.encodeMessage(typeEnum, userId, getBinaryText(pictureEditResponseMessage, typeEnum));
+        }
+        sendBinary(pictureId, frame, user, userId, excludeSessionId, targets);
+    }
+
+    private String getBinaryText(PictureEditResponseMessage pictureEditResponseMessage, PictureEditMessageTypeEnum typeEnum) {
+        switch (typeEnum) {
+            case INFO:
+            case ERROR:
+                return pictureEditResponseMessage.getMessage();
+            case OUT_PAINTING_RESULT:
+                return writeJson(pictureEditResponseMessage.getOutPaintingTask());
+            case INIT_STATE:
+            case SAVE_EDIT:
+                if (pictureEditResponseMessage.getEditState() == null) {
+                    return null;
+                }
+                Map<String, Object> state = new HashMap<>();
+                state.put("editState", pictureEditResponseMessage.getEditState());
+                state.put("editActions", pictureEditResponseMessage.getEditActions());
+                return writeJson(state);
+            default:
+                return null;
+        }
+    }
+
+    private String writeJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            log.warn("图片编辑消息序列化失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 合并连续的编辑动作，窗口结束或遇到其他消息时一次性发出
+     */
+    private void appendEditAction(Long pictureId, UserVO user, long userId, String excludeSessionId, PictureEditActionEnum actionEnum) {
+        PendingEditActions pending = pendingEditActions.get(pictureId);
+        if (pending != null && (pending.userId != userId || !Objects.equals(pending.excludeSessionId, excludeSessionId)
+                || pending.actions.size() >= PictureEditBinaryCodec.MAX_ACTIONS_PER_FRAME)) {
+            flushEditActions(pictureId);
+            pending = null;
+        }
+        if (pending == null) {
+            PendingEditActions newPending = new PendingEditActions(user, userId, excludeSessionId);
+            pendingEditActions.put(pictureId, newPending);
+            scheduledExecutor.schedule(() -> executeOnLane(pictureId, () -> {
+                if (pendingEditActions.remove(pictureId, newPending)) {
+                    sendEditActions(pictureId, newPending);
+                }
+            }), EDIT_ACTION_BATCH_MILLIS, TimeUnit.MILLISECONDS);
+            pending = newPending;
+        }
+        pending.actions.add(actionEnum);
+    }
+
+    private void flushEditActions(Long pictureId) {
+        PendingEditActions pending = pendingEditActions.remove(pictureId);
+        if (pending != null) {
+            sendEditActions(pictureId, pending);
+        }
+    }
+
+    private void sendEditActions(Long pictureId, PendingEditActions pending) {
+        byte[] frame = PictureEditBinaryCodec.encodeEditActions(pending.userId, pending.actions);
+        sendBinary(pictureId, frame, pending.user, pending.userId, pending.excludeSessionId, null);
+    }
+
+    private void sendBinary(Long pictureId, byte[] frame, UserVO user, long userId, String excludeSessionId, List<WebSocketSession> targets) {
+        Collection<WebSocketSession> sessions = targets;
+        if (sessions == null) {
+            Map<String, WebSocketSession> pictureSessionMap = pictureSessions.get(pictureId);
+            if (pictureSessionMap == null) {
+                return;
+            }
+            sessions = pictureSessionMap.values();
+        }
+        BinaryMessage binaryMessage = new BinaryMessage(frame);
+        BinaryMessage profileMessage = null;
+        for (WebSocketSession session : sessions) {
+            if (!isBinary(session) || session.getId().equals(excludeSessionId)) {
+                continue;
+            }
+            // 用户信息每个会话只发送一次，之后的帧只带 userId
+            if (user != null && userId != 0L && getKnownUserIds(session).add(userId)) {
+                if (profileMessage == null) {
+                    profileMessage = createProfileMessage(user, userId);
+                }
+                if (profileMessage != null) {
+                    send(pictureId, session, profileMessage);
+                }
+            }
+            send(pictureId, session, binaryMessage);
+        }
+    }
+
+    private BinaryMessage createProfileMessage(UserVO user, long userId) {
+        try {
+            return new BinaryMessage(PictureEditBinaryCodec.encodeUserProfile(userId, objectMapper.writeValueAsBytes(user)));
+        } catch (IOException e) {
+            log.warn("用户信息序列化失败，userId={}", userId, e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Long> getKnownUserIds(WebSocketSession session) {
+        return (Set<Long>) session.getAttributes().computeIfAbsent(KNOWN_USERS_ATTRIBUTE, key -> new HashSet<Long>());
+    }
+
+    private boolean isBinary(WebSocketSession session) {
+        return Boolean.TRUE.equals(session.getAttributes().get(PictureEditBinaryHandler.BINARY_ATTRIBUTE));
+    }
+
+    private void send(Long pictureId, WebSocketSession session, WebSocketMessage<?> webSocketMessage) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            // 只放入会话的发送队列，立即返回
+            session.sendMessage(webSocketMessage);
+        } catch (SessionLimitExceededException e) {
+            log.warn("图片编辑会话发送积压过多，断开连接，pictureId={}, sessionId={}", pictureId, session.getId());
+            removeSession(pictureId, session);
+            closeQuietly(session);
+        } catch (IOException | IllegalStateException e) {
+            log.warn("图片编辑消息推送失败，sessionId={}", session.getId(), e);
+        }
+    }
+
+    private WebSocketSession decorate(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession) {
+            Session nativeSession = ((NativeWebSocketSession) session).getNativeSession(Session.class);
+            if (nativeSession != null) {
+                nativeSession.getUserProperties().put(BLOCKING_SEND_TIMEOUT_PROPERTY, (long) SEND_TIME_LIMIT_MILLIS);
+            }
+        }
+        return new AsyncSendSession(session);
+    }
+
+    /**
+     * 交给该图片的推送线程执行；推送线程积压已满时消息无法送达，断开该图片在本节点的会话，由客户端重连后重新同步
+     */
+    private void executeOnLane(Long pictureId, Runnable task) {
+        try {
+            fanOutLanes[lane(pictureId)].execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("图片编辑消息推送队列已满，断开该图片在本节点的会话，pictureId={}", pictureId);
+            Map<String, WebSocketSession> sessions = pictureSessions.get(pictureId);
+            if (sessions != null) {
+                sessions.values().forEach(this::closeQuietly);
+            }
+        }
+    }
+
+    private void closeQuietly(WebSocketSession session) {
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("关闭图片编辑会话失败，sessionId={}", session.getId(), e);
+        }
+    }
+
+    /**
+     * 频道消息格式：排除的 sessionId + 换行 + 消息内容
+     * <p>
+     * 消息内容已经是 JSON，原样拼接，不再整体序列化一次，各节点收到后也无需解析
+     */
+    private static String encode(PictureEditBroadcastMessage broadcastMessage) {
+        String excludeSessionId = broadcastMessage.getExcludeSessionId();
+        return (excludeSessionId == null ? "" : excludeSessionId) + '\n' + broadcastMessage.getPayload();
+    }
+
+    private static PictureEditBroadcastMessage decode(String msg) {
+        int separator = msg.indexOf('\n');
+        PictureEditBroadcastMessage broadcastMessage = new PictureEditBroadcastMessage();
+        broadcastMessage.setExcludeSessionId(separator > 0 ? msg.substring(0, separator) : null);
+        broadcastMessage.setPayload(msg.substring(separator + 1));
+        return broadcastMessage;
+    }
+
+    private int lane(Long pictureId) {
+        return lane(pictureId, FAN_OUT_LANES);
+    }
+
+    private static int lane(Long pictureId, int count) {
+        long hash = pictureId * 0x9E3779B97F4A7C15L;
+        return (int) ((hash >>> 32) % count);
+    }
+
+    /**
+     * 合并中的编辑动作
+     */
+    private static class PendingEditActions {
+
+        private final UserVO user;
+
+        private final long userId;
+
+        private final String excludeSessionId;
+
+        private final List<PictureEditActionEnum> actions = new ArrayList<>();
+
+        PendingEditActions(UserVO user, long userId, String excludeSessionId) {
+            this.user = user;
+            this.userId = userId;
+            this.excludeSessionId = excludeSessionId;
+        }
+    }
+
+    /**
+     * 异步发送的会话
+     * <p>
+     * sendMessage 只把消息放入会话自己的发送队列，由发送线程依次发出，同一会话同时只有一个发送线程，保证消息顺序。
+     * 发送队列超过上限时抛出 {@link SessionLimitExceededException}，由调用方断开会话；发送失败或超时时直接断开会话，
+     * 单次发送的超时由 Tomcat 的阻塞发送超时控制（见 {@link #decorate}）。
+     * <p>
+     * 不使用 {@link org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator}：它由调用 sendMessage 的线程发送缓冲区，
+     * 会阻塞推送线程，这里只需要直接包装原会话。
+     */
+    private class AsyncSendSession extends WebSocketSessionDecorator {
+
+        private final Queue<WebSocketMessage<?>> outbox = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger outboxBytes = new AtomicInteger();
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        AsyncSendSession(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (outboxBytes.addAndGet(message.getPayloadLength()) > SEND_BUFFER_SIZE_LIMIT) {
+                outboxBytes.addAndGet(-message.getPayloadLength());
+                throw new SessionLimitExceededException("图片编辑会话发送队列已满", CloseStatus.SESSION_NOT_RELIABLE);
+            }
+            outbox.add(message);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                sendExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+
+        private void drain() {
+            WebSocketMessage<?> message;
+            while ((message = outbox.poll()) != null) {
+                outboxBytes.addAndGet(-message.getPayloadLength());
+                if (!isOpen()) {
+                    continue;
+                }
+                try {
+                    getDelegate().sendMessage(message);
+                } catch (IOException | IllegalStateException e) {
+                    log.warn("图片编辑消息发送失败或超时，断开连接，sessionId={}", getId(), e);
+                    closeQuietly(this);
+                }
+            }
+            draining.set(false);
+            // 释放标记后又有新消息进入队列
+            if (!outbox.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    private RTopic getTopic(Long pictureId) {
+        return redissonClient.getTopic(CommonKeyEnum.PICTURE_EDIT_CHANNEL_PREFIX.key(String.valueOf(pictureId)), StringCodec.INSTANCE);
+    }
+}
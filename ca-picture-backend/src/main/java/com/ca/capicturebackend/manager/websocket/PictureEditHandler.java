@@ -1,27 +1,25 @@
 package com.ca.capicturebackend.manager.websocket;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.json.JSONUtil;
 import com.ca.capicturebackend.manager.websocket.disruptor.PictureEditEventProducer;
 import com.ca.capicturebackend.manager.websocket.model.*;
 import com.ca.capicturebackend.model.entity.User;
+import com.ca.capicturebackend.model.vo.UserVO;
 import com.ca.capicturebackend.service.UserService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.io.IOException;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 图片编辑 WebSocket 处理器
@@ -30,17 +28,42 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class PictureEditHandler extends TextWebSocketHandler {
 
+    private static final String USER_VO_ATTRIBUTE = "userVO";
+
+    private static final String CLEANED_UP_ATTRIBUTE = "cleanedUp";
+
     @Resource
     UserService userService;
 
     @Resource
     private PictureEditEventProducer pictureEditEventProducer;
 
-    // 每张图片的编辑状态，key: pictureId, value: 当前正在编辑的用户 ID
-    private final Map<Long, Long> pictureEditingUsers = new ConcurrentHashMap<>();
+    // 每张图片的编辑权（集群内互斥）
+    @Resource
+    private PictureEditLeaseManager pictureEditLeaseManager;
+
+    // 本节点的会话及跨节点广播
+    @Resource
+    private PictureEditBroadcaster pictureEditBroadcaster;
+
+    // 会话存活检测
+    @Resource
+    private PictureEditSessionSweeper pictureEditSessionSweeper;
+
+    // 编辑操作日志，用于中途加入的用户回放
+    @Resource
+    private PictureEditOperationLog pictureEditOperationLog;
+
+    // 与 Spring MVC 共用的 ObjectMapper（见 JsonConfig，Long 序列化为字符串）
+    @Resource
+    private ObjectMapper objectMapper;
 
-    // 保存所有连接的会话，key: pictureId, value: 用户会话集合
-    private final Map<Long, Set<WebSocketSession>> pictureSessions = new ConcurrentHashMap<>();
+    private ObjectWriter messageWriter;
+
+    @PostConstruct
+    public void init() {
+        messageWriter = objectMapper.writerFor(PictureEditResponseMessage.class);
+    }
 
     /**
      * 连接建立成功
@@ -53,32 +76,43 @@ public class PictureEditHandler extends TextWebSocketHandler {
         // 保存 session 到集合中
         User user = (User) session.getAttributes().get("user");
         Long pictureId = (Long) session.getAttributes().get("pictureId");
-        pictureSessions.putIfAbsent(pictureId, ConcurrentHashMap.newKeySet());
-        pictureSessions.get(pictureId).add(session);
+        // 连接期间用户信息不变，脱敏后的用户信息只生成一次
+        session.getAttributes().put(USER_VO_ATTRIBUTE, userService.getUserVO(user));
+        pictureEditBroadcaster.addSession(pictureId, session);
+        pictureEditSessionSweeper.register(pictureId, session);
         // 构造响应，发送加入编辑的消息通知
         PictureEditResponseMessage pictureEditResponseMessage = new PictureEditResponseMessage();
         pictureEditResponseMessage.setType(PictureEditMessageTypeEnum.INFO.getValue());
         String message = String.format("用户 %s 加入编辑", user.getUserName());
         pictureEditResponseMessage.setMessage(message);
-        pictureEditResponseMessage.setUser(userService.getUserVO(user));
+        pictureEditResponseMessage.setUser(getSessionUserVO(session));
         // 广播给所有用户
         broadcastToPicture(pictureId, pictureEditResponseMessage);
-        // 如果当前图片没有正在被编辑，则不用初始化图片状态
-        if (!pictureEditingUsers.containsKey(pictureId)) {
+        // 如果当前图片没有正在被编辑，则不用初始化图片状态（编辑者可能在其他节点）
+        Long editingUserId = pictureEditLeaseManager.getOwner(pictureId);
+        if (editingUserId == null) {
             return;
         }
-        // 构造响应，发送初始化图片状态消息
+        // 构造响应，发送初始化图片状态消息（编辑者 + 状态快照 + 快照之后的动作）
         pictureEditResponseMessage = new PictureEditResponseMessage();
         pictureEditResponseMessage.setType(PictureEditMessageTypeEnum.INIT_STATE.getValue());
         pictureEditResponseMessage.setMessage("初始化图片状态");
-        // 如果图片正在被编辑，填充正在编辑的用户
-        if (pictureEditingUsers.containsKey(pictureId)) {
-            Long editingUserId = pictureEditingUsers.get(pictureId);
-            User editingUser = userService.getById(editingUserId);
-            pictureEditResponseMessage.setUser(userService.getUserVO(editingUser));
+        PictureEditOperationLog.PictureEditReplay replay = pictureEditOperationLog.getReplay(pictureId);
+        if (replay != null && replay.getEditingUser() != null && editingUserId.equals(replay.getEditingUser().getId())) {
+            pictureEditResponseMessage.setUser(replay.getEditingUser());
+            pictureEditResponseMessage.setEditState(replay.getSnapshot());
+            pictureEditResponseMessage.setEditActions(replay.getActions());
+        } else {
+            // 没有日志（编辑者在其他节点且未开启持久化），只填充正在编辑的用户（与租约一起保存，不查询数据库）
+            UserVO editingUser = pictureEditLeaseManager.getOwnerUser(pictureId);
+            if (editingUser == null || !editingUserId.equals(editingUser.getId())) {
+                editingUser = new UserVO();
+                editingUser.setId(editingUserId);
+            }
+            pictureEditResponseMessage.setUser(editingUser);
         }
         // 发送给新加入编辑的用户
-        broadcastToPicture(session, pictureEditResponseMessage);
+        sendToSession(pictureId, session, pictureEditResponseMessage);
     }
 
     /**
@@ -90,6 +124,7 @@ public class PictureEditHandler extends TextWebSocketHandler {
      */
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        pictureEditSessionSweeper.touch(session);
         // 获取消息内容，将 JSON 转换为 PictureEditRequestMessage
         PictureEditRequestMessage pictureEditRequestMessage = JSONUtil.toBean(message.getPayload(), PictureEditRequestMessage.class);
         String type = pictureEditRequestMessage.getType();
@@ -101,6 +136,18 @@ public class PictureEditHandler extends TextWebSocketHandler {
         pictureEditEventProducer.publishEvent(pictureEditRequestMessage, session, user, pictureId);
     }
 
+    /**
+     * 收到 pong，说明连接存活
+     *
+     * @param session
+     * @param message
+     * @throws Exception
+     */
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) throws Exception {
+        pictureEditSessionSweeper.touch(session);
+    }
+
     /**
      * 进入编辑状态
      *
@@ -110,16 +157,16 @@ public class PictureEditHandler extends TextWebSocketHandler {
      * @param pictureId
      */
     public void handleEnterEditMessage(PictureEditRequestMessage pictureEditRequestMessage, WebSocketSession session, User user, Long pictureId) throws IOException {
-        // 没有用户正在编辑该图片，才能进入编辑
-        if (!pictureEditingUsers.containsKey(pictureId)) {
-            // 设置用户正在编辑该图片
-            pictureEditingUsers.putIfAbsent(pictureId, user.getId());
+        // 没有用户正在编辑该图片，才能进入编辑（获取编辑权租约）
+        if (pictureEditLeaseManager.tryAcquire(pictureId, getSessionUserVO(session))) {
+            // 开始记录编辑动作
+            pictureEditOperationLog.start(pictureId, getSessionUserVO(session));
             // 构造响应，发送加入编辑消息通知
             PictureEditResponseMessage pictureEditResponseMessage = new PictureEditResponseMessage();
             pictureEditResponseMessage.setType(PictureEditMessageTypeEnum.ENTER_EDIT.getValue());
             String message = String.format("用户 %s 开始编辑图片", user.getUserName());
             pictureEditResponseMessage.setMessage(message);
-            pictureEditResponseMessage.setUser(userService.getUserVO(user));
+            pictureEditResponseMessage.setUser(getSessionUserVO(session));
             // 广播给所有用户
             broadcastToPicture(pictureId, pictureEditResponseMessage);
         }
@@ -134,8 +181,6 @@ public class PictureEditHandler extends TextWebSocketHandler {
      * @param pictureId
      */
     public void handleEditActionMessage(PictureEditRequestMessage pictureEditRequestMessage, WebSocketSession session, User user, Long pictureId) throws IOException {
-        // 获取正在编辑的用户
-        Long editingUserId = pictureEditingUsers.get(pictureId);
         // 获取当前操作
         String editAction = pictureEditRequestMessage.getEditAction();
         PictureEditActionEnum actionEnum = PictureEditActionEnum.getEnumByValue(editAction);
@@ -144,14 +189,15 @@ public class PictureEditHandler extends TextWebSocketHandler {
             return;
         }
         // 如果是当前的编辑者
-        if (editingUserId != null && editingUserId.equals(user.getId())) {
+        if (pictureEditLeaseManager.isOwner(pictureId, user.getId())) {
+            pictureEditOperationLog.append(pictureId, actionEnum);
             // 构造响应，发送编辑图片操作通知
             PictureEditResponseMessage pictureEditResponseMessage = new PictureEditResponseMessage();
             pictureEditResponseMessage.setType(PictureEditMessageTypeEnum.EDIT_ACTION.getValue());
             pictureEditResponseMessage.setEditAction(pictureEditRequestMessage.getEditAction());
             String message = String.format("用户 %s 执行了 %s", user.getUserName(), actionEnum.getText());
             pictureEditResponseMessage.setMessage(message);
-            pictureEditResponseMessage.setUser(userService.getUserVO(user));
+            pictureEditResponseMessage.setUser(getSessionUserVO(session));
             // 广播除当前编辑用户外的其他用户，否则会造成重复编辑
             broadcastToPicture(pictureId, pictureEditResponseMessage, session);
         }
@@ -167,18 +213,16 @@ public class PictureEditHandler extends TextWebSocketHandler {
      * @param pictureId
      */
     public void handleExitEditMessage(PictureEditRequestMessage pictureEditRequestMessage, WebSocketSession session, User user, Long pictureId) throws IOException {
-        // 获取正在编辑的用户
-        Long editingUserId = pictureEditingUsers.get(pictureId);
-        // 如果是当前的编辑者
-        if (editingUserId != null && editingUserId.equals(user.getId())) {
-            // 移除用户正在编辑该图片
-            pictureEditingUsers.remove(pictureId);
+        // 如果是当前的编辑者，释放编辑权
+        if (pictureEditLeaseManager.release(pictureId, user.getId())) {
+            // 未保存的编辑动作丢弃
+            pictureEditOperationLog.finish(pictureId);
             // 构造响应，发送退出编辑的消息通知
             PictureEditResponseMessage pictureEditResponseMessage = new PictureEditResponseMessage();
             pictureEditResponseMessage.setType(PictureEditMessageTypeEnum.EXIT_EDIT.getValue());
             String message = String.format("用户 %s 退出编辑", user.getUserName());
             pictureEditResponseMessage.setMessage(message);
-            pictureEditResponseMessage.setUser(userService.getUserVO(user));
+            pictureEditResponseMessage.setUser(getSessionUserVO(session));
             broadcastToPicture(pictureId, pictureEditResponseMessage);
         }
 
@@ -193,18 +237,17 @@ public class PictureEditHandler extends TextWebSocketHandler {
      * @param pictureId
      */
     public void handleSaveEditMessage(PictureEditRequestMessage pictureEditRequestMessage, WebSocketSession session, User user, Long pictureId) throws IOException {
-        // 获取正在编辑的用户
-        Long editingUserId = pictureEditingUsers.get(pictureId);
-        // 如果是当前的编辑者
-        if (editingUserId != null && editingUserId.equals(user.getId())) {
-            // 移除用户正在编辑该图片
-            pictureEditingUsers.remove(pictureId);
+        // 如果是当前的编辑者，释放编辑权
+        if (pictureEditLeaseManager.release(pictureId, user.getId())) {
+            // 叠加本次编辑的全部动作，得到最终状态
+            PictureEditState finalState = pictureEditOperationLog.finish(pictureId);
             // 构造响应，发送保存编辑的消息通知
             PictureEditResponseMessage pictureEditResponseMessage = new PictureEditResponseMessage();
             pictureEditResponseMessage.setType(PictureEditMessageTypeEnum.SAVE_EDIT.getValue());
+            pictureEditResponseMessage.setEditState(finalState);
             String message = String.format("用户 %s 保存编辑", user.getUserName());
             pictureEditResponseMessage.setMessage(message);
-            pictureEditResponseMessage.setUser(userService.getUserVO(user));
+            pictureEditResponseMessage.setUser(getSessionUserVO(session));
             // 广播除当前编辑用户外的其他用户
             broadcastToPicture(pictureId, pictureEditResponseMessage, session);
         }
@@ -220,25 +263,51 @@ public class PictureEditHandler extends TextWebSocketHandler {
      */
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        cleanupSession(session);
+    }
+
+    /**
+     * 会话长时间没有响应（客户端崩溃、半开连接），按关闭连接处理后断开
+     *
+     * @param session
+     */
+    public void expireSession(WebSocketSession session) {
+        try {
+            cleanupSession(session);
+        } catch (Exception e) {
+            log.error("清理失效会话失败，sessionId={}", session.getId(), e);
+        }
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("关闭失效会话失败，sessionId={}", session.getId(), e);
+        }
+    }
+
+    /**
+     * 释放编辑状态、移除会话并通知其他用户，同一会话只处理一次
+     *
+     * @param session
+     * @throws IOException
+     */
+    private void cleanupSession(WebSocketSession session) throws IOException {
+        if (session.getAttributes().putIfAbsent(CLEANED_UP_ATTRIBUTE, Boolean.TRUE) != null) {
+            return;
+        }
         // 从 session 属性中获取公共参数
         User user = (User) session.getAttributes().get("user");
         Long pictureId = (Long) session.getAttributes().get("pictureId");
+        pictureEditSessionSweeper.unregister(session);
         // 移除当前用户的编辑状态
         handleExitEditMessage(null, session, user, pictureId);
         // 删除对话
-        Set<WebSocketSession> sessionSet = pictureSessions.get(pictureId);
-        if (sessionSet != null) {
-            sessionSet.remove(session);
-            if (sessionSet.isEmpty()) {
-                pictureSessions.remove(pictureId);
-            }
-        }
+        pictureEditBroadcaster.removeSession(pictureId, session);
         // 通知其他用户，该用户已经离开编辑
         PictureEditResponseMessage pictureEditResponseMessage = new PictureEditResponseMessage();
         pictureEditResponseMessage.setType(PictureEditMessageTypeEnum.INFO.getValue());
         String message = String.format("用户 %s 离开编辑", user.getUserName());
         pictureEditResponseMessage.setMessage(message);
-        pictureEditResponseMessage.setUser(userService.getUserVO(user));
+        pictureEditResponseMessage.setUser(getSessionUserVO(session));
         broadcastToPicture(pictureId, pictureEditResponseMessage);
     }
 
@@ -254,7 +323,7 @@ public class PictureEditHandler extends TextWebSocketHandler {
     }
 
     /**
-     * 广播给该图片的所有用户（支持排除某个 session）
+     * 广播给该图片的所有用户（支持排除某个 session），包括连接在其他节点上的用户
      *
      * @param pictureId
      * @param pictureEditResponseMessage
@@ -262,51 +331,46 @@ public class PictureEditHandler extends TextWebSocketHandler {
      * @throws IOException
      */
     private void broadcastToPicture(Long pictureId, PictureEditResponseMessage pictureEditResponseMessage, WebSocketSession excludeSession) throws IOException {
-        Set<WebSocketSession> sessionSet = pictureSessions.get(pictureId);
-        if (CollUtil.isNotEmpty(sessionSet)) {
-            String message = getJsonString(pictureEditResponseMessage);
-            TextMessage textMessage = new TextMessage(message);
-            for (WebSocketSession session : sessionSet) {
-                // 排除掉的 session 不发送
-                if (excludeSession != null && excludeSession.equals(session)) {
-                    continue;
-                }
-                if (session.isOpen()) {
-                    session.sendMessage(textMessage);
-                }
-            }
-        }
+        String message = getJsonString(pictureEditResponseMessage);
+        pictureEditBroadcaster.broadcast(pictureId, message, excludeSession);
     }
 
     /**
-     * 向单个 session 广播消息
+     * 向本节点的单个 session 发送消息
      *
+     * @param pictureId
      * @param pictureSession
      * @param pictureEditResponseMessage
      * @throws IOException
      */
-    private void broadcastToPicture(WebSocketSession pictureSession, PictureEditResponseMessage pictureEditResponseMessage) throws IOException {
+    public void sendToSession(Long pictureId, WebSocketSession pictureSession, PictureEditResponseMessage pictureEditResponseMessage) throws IOException {
         String message = getJsonString(pictureEditResponseMessage);
-        TextMessage textMessage = new TextMessage(message);
-        pictureSession.sendMessage(textMessage);
+        pictureEditBroadcaster.sendTo(pictureId, pictureSession, message);
+    }
+
+    /**
+     * 获取会话对应的脱敏用户信息
+     *
+     * @param session
+     * @return
+     */
+    public UserVO getSessionUserVO(WebSocketSession session) {
+        UserVO userVO = (UserVO) session.getAttributes().get(USER_VO_ATTRIBUTE);
+        if (userVO == null) {
+            userVO = userService.getUserVO((User) session.getAttributes().get("user"));
+            session.getAttributes().put(USER_VO_ATTRIBUTE, userVO);
+        }
+        return userVO;
     }
 
     /**
-     * 序列化为 Json 字符串
+     * 序列化为 Json 字符串（每条消息只序列化一次，发给所有接收者）
      *
      * @param pictureEditResponseMessage
      * @return
      * @throws JsonProcessingException
      */
     public String getJsonString(PictureEditResponseMessage pictureEditResponseMessage) throws JsonProcessingException {
-        // 创建 ObjectMapper
-        ObjectMapper objectMapper = new ObjectMapper();
-        // 配置序列化：将 Long 类型转为 String，解决丢失精度问题
-        SimpleModule module = new SimpleModule();
-        module.addSerializer(Long.class, ToStringSerializer.instance);
-        module.addSerializer(Long.TYPE, ToStringSerializer.instance); // 支持 long 基本类型
-        objectMapper.registerModule(module);
-        // 序列化为 JSON 字符串
-        return objectMapper.writeValueAsString(pictureEditResponseMessage);
+        return messageWriter.writeValueAsString(pictureEditResponseMessage);
     }
 }
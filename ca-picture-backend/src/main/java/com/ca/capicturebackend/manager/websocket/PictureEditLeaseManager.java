@@ -0,0 +1,158 @@
+package com.ca.capicturebackend.manager.websocket;
+
+import cn.hutool.json.JSONUtil;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import com.ca.capicturebackend.model.vo.UserVO;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片编辑权租约
+ * <p>
+ * 编辑权保存在 Redis 中（key: 图片 id，value: 编辑者 id），多个节点之间互斥。
+ * 租约带过期时间，持有租约的节点定时续期；节点宕机后租约自动过期，其他用户可以重新进入编辑。
+ * 编辑者的脱敏信息与租约一起保存、续期和释放，其他节点的新会话直接读取，不查询数据库。
+ */
+@Slf4j
+@Component
+public class PictureEditLeaseManager {
+
+    // 租约有效期
+    private static final long LEASE_MILLIS = 30_000L;
+
+    // 仍由该用户持有时才续期（租约和编辑者信息）
+    private static final String RENEW_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then redis.call('pexpire', KEYS[2], ARGV[2]); "
+                    + "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end";
+
+    // 仍由该用户持有时才释放（租约和编辑者信息）
+    private static final String RELEASE_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1], KEYS[2]) else return 0 end";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private PictureEditBroadcaster pictureEditBroadcaster;
+
+    // 本节点获取的租约，key: pictureId, value: userId
+    private final Map<Long, Long> localLeases = new ConcurrentHashMap<>();
+
+    /**
+     * 尝试获取编辑权
+     *
+     * @param user 编辑者的脱敏信息
+     */
+    public boolean tryAcquire(Long pictureId, UserVO user) {
+        Long userId = user.getId();
+        boolean acquired = getBucket(pictureId).trySet(String.valueOf(userId), LEASE_MILLIS, TimeUnit.MILLISECONDS);
+        if (acquired) {
+            localLeases.put(pictureId, userId);
+            getUserBucket(pictureId).set(JSONUtil.toJsonStr(user), LEASE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return acquired;
+    }
+
+    /**
+     * 获取当前编辑者，没有人编辑时返回 null
+     */
+    public Long getOwner(Long pictureId) {
+        String owner = getBucket(pictureId).get();
+        return owner == null ? null : Long.valueOf(owner);
+    }
+
+    /**
+     * 获取当前编辑者的信息，没有人编辑或信息还未写入时返回 null
+     */
+    public UserVO getOwnerUser(Long pictureId) {
+        String userJson = getUserBucket(pictureId).get();
+        return userJson == null ? null : JSONUtil.toBean(userJson, UserVO.class);
+    }
+
+    /**
+     * 用户是否持有编辑权
+     * <p>
+     * 编辑操作通常来自本节点获取租约的会话，先查本地，避免每个编辑动作都访问 Redis
+     */
+    public boolean isOwner(Long pictureId, Long userId) {
+        if (userId.equals(localLeases.get(pictureId))) {
+            return true;
+        }
+        return userId.equals(getOwner(pictureId));
+    }
+
+    /**
+     * 释放编辑权
+     *
+     * @return 该用户确实持有编辑权并已释放
+     */
+    public boolean release(Long pictureId, Long userId) {
+        localLeases.remove(pictureId, userId);
+        Long result = eval(RELEASE_SCRIPT, pictureId, String.valueOf(userId));
+        return result != null && result > 0;
+    }
+
+    /**
+     * 本节点是否持有该图片的编辑权
+     */
+    public boolean isHeldLocally(Long pictureId) {
+        return localLeases.containsKey(pictureId);
+    }
+
+    /**
+     * 续期本节点持有的租约，续期失败说明租约已过期或被释放，不再视为持有
+     * <p>
+     * 编辑者在本节点已经没有存活的会话时不再续期，租约到期后自动释放
+     */
+    @Scheduled(fixedRate = LEASE_MILLIS / 3)
+    public void renewLeases() {
+        localLeases.forEach((pictureId, userId) -> {
+            if (!pictureEditBroadcaster.hasUserSession(pictureId, userId)) {
+                localLeases.remove(pictureId, userId);
+                log.info("图片编辑者已断开，不再续期，pictureId={}, userId={}", pictureId, userId);
+                return;
+            }
+            try {
+                Long result = eval(RENEW_SCRIPT, pictureId, String.valueOf(userId), String.valueOf(LEASE_MILLIS));
+                if (result == null || result == 0) {
+                    localLeases.remove(pictureId, userId);
+                    log.info("图片编辑租约已失效，pictureId={}, userId={}", pictureId, userId);
+                }
+            } catch (Exception e) {
+                log.warn("图片编辑租约续期失败，pictureId={}", pictureId, e);
+            }
+        });
+    }
+
+    private RBucket<String> getBucket(Long pictureId) {
+        return redissonClient.getBucket(getLeaseKey(pictureId), StringCodec.INSTANCE);
+    }
+
+    private RBucket<String> getUserBucket(Long pictureId) {
+        return redissonClient.getBucket(getUserKey(pictureId), StringCodec.INSTANCE);
+    }
+
+    private Long eval(String script, Long pictureId, Object... args) {
+        return redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, script,
+                RScript.ReturnType.INTEGER, Arrays.<Object>asList(getLeaseKey(pictureId), getUserKey(pictureId)), args);
+    }
+
+    private String getLeaseKey(Long pictureId) {
+        return CommonKeyEnum.PICTURE_EDIT_LEASE_PREFIX.key(String.valueOf(pictureId));
+    }
+
+    private String getUserKey(Long pictureId) {
+        return CommonKeyEnum.PICTURE_EDIT_LEASE_PREFIX.key(String.valueOf(pictureId), "user");
+    }
+}
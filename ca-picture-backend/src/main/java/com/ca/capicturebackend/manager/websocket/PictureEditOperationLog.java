@@ -0,0 +1,284 @@
+package com.ca.capicturebackend.manager.websocket;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.json.JSONUtil;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditActionEnum;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditState;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import com.ca.capicturebackend.model.vo.UserVO;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片编辑操作日志
+ * <p>
+ * 从进入编辑开始，按顺序记录编辑者的每个动作；定期把已记录的动作折叠进状态快照，只保留快照之后的动作。
+ * 中途加入的用户一次性收到「快照 + 后续动作」，保存编辑时得到最终状态。
+ * <p>
+ * 日志保存在编辑者所在节点的内存中（编辑动作只在该节点处理）；开启持久化后同时写入 Redis Stream，
+ * 连接在其他节点上的用户也能读取。
+ */
+@Slf4j
+@Component
+public class PictureEditOperationLog {
+
+    // Stream 中动作字段名
+    private static final String ACTION_FIELD = "action";
+
+    // Redis 中日志的过期时间，编辑期间每次写入都会刷新
+    private static final long PERSIST_TTL_HOURS = 24L;
+
+    @Value("${picture-edit.op-log.persistent:false}")
+    private boolean persistent;
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Resource
+    private PictureEditLeaseManager pictureEditLeaseManager;
+
+    // 本节点正在编辑的图片日志，key: pictureId
+    private final Map<Long, PictureOpLog> localLogs = new ConcurrentHashMap<>();
+
+    /**
+     * 开始编辑，清空之前的日志
+     */
+    public void start(Long pictureId, UserVO editingUser) {
+        PictureOpLog opLog = new PictureOpLog(editingUser);
+        localLogs.put(pictureId, opLog);
+        if (persistent) {
+            redisTemplate.delete(getStreamKey(pictureId));
+            persistSnapshot(pictureId, opLog, null);
+        }
+    }
+
+    /**
+     * 追加编辑动作（在该图片的事件分区线程上调用，天然有序）
+     */
+    public void append(Long pictureId, PictureEditActionEnum actionEnum) {
+        PictureOpLog opLog = localLogs.get(pictureId);
+        if (opLog == null) {
+            return;
+        }
+        RecordId recordId = null;
+        if (persistent) {
+            try {
+                MapRecord<String, String, String> record = StreamRecords.newRecord()
+                        .in(getStreamKey(pictureId))
+                        .ofMap(Collections.singletonMap(ACTION_FIELD, actionEnum.getValue()));
+                recordId = redisTemplate.opsForStream().add(record);
+                redisTemplate.expire(getStreamKey(pictureId), PERSIST_TTL_HOURS, TimeUnit.HOURS);
+            } catch (Exception e) {
+                log.warn("图片编辑日志写入 Redis 失败，pictureId={}", pictureId, e);
+            }
+        }
+        synchronized (opLog) {
+            opLog.tail.add(actionEnum);
+            opLog.tailRecordIds.add(recordId);
+        }
+    }
+
+    /**
+     * 结束编辑（保存或退出），返回最终状态
+     */
+    public PictureEditState finish(Long pictureId) {
+        PictureOpLog opLog = localLogs.remove(pictureId);
+        if (persistent) {
+            redisTemplate.delete(Arrays.asList(getStreamKey(pictureId), getSnapshotKey(pictureId)));
+        }
+        if (opLog == null) {
+            return null;
+        }
+        synchronized (opLog) {
+            PictureEditState state = opLog.snapshot.copy();
+            opLog.tail.forEach(state::apply);
+            return state;
+        }
+    }
+
+    /**
+     * 获取回放数据（快照 + 快照之后的动作），该图片没有在编辑时返回 null
+     */
+    public PictureEditReplay getReplay(Long pictureId) {
+        PictureOpLog opLog = localLogs.get(pictureId);
+        if (opLog != null) {
+            synchronized (opLog) {
+                PictureEditReplay replay = new PictureEditReplay();
+                replay.setEditingUser(opLog.editingUser);
+                replay.setSnapshot(opLog.snapshot.copy());
+                replay.setActions(toValues(opLog.tail));
+                return replay;
+            }
+        }
+        return persistent ? getPersistentReplay(pictureId) : null;
+    }
+
+    /**
+     * 定期把动作折叠进快照，编辑权已不在本节点的日志直接清除
+     */
+    @Scheduled(fixedRate = 10 * 1000)
+    public void compact() {
+        localLogs.forEach((pictureId, opLog) -> {
+            if (!pictureEditLeaseManager.isHeldLocally(pictureId)) {
+                localLogs.remove(pictureId, opLog);
+                return;
+            }
+            List<RecordId> foldedRecordIds;
+            RecordId lastRecordId;
+            synchronized (opLog) {
+                if (opLog.tail.isEmpty()) {
+                    return;
+                }
+                opLog.tail.forEach(opLog.snapshot::apply);
+                opLog.tail.clear();
+                foldedRecordIds = new ArrayList<>(opLog.tailRecordIds);
+                opLog.tailRecordIds.clear();
+                lastRecordId = foldedRecordIds.get(foldedRecordIds.size() - 1);
+            }
+            if (persistent && lastRecordId != null) {
+                // 先写快照再删除已折叠的动作，读取方先读动作再读快照，不会漏掉动作
+                persistSnapshot(pictureId, opLog, lastRecordId);
+                foldedRecordIds.removeIf(Objects::isNull);
+                redisTemplate.opsForStream().delete(getStreamKey(pictureId), foldedRecordIds.toArray(new RecordId[0]));
+            }
+        });
+    }
+
+    private void persistSnapshot(Long pictureId, PictureOpLog opLog, RecordId lastRecordId) {
+        PersistentSnapshot persistentSnapshot = new PersistentSnapshot();
+        persistentSnapshot.setEditingUser(opLog.editingUser);
+        synchronized (opLog) {
+            persistentSnapshot.setSnapshot(opLog.snapshot.copy());
+        }
+        persistentSnapshot.setLastRecordId(lastRecordId == null ? null : lastRecordId.getValue());
+        try {
+            redisTemplate.opsForValue().set(getSnapshotKey(pictureId), JSONUtil.toJsonStr(persistentSnapshot),
+                    PERSIST_TTL_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("图片编辑快照写入 Redis 失败，pictureId={}", pictureId, e);
+        }
+    }
+
+    private PictureEditReplay getPersistentReplay(Long pictureId) {
+        try {
+            // 先读动作再读快照，期间发生折叠时快照更新，按快照位置过滤动作即可
+            List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                    .range(getStreamKey(pictureId), Range.unbounded());
+            String snapshotJson = redisTemplate.opsForValue().get(getSnapshotKey(pictureId));
+            if (snapshotJson == null) {
+                return null;
+            }
+            PersistentSnapshot persistentSnapshot = JSONUtil.toBean(snapshotJson, PersistentSnapshot.class);
+            List<String> actions = new ArrayList<>();
+            if (CollUtil.isNotEmpty(records)) {
+                String lastRecordId = persistentSnapshot.getLastRecordId();
+                for (MapRecord<String, Object, Object> record : records) {
+                    if (lastRecordId != null && compareRecordId(record.getId().getValue(), lastRecordId) <= 0) {
+                        continue;
+                    }
+                    Object action = record.getValue().get(ACTION_FIELD);
+                    if (action != null) {
+                        actions.add(action.toString());
+                    }
+                }
+            }
+            PictureEditReplay replay = new PictureEditReplay();
+            replay.setEditingUser(persistentSnapshot.getEditingUser());
+            replay.setSnapshot(persistentSnapshot.getSnapshot());
+            replay.setActions(actions);
+            return replay;
+        } catch (Exception e) {
+            log.warn("读取图片编辑日志失败，pictureId={}", pictureId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 比较 Stream 记录 id（毫秒时间戳-序号）
+     */
+    private static int compareRecordId(String a, String b) {
+        String[] partsA = a.split("-");
+        String[] partsB = b.split("-");
+        int result = Long.compare(Long.parseLong(partsA[0]), Long.parseLong(partsB[0]));
+        if (result != 0) {
+            return result;
+        }
+        return Long.compare(Long.parseLong(partsA[1]), Long.parseLong(partsB[1]));
+    }
+
+    private static List<String> toValues(List<PictureEditActionEnum> actions) {
+        List<String> values = new ArrayList<>(actions.size());
+        for (PictureEditActionEnum action : actions) {
+            values.add(action.getValue());
+        }
+        return values;
+    }
+
+    private String getStreamKey(Long pictureId) {
+        return CommonKeyEnum.PICTURE_EDIT_OP_LOG_PREFIX.key(String.valueOf(pictureId));
+    }
+
+    private String getSnapshotKey(Long pictureId) {
+        return CommonKeyEnum.PICTURE_EDIT_OP_LOG_PREFIX.key(String.valueOf(pictureId), "snapshot");
+    }
+
+    /**
+     * 单张图片的日志
+     */
+    private static class PictureOpLog {
+
+        private final UserVO editingUser;
+
+        private final PictureEditState snapshot = new PictureEditState();
+
+        // 快照之后的动作
+        private final List<PictureEditActionEnum> tail = new ArrayList<>();
+
+        // 快照之后的动作在 Stream 中的 id（未持久化时为 null）
+        private final List<RecordId> tailRecordIds = new ArrayList<>();
+
+        PictureOpLog(UserVO editingUser) {
+            this.editingUser = editingUser;
+        }
+    }
+
+    /**
+     * 回放数据
+     */
+    @Data
+    public static class PictureEditReplay {
+
+        private UserVO editingUser;
+
+        private PictureEditState snapshot;
+
+        private List<String> actions;
+    }
+
+    /**
+     * Redis 中保存的快照
+     */
+    @Data
+    public static class PersistentSnapshot {
+
+        private UserVO editingUser;
+
+        private PictureEditState snapshot;
+
+        // 已折叠进快照的最后一条动作 id
+        private String lastRecordId;
+    }
+}
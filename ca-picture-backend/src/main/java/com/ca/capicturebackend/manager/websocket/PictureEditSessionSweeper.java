@@ -0,0 +1,169 @@
+package com.ca.capicturebackend.manager.websocket;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 图片编辑会话存活检测
+ * <p>
+ * 每个会话在时间轮上挂一个定时任务：空闲超过 ping 间隔时发送 ping，空闲超过超时时间时判定失效，
+ * 按关闭连接处理（释放编辑权、移除会话）。收到任何消息（包括 pong）只更新最后活跃时间，不操作时间轮，
+ * 因此检测开销只与到期的会话数有关，不需要定期遍历所有会话。
+ */
+@Slf4j
+@Component
+public class PictureEditSessionSweeper {
+
+    // 空闲多久后发送 ping
+    private static final long PING_INTERVAL_MILLIS = 20_000L;
+
+    // 空闲多久后判定会话失效（允许丢失两次 pong）
+    private static final long IDLE_TIMEOUT_MILLIS = 60_000L;
+
+    private static final String LIVENESS_ATTRIBUTE = "liveness";
+
+    @Lazy
+    @Resource
+    private PictureEditHandler pictureEditHandler;
+
+    @Resource
+    private PictureEditBroadcaster pictureEditBroadcaster;
+
+    @Resource
+    private ScheduledExecutorService scheduledExecutor;
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(
+            ThreadFactoryBuilder.create().setNamePrefix("pictureEditSweeper-").build(),
+            1, TimeUnit.SECONDS, 64);
+
+    // 本节点存活的会话，key: sessionId
+    private final Map<String, SessionLiveness> livenessMap = new ConcurrentHashMap<>();
+
+    private final LongAdder pingCount = new LongAdder();
+
+    private final LongAdder expiredCount = new LongAdder();
+
+    /**
+     * 会话建立后开始检测
+     */
+    public void register(Long pictureId, WebSocketSession session) {
+        SessionLiveness liveness = new SessionLiveness(pictureId, session);
+        session.getAttributes().put(LIVENESS_ATTRIBUTE, liveness);
+        livenessMap.put(session.getId(), liveness);
+        liveness.schedule(PING_INTERVAL_MILLIS);
+    }
+
+    /**
+     * 收到客户端消息，刷新活跃时间
+     */
+    public void touch(WebSocketSession session) {
+        SessionLiveness liveness = (SessionLiveness) session.getAttributes().get(LIVENESS_ATTRIBUTE);
+        if (liveness != null) {
+            liveness.lastActiveMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 会话关闭，停止检测
+     */
+    public void unregister(WebSocketSession session) {
+        SessionLiveness liveness = livenessMap.remove(session.getId());
+        if (liveness != null) {
+            liveness.cancel();
+        }
+    }
+
+    /**
+     * 当前存活的会话数
+     */
+    public int getSessionCount() {
+        return livenessMap.size();
+    }
+
+    /**
+     * 定期输出会话统计
+     */
+    @Scheduled(fixedRate = 60 * 1000)
+    public void logStats() {
+        if (livenessMap.isEmpty() && expiredCount.sum() == 0) {
+            return;
+        }
+        log.info("图片编辑会话统计 rooms={}, sessions={}, pings={}, expired={}",
+                pictureEditBroadcaster.getRoomCount(), livenessMap.size(), pingCount.sum(), expiredCount.sum());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.stop();
+    }
+
+    /**
+     * 单个会话的存活状态
+     */
+    private class SessionLiveness implements TimerTask {
+
+        private final Long pictureId;
+
+        private final WebSocketSession session;
+
+        private volatile long lastActiveMillis = System.currentTimeMillis();
+
+        private volatile Timeout timeout;
+
+        SessionLiveness(Long pictureId, WebSocketSession session) {
+            this.pictureId = pictureId;
+            this.session = session;
+        }
+
+        void schedule(long delayMillis) {
+            timeout = timer.newTimeout(this, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        void cancel() {
+            Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        @Override
+        public void run(Timeout expiredTimeout) {
+            if (livenessMap.get(session.getId()) != this) {
+                return;
+            }
+            long idleMillis = System.currentTimeMillis() - lastActiveMillis;
+            if (idleMillis >= IDLE_TIMEOUT_MILLIS || !session.isOpen()) {
+                livenessMap.remove(session.getId(), this);
+                expiredCount.increment();
+                log.info("图片编辑会话已失效，pictureId={}, sessionId={}, idle={}ms", pictureId, session.getId(), idleMillis);
+                // 释放编辑权、广播离开消息需要访问 Redis，不占用时间轮线程
+                scheduledExecutor.execute(() -> pictureEditHandler.expireSession(session));
+                return;
+            }
+            if (idleMillis >= PING_INTERVAL_MILLIS) {
+                // 空闲较久，发送 ping，客户端（浏览器）会自动回复 pong
+                pingCount.increment();
+                pictureEditBroadcaster.ping(pictureId, session);
+                schedule(Math.min(PING_INTERVAL_MILLIS, IDLE_TIMEOUT_MILLIS - idleMillis));
+            } else {
+                // 期间有过活动，按最后活跃时间重新计算下一次检查
+                schedule(PING_INTERVAL_MILLIS - idleMillis);
+            }
+        }
+    }
+}
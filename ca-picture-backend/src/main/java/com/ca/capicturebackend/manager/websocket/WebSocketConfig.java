@@ -1,5 +1,6 @@
 package com.ca.capicturebackend.manager.websocket;
 
+import com.ca.capicturebackend.manager.websocket.binary.PictureEditBinaryHandler;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
@@ -17,6 +18,9 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Resource
     private PictureEditHandler pictureEditHandler;
 
+    @Resource
+    private PictureEditBinaryHandler pictureEditBinaryHandler;
+
     @Resource
     private WsHandshakeInterceptor wsHandshakeInterceptor;
 
@@ -26,6 +30,10 @@ public class WebSocketConfig implements WebSocketConfigurer {
         registry.addHandler(pictureEditHandler, "/ws/picture/edit")
                 .addInterceptors(wsHandshakeInterceptor)
                 .setAllowedOrigins("*");
+        // 二进制协议（可选）
+        registry.addHandler(pictureEditBinaryHandler, "/ws/picture/edit/binary")
+                .addInterceptors(wsHandshakeInterceptor)
+                .setAllowedOrigins("*");
     }
 }
 
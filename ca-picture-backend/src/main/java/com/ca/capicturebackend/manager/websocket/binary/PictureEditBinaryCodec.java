@@ -0,0 +1,99 @@
+package com.ca.capicturebackend.manager.websocket.binary;
+
+import com.ca.capicturebackend.manager.websocket.model.PictureEditActionEnum;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditMessageTypeEnum;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditRequestMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 图片编辑二进制协议编解码
+ * <p>
+ * 客户端帧：[消息类型 1 字节][编辑动作 1 字节，仅 EDIT_ACTION]
+ * <p>
+ * 服务端帧（整数均为大端序）：
+ * <ul>
+ *     <li>USER_PROFILE：[0x20][userId 8 字节][用户信息 JSON]，某个用户第一次出现在该会话中时发送一次，之后只用 userId 引用</li>
+ *     <li>EDIT_ACTION：[类型][userId 8 字节][动作数 1 字节][动作编码...]，短时间内的连续动作合并为一帧</li>
+ *     <li>INFO / ERROR / OUT_PAINTING_RESULT：[类型][userId 8 字节][UTF-8 文本或 JSON]</li>
+ *     <li>INIT_STATE / SAVE_EDIT：[类型][userId 8 字节][编辑状态 JSON，可为空]</li>
+ *     <li>其他：[类型][userId 8 字节]</li>
+ * </ul>
+ * 没有关联用户时 userId 为 0
+ */
+public final class PictureEditBinaryCodec {
+
+    /**
+     * 用户信息帧类型
+     */
+    public static final int USER_PROFILE = 0x20;
+
+    /**
+     * 一帧最多合并的编辑动作数
+     */
+    public static final int MAX_ACTIONS_PER_FRAME = 255;
+
+    private PictureEditBinaryCodec() {
+    }
+
+    /**
+     * 解析客户端帧，格式错误返回 null
+     */
+    public static PictureEditRequestMessage decodeRequest(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+        PictureEditMessageTypeEnum typeEnum = PictureEditMessageTypeEnum.getEnumByCode(buffer.get() & 0xFF);
+        if (typeEnum == null) {
+            return null;
+        }
+        PictureEditRequestMessage pictureEditRequestMessage = new PictureEditRequestMessage();
+        pictureEditRequestMessage.setType(typeEnum.getValue());
+        if (typeEnum == PictureEditMessageTypeEnum.EDIT_ACTION) {
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+            PictureEditActionEnum actionEnum = PictureEditActionEnum.getEnumByCode(buffer.get() & 0xFF);
+            if (actionEnum == null) {
+                return null;
+            }
+            pictureEditRequestMessage.setEditAction(actionEnum.getValue());
+        }
+        return pictureEditRequestMessage;
+    }
+
+    public static byte[] encodeUserProfile(long userId, byte[] userJson) {
+        return ByteBuffer.allocate(9 + userJson.length)
+                .put((byte) USER_PROFILE)
+                .putLong(userId)
+                .put(userJson)
+                .array();
+    }
+
+    public static byte[] encodeEditActions(long userId, List<PictureEditActionEnum> actions) {
+        ByteBuffer buffer = ByteBuffer.allocate(10 + actions.size())
+                .put((byte) PictureEditMessageTypeEnum.EDIT_ACTION.getCode())
+                .putLong(userId)
+                .put((byte) actions.size());
+        for (PictureEditActionEnum action : actions) {
+            buffer.put((byte) action.getCode());
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 编码除 EDIT_ACTION 以外的消息
+     *
+     * @param text 附带的文本，可为 null
+     */
+    public static byte[] encodeMessage(PictureEditMessageTypeEnum typeEnum, long userId, String text) {
+        byte[] textBytes = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(9 + textBytes.length)
+                .put((byte) typeEnum.getCode())
+                .putLong(userId)
+                .put(textBytes)
+                .array();
+    }
+}
@@ -0,0 +1,77 @@
+package com.ca.capicturebackend.manager.websocket.binary;
+
+import com.ca.capicturebackend.manager.websocket.PictureEditHandler;
+import com.ca.capicturebackend.manager.websocket.PictureEditSessionSweeper;
+import com.ca.capicturebackend.manager.websocket.disruptor.PictureEditEventProducer;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditMessageTypeEnum;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditRequestMessage;
+import com.ca.capicturebackend.manager.websocket.model.PictureEditResponseMessage;
+import com.ca.capicturebackend.model.entity.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+import javax.annotation.Resource;
+
+/**
+ * 图片编辑 WebSocket 处理器（二进制协议）
+ * <p>
+ * 与文本协议共用同一套编辑状态和广播，只是收发的格式不同，协议格式见 {@link PictureEditBinaryCodec}。
+ * 客户端可同时协商 permessage-deflate 压缩（Tomcat 默认支持）。
+ */
+@Slf4j
+@Component
+public class PictureEditBinaryHandler extends BinaryWebSocketHandler {
+
+    /**
+     * 标记会话使用二进制协议
+     */
+    public static final String BINARY_ATTRIBUTE = "binaryProtocol";
+
+    @Resource
+    private PictureEditHandler pictureEditHandler;
+
+    @Resource
+    private PictureEditEventProducer pictureEditEventProducer;
+
+    @Resource
+    private PictureEditSessionSweeper pictureEditSessionSweeper;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        session.getAttributes().put(BINARY_ATTRIBUTE, Boolean.TRUE);
+        pictureEditHandler.afterConnectionEstablished(session);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        pictureEditSessionSweeper.touch(session);
+        User user = (User) session.getAttributes().get("user");
+        Long pictureId = (Long) session.getAttributes().get("pictureId");
+        PictureEditRequestMessage pictureEditRequestMessage = PictureEditBinaryCodec.decodeRequest(message.getPayload());
+        if (pictureEditRequestMessage == null) {
+            PictureEditResponseMessage pictureEditResponseMessage = new PictureEditResponseMessage();
+            pictureEditResponseMessage.setType(PictureEditMessageTypeEnum.ERROR.getValue());
+            pictureEditResponseMessage.setMessage("消息格式错误");
+            pictureEditResponseMessage.setUser(pictureEditHandler.getSessionUserVO(session));
+            pictureEditHandler.sendToSession(pictureId, session, pictureEditResponseMessage);
+            return;
+        }
+        // 生产消息到 Disruptor 队列中
+        pictureEditEventProducer.publishEvent(pictureEditRequestMessage, session, user, pictureId);
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) throws Exception {
+        pictureEditSessionSweeper.touch(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        pictureEditHandler.afterConnectionClosed(session, status);
+    }
+}
@@ -1,34 +1,62 @@
 package com.ca.capicturebackend.manager.websocket.disruptor;
 
-import cn.hutool.core.thread.ThreadFactoryBuilder;
-import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.*;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import javax.annotation.Resource;
-
 /**
  * 图片编辑 Disruptor 配置
+ * <p>
+ * 按图片 id 分区，每个分区一个环形队列和一个消费线程：同一图片的事件严格有序，不同图片的事件并行处理
  */
 @Configuration
+@ConfigurationProperties(prefix = "picture-edit.disruptor")
+@Data
 public class PictureEditEventDisruptorConfig {
 
-    @Resource
-    private PictureEditEventWorkHandler pictureEditEventWorkHandler;
+    /**
+     * 分区数（消费线程数）
+     */
+    private int partitions = 4;
+
+    /**
+     * 每个分区 ringBuffer 的大小，必须是 2 的幂
+     */
+    private int ringSize = 1024 * 16;
+
+    /**
+     * 消费者等待策略：blocking / sleeping / yielding / busySpin（后两者会占满分区数个 CPU 核）
+     */
+    private String waitStrategy = "blocking";
+
+    @Bean(value = "pictureEditEventDisruptor", destroyMethod = "shutdown")
+    public PictureEditEventDisruptorGroup pictureEditEventDisruptor(PictureEditEventWorkHandler pictureEditEventWorkHandler) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("picture-edit.disruptor.partitions 必须大于 0");
+        }
+        if (Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("picture-edit.disruptor.ringSize 必须是 2 的幂");
+        }
+        return new PictureEditEventDisruptorGroup(partitions, ringSize, this::createWaitStrategy, pictureEditEventWorkHandler);
+    }
 
-    @Bean("pictureEditEventDisruptor")
-    public Disruptor<PictureEditEvent> messageModelRingBuffer() {
-        // ringBuffer 的大小
-        int bufferSize = 1024 * 256;
-        Disruptor<PictureEditEvent> disruptor = new Disruptor<>(
-                PictureEditEvent::new,
-                bufferSize,
-                ThreadFactoryBuilder.create().setNamePrefix("pictureEditEventDisruptor").build()
-        );
-        // 设置消费者
-        disruptor.handleEventsWithWorkerPool(pictureEditEventWorkHandler);
-        // 开启 disruptor
-        disruptor.start();
-        return disruptor;
+    /**
+     * 每个分区各自创建等待策略（BlockingWaitStrategy 内部有锁，不能共用）
+     */
+    private WaitStrategy createWaitStrategy() {
+        switch (waitStrategy) {
+            case "sleeping":
+                return new SleepingWaitStrategy();
+            case "yielding":
+                return new YieldingWaitStrategy();
+            case "busySpin":
+                return new BusySpinWaitStrategy();
+            case "blocking":
+                return new BlockingWaitStrategy();
+            default:
+                throw new IllegalArgumentException("不支持的等待策略：" + waitStrategy);
+        }
     }
 }
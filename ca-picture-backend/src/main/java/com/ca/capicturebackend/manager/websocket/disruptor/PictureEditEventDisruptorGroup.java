@@ -0,0 +1,125 @@
+package com.ca.capicturebackend.manager.websocket.disruptor;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.function.Supplier;
+
+/**
+ * 分区的图片编辑 Disruptor
+ * <p>
+ * 同一图片的事件总是进入同一分区，由该分区唯一的消费线程按顺序处理
+ */
+@Slf4j
+public class PictureEditEventDisruptorGroup {
+
+    // 队列使用率超过该比例时告警
+    private static final double DEPTH_WARN_RATIO = 0.8;
+
+    private final Disruptor<PictureEditEvent>[] disruptors;
+
+    private final int ringSize;
+
+    @SuppressWarnings("unchecked")
+    public PictureEditEventDisruptorGroup(int partitions, int ringSize, Supplier<WaitStrategy> waitStrategySupplier,
+                                          EventHandler<PictureEditEvent> eventHandler) {
+        this.ringSize = ringSize;
+        this.disruptors = new Disruptor[partitions];
+        for (int i = 0; i < partitions; i++) {
+            Disruptor<PictureEditEvent> disruptor = new Disruptor<>(
+                    PictureEditEvent::new,
+                    ringSize,
+                    ThreadFactoryBuilder.create().setNamePrefix("pictureEditEventDisruptor-" + i + "-").build(),
+                    ProducerType.MULTI,
+                    waitStrategySupplier.get()
+            );
+            // 设置消费者（每个分区单线程，保证同一图片的事件顺序）
+            disruptor.handleEventsWith(eventHandler);
+            // 单个事件处理失败不能终止消费线程
+            disruptor.setDefaultExceptionHandler(new LoggingExceptionHandler(i));
+            disruptor.start();
+            disruptors[i] = disruptor;
+        }
+    }
+
+    /**
+     * 获取图片所在分区的 ringBuffer
+     */
+    public RingBuffer<PictureEditEvent> getRingBuffer(Long pictureId) {
+        return disruptors[partition(pictureId)].getRingBuffer();
+    }
+
+    /**
+     * 各分区当前积压的事件数
+     */
+    public long[] getQueueDepths() {
+        long[] depths = new long[disruptors.length];
+        for (int i = 0; i < disruptors.length; i++) {
+            depths[i] = ringSize - disruptors[i].getRingBuffer().remainingCapacity();
+        }
+        return depths;
+    }
+
+    /**
+     * 定期检查各分区积压情况
+     */
+    @Scheduled(fixedRate = 60 * 1000)
+    public void logQueueDepths() {
+        long[] depths = getQueueDepths();
+        for (int i = 0; i < depths.length; i++) {
+            if (depths[i] > ringSize * DEPTH_WARN_RATIO) {
+                log.warn("图片编辑事件队列积压，partition={}, depth={}/{}", i, depths[i], ringSize);
+            } else if (depths[i] > 0) {
+                log.info("图片编辑事件队列 partition={}, depth={}/{}", i, depths[i], ringSize);
+            }
+        }
+    }
+
+    /**
+     * 优雅停机，等待已发布的事件处理完
+     */
+    public void shutdown() {
+        for (Disruptor<PictureEditEvent> disruptor : disruptors) {
+            disruptor.shutdown();
+        }
+    }
+
+    /**
+     * 雪花 id 的低位是序列号，并发不高时几乎都是 0，直接取模会集中到同一分区，先打散再取模
+     */
+    private int partition(Long pictureId) {
+        long hash = pictureId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(hash >>> 32, (long) disruptors.length);
+    }
+
+    private static class LoggingExceptionHandler implements ExceptionHandler<PictureEditEvent> {
+
+        private final int partition;
+
+        LoggingExceptionHandler(int partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        public void handleEventException(Throwable ex, long sequence, PictureEditEvent event) {
+            log.error("图片编辑事件处理失败，partition={}, pictureId={}", partition, event.getPictureId(), ex);
+        }
+
+        @Override
+        public void handleOnStartException(Throwable ex) {
+            log.error("图片编辑事件消费者启动失败，partition={}", partition, ex);
+        }
+
+        @Override
+        public void handleOnShutdownException(Throwable ex) {
+            log.error("图片编辑事件消费者停止失败，partition={}", partition, ex);
+        }
+    }
+}
@@ -3,12 +3,10 @@ package com.ca.capicturebackend.manager.websocket.disruptor;
 import com.ca.capicturebackend.manager.websocket.model.PictureEditRequestMessage;
 import com.ca.capicturebackend.model.entity.User;
 import com.lmax.disruptor.RingBuffer;
-import com.lmax.disruptor.dsl.Disruptor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
 
-import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
 /**
@@ -19,10 +17,11 @@ import javax.annotation.Resource;
 public class PictureEditEventProducer {
 
     @Resource
-    Disruptor<PictureEditEvent> pictureEditEventDisruptor;
+    PictureEditEventDisruptorGroup pictureEditEventDisruptor;
 
     public void publishEvent(PictureEditRequestMessage pictureEditRequestMessage, WebSocketSession session, User user, Long pictureId) {
-        RingBuffer<PictureEditEvent> ringBuffer = pictureEditEventDisruptor.getRingBuffer();
+        // 按图片 id 选择分区，保证同一图片的事件顺序
+        RingBuffer<PictureEditEvent> ringBuffer = pictureEditEventDisruptor.getRingBuffer(pictureId);
         // 获取可以生成的位置
         long next = ringBuffer.next();
         PictureEditEvent pictureEditEvent = ringBuffer.get(next);
@@ -33,12 +32,4 @@ public class PictureEditEventProducer {
         // 发布事件
         ringBuffer.publish(next);
     }
-
-    /**
-     * 优雅停机
-     */
-    @PreDestroy
-    public void close() {
-        pictureEditEventDisruptor.shutdown();
-    }
 }
@@ -5,32 +5,27 @@ import com.ca.capicturebackend.manager.websocket.model.PictureEditMessageTypeEnu
 import com.ca.capicturebackend.manager.websocket.model.PictureEditRequestMessage;
 import com.ca.capicturebackend.manager.websocket.model.PictureEditResponseMessage;
 import com.ca.capicturebackend.model.entity.User;
-import com.ca.capicturebackend.service.UserService;
-import com.lmax.disruptor.WorkHandler;
+import com.lmax.disruptor.EventHandler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
-import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import javax.annotation.Resource;
 
 /**
- * 图片编辑事件处理器（消费者）
+ * 图片编辑事件处理器（消费者），所有分区共用，本身无状态
  */
 @Slf4j
 @Component
-public class PictureEditEventWorkHandler implements WorkHandler<PictureEditEvent> {
+public class PictureEditEventWorkHandler implements EventHandler<PictureEditEvent> {
 
     @Resource
     @Lazy
     private PictureEditHandler pictureEditHandler;
 
-    @Resource
-    private UserService userService;
-
     @Override
-    public void onEvent(PictureEditEvent event) throws Exception {
+    public void onEvent(PictureEditEvent event, long sequence, boolean endOfBatch) throws Exception {
         PictureEditRequestMessage pictureEditRequestMessage = event.getPictureEditRequestMessage();
         WebSocketSession session = event.getSession();
         User user = event.getUser();
@@ -56,9 +51,8 @@ public class PictureEditEventWorkHandler implements WorkHandler<PictureEditEvent
                 PictureEditResponseMessage pictureEditResponseMessage = new PictureEditResponseMessage();
                 pictureEditResponseMessage.setType(PictureEditMessageTypeEnum.ERROR.getValue());
                 pictureEditResponseMessage.setMessage("消息类型错误");
-                pictureEditResponseMessage.setUser(userService.getUserVO(user));
-                String textMessage = pictureEditHandler.getJsonString(pictureEditResponseMessage);
-                session.sendMessage(new TextMessage(textMessage));
+                pictureEditResponseMessage.setUser(pictureEditHandler.getSessionUserVO(session));
+                pictureEditHandler.sendToSession(pictureId, session, pictureEditResponseMessage);
         }
     }
 }
@@ -8,17 +8,23 @@ import lombok.Getter;
 @Getter
 public enum PictureEditActionEnum {
 
-    ZOOM_IN("放大操作", "ZOOM_IN"),
-    ZOOM_OUT("缩小操作", "ZOOM_OUT"),
-    ROTATE_LEFT("左旋操作", "ROTATE_LEFT"),
-    ROTATE_RIGHT("右旋操作", "ROTATE_RIGHT");
+    ZOOM_IN("放大操作", "ZOOM_IN", 1),
+    ZOOM_OUT("缩小操作", "ZOOM_OUT", 2),
+    ROTATE_LEFT("左旋操作", "ROTATE_LEFT", 3),
+    ROTATE_RIGHT("右旋操作", "ROTATE_RIGHT", 4);
 
     private final String text;
     private final String value;
 
-    PictureEditActionEnum(String text, String value) {
+    /**
+     * 二进制协议中的编码
+     */
+    private final int code;
+
+    PictureEditActionEnum(String text, String value, int code) {
         this.text = text;
         this.value = value;
+        this.code = code;
     }
 
     /**
@@ -35,4 +41,16 @@ public enum PictureEditActionEnum {
         }
         return null;
     }
+
+    /**
+     * 根据二进制协议编码获取枚举
+     */
+    public static PictureEditActionEnum getEnumByCode(int code) {
+        for (PictureEditActionEnum actionEnum : PictureEditActionEnum.values()) {
+            if (actionEnum.code == code) {
+                return actionEnum;
+            }
+        }
+        return null;
+    }
 }
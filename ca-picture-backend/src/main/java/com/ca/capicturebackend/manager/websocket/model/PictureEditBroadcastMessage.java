@@ -0,0 +1,20 @@
+package com.ca.capicturebackend.manager.websocket.model;
+
+import lombok.Data;
+
+/**
+ * 图片编辑广播消息（节点间通过 Redis 频道传递）
+ */
+@Data
+public class PictureEditBroadcastMessage {
+
+    /**
+     * 不需要接收该消息的 session id（如发起编辑操作的用户自己）
+     */
+    private String excludeSessionId;
+
+    /**
+     * 发送给前端的消息内容（已序列化的 JSON）
+     */
+    private String payload;
+}
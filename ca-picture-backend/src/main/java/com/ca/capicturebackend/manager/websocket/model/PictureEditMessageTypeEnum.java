@@ -8,20 +8,27 @@ import lombok.Getter;
 @Getter
 public enum PictureEditMessageTypeEnum {
 
-    INFO("发送通知", "INFO"),
-    ERROR("发送错误", "ERROR"),
-    INIT_STATE("初始化图片状态", "INIT_STATE"),
-    ENTER_EDIT("进入编辑状态", "ENTER_EDIT"),
-    EXIT_EDIT("退出编辑状态", "EXIT_EDIT"),
-    EDIT_ACTION("执行编辑操作", "EDIT_ACTION"),
-    SAVE_EDIT("保存图片编辑", "SAVE_EDIT");
+    INFO("发送通知", "INFO", 5),
+    ERROR("发送错误", "ERROR", 6),
+    INIT_STATE("初始化图片状态", "INIT_STATE", 7),
+    ENTER_EDIT("进入编辑状态", "ENTER_EDIT", 1),
+    EXIT_EDIT("退出编辑状态", "EXIT_EDIT", 2),
+    EDIT_ACTION("执行编辑操作", "EDIT_ACTION", 3),
+    SAVE_EDIT("保存图片编辑", "SAVE_EDIT", 4),
+    OUT_PAINTING_RESULT("AI 扩图任务结束", "OUT_PAINTING_RESULT", 8);
 
     private final String text;
     private final String value;
 
-    PictureEditMessageTypeEnum(String text, String value) {
+    /**
+     * 二进制协议中的编码
+     */
+    private final int code;
+
+    PictureEditMessageTypeEnum(String text, String value, int code) {
         this.text = text;
         this.value = value;
+        this.code = code;
     }
 
     /**
@@ -38,4 +45,16 @@ public enum PictureEditMessageTypeEnum {
         }
         return null;
     }
+
+    /**
+     * 根据二进制协议编码获取枚举
+     */
+    public static PictureEditMessageTypeEnum getEnumByCode(int code) {
+        for (PictureEditMessageTypeEnum typeEnum : PictureEditMessageTypeEnum.values()) {
+            if (typeEnum.code == code) {
+                return typeEnum;
+            }
+        }
+        return null;
+    }
 }
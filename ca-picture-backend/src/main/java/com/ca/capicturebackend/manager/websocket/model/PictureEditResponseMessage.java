@@ -1,10 +1,13 @@
 package com.ca.capicturebackend.manager.websocket.model;
 
+import com.ca.capicturebackend.api.aliyunai.model.GetOutPaintingTaskResponse;
 import com.ca.capicturebackend.model.vo.UserVO;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * 图片编辑响应消息
  */
@@ -14,7 +17,7 @@ import lombok.NoArgsConstructor;
 public class PictureEditResponseMessage {
 
     /**
-     * 消息类型，例如 "INFO", "ERROR", "INIT_STATE", "ENTER_EDIT", "EXIT_EDIT", "EDIT_ACTION", "SAVE_EDIT""
+     * 消息类型，例如 "INFO", "ERROR", "INIT_STATE", "ENTER_EDIT", "EXIT_EDIT", "EDIT_ACTION", "SAVE_EDIT", "OUT_PAINTING_RESULT"
      */
     private String type;
 
@@ -32,4 +35,19 @@ public class PictureEditResponseMessage {
      * 用户信息
      */
     private UserVO user;
+
+    /**
+     * AI 扩图任务结果（仅 OUT_PAINTING_RESULT 消息携带）
+     */
+    private GetOutPaintingTaskResponse.Output outPaintingTask;
+
+    /**
+     * 编辑状态快照（INIT_STATE 为快照，SAVE_EDIT 为保存后的最终状态）
+     */
+    private PictureEditState editState;
+
+    /**
+     * 快照之后的编辑动作（仅 INIT_STATE 消息携带，按顺序叠加到快照上）
+     */
+    private List<String> editActions;
 }
@@ -0,0 +1,56 @@
+package com.ca.capicturebackend.manager.websocket.model;
+
+import lombok.Data;
+
+/**
+ * 图片编辑状态快照（由编辑动作依次叠加得到）
+ */
+@Data
+public class PictureEditState {
+
+    /**
+     * 缩放级别，放大 +1，缩小 -1
+     */
+    private int zoom;
+
+    /**
+     * 旋转角度（0 / 90 / 180 / 270，顺时针）
+     */
+    private int rotation;
+
+    /**
+     * 已叠加的动作数
+     */
+    private long version;
+
+    /**
+     * 叠加一个编辑动作
+     */
+    public void apply(PictureEditActionEnum actionEnum) {
+        switch (actionEnum) {
+            case ZOOM_IN:
+                zoom++;
+                break;
+            case ZOOM_OUT:
+                zoom--;
+                break;
+            case ROTATE_LEFT:
+                rotation = (rotation + 270) % 360;
+                break;
+            case ROTATE_RIGHT:
+                rotation = (rotation + 90) % 360;
+                break;
+            default:
+                return;
+        }
+        version++;
+    }
+
+    public PictureEditState copy() {
+        PictureEditState state = new PictureEditState();
+        state.setZoom(zoom);
+        state.setRotation(rotation);
+        state.setVersion(version);
+        return state;
+    }
+}
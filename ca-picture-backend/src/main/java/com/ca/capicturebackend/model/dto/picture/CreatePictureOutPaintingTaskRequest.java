@@ -21,5 +21,10 @@ public class CreatePictureOutPaintingTaskRequest implements Serializable {
      */
     private CreateOutPaintingTaskRequest.Parameters parameters;
 
+    /**
+     * 任务成功后是否自动将结果图保存到图库（与原图同一空间）
+     */
+    private Boolean autoSave;
+
     private static final long serialVersionUID = 1L;
 }
@@ -7,7 +7,21 @@ public enum CommonKeyEnum {
     // 示例前缀定义
     PICTURE_LOCK_PREFIX("capicture:picture:lock:"),
     PICTURE_CACHE_PREFIX("capicture:picture:"),
-    SPACE_LOCK_PREFIX("capicture:picture:lock");      // 用户缓存
+    SPACE_LOCK_PREFIX("capicture:picture:lock"),      // 用户缓存
+    OUT_PAINTING_TASK_PREFIX("capicture:outPainting:task:"),  // AI 扩图任务状态
+    USER_VERSION_PREFIX("capicture:user:version:"),     // 用户信息版本号
+    USER_CACHE_PREFIX("capicture:user:info:"),         // 登录用户快照
+    PICTURE_EDIT_LEASE_PREFIX("capicture:picture:edit:lease:"),      // 图片编辑权租约
+    PICTURE_EDIT_CHANNEL_PREFIX("capicture:picture:edit:channel:"),  // 图片编辑消息频道
+    PICTURE_EDIT_OP_LOG_PREFIX("capicture:picture:edit:oplog:"),        // 图片编辑操作日志
+    PICTURE_SHARDING_PREFIX("capicture:sharding:picture:"),     // 图片分表（节点变更频道、分桶状态）
+    SPACE_QUOTA_PREFIX("capicture:space:quota:"),               // 空间额度
+    SPACE_PURGE_PREFIX("capicture:space:purge:"),               // 已删除空间的清理任务
+    SPACE_RANK_PREFIX("capicture:space:rank:"),                 // 空间使用排行
+    SPACE_UPLOAD_STAT_PREFIX("capicture:space:upload:"),        // 空间上传统计（按天）
+    PICTURE_COUNT_PREFIX("capicture:picture:count:"),           // 图片分页总数
+    PICTURE_BLOOM_PREFIX("capicture:picture:bloom:"),           // 图片 id 布隆过滤器（新增 id 频道）
+    SPACE_AUTH_VERSION_PREFIX("capicture:space:auth:version:"); // 空间权限版本号
 
     private final String prefix;
 
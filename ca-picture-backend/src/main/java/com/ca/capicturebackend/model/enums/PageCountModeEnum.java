@@ -0,0 +1,14 @@
+package com.ca.capicturebackend.model.enums;
+
+/**
+ * 分页查询的总数统计方式
+ */
+public enum PageCountModeEnum {
+
+    // 每次精确统计
+    EXACT,
+    // 缓存精确统计结果，数据变化时失效
+    CACHED,
+    // 无筛选条件时使用估算值，否则同 CACHED
+    ESTIMATED
+}
@@ -0,0 +1,67 @@
+package com.ca.capicturebackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 缓存热点 key 统计（当前实例）
+ */
+@Data
+public class CacheHotKeyStatsVO implements Serializable {
+
+    /**
+     * 统计窗口（秒）
+     */
+    private Long windowSeconds;
+
+    /**
+     * 判定为热点的访问次数阈值
+     */
+    private Integer threshold;
+
+    /**
+     * 窗口内的缓存访问总数
+     */
+    private Long totalRequests;
+
+    /**
+     * 热点 key 的访问次数之和占访问总数的比例
+     */
+    private Double hotKeyShare;
+
+    /**
+     * 热点 key，按访问次数降序
+     */
+    private List<HotKey> hotKeys;
+
+    @Data
+    public static class HotKey implements Serializable {
+
+        /**
+         * 缓存 key
+         */
+        private String key;
+
+        /**
+         * 窗口内的估算访问次数
+         */
+        private Integer estimatedCount;
+
+        /**
+         * 成为热点的时间
+         */
+        private Date hotSince;
+
+        /**
+         * 最近一次刷新的时间
+         */
+        private Date refreshTime;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,39 @@
+package com.ca.capicturebackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 图片分页查询的缓存命中统计
+ */
+@Data
+public class PictureQueryStatsVO implements Serializable {
+
+    /**
+     * 查询条件指纹
+     */
+    private String fingerprint;
+
+    /**
+     * 规范化后的查询条件
+     */
+    private String query;
+
+    /**
+     * 请求次数
+     */
+    private Long requestCount;
+
+    /**
+     * 缓存命中次数
+     */
+    private Long hitCount;
+
+    /**
+     * 缓存命中率
+     */
+    private Double hitRate;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -7,6 +7,7 @@ import com.ca.capicturebackend.model.dto.picture.*;
 import com.ca.capicturebackend.model.entity.Picture;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.ca.capicturebackend.model.entity.User;
+import com.ca.capicturebackend.model.enums.PageCountModeEnum;
 import com.ca.capicturebackend.model.vo.PictureVO;
 import org.apache.ibatis.annotations.Param;
 import org.springframework.scheduling.annotation.Async;
@@ -72,10 +73,21 @@ public interface PictureService extends IService<Picture> {
      * 获取图片包装类（分页，有缓存）
      *
      * @param pictureQueryRequest
+     * @param countMode 总数统计方式
      * @param request
      * @return
      */
-    Page<PictureVO> getPictureVOPageWithCache(PictureQueryRequest pictureQueryRequest, HttpServletRequest request);
+    Page<PictureVO> getPictureVOPageWithCache(PictureQueryRequest pictureQueryRequest, PageCountModeEnum countMode,
+                                              HttpServletRequest request);
+
+    /**
+     * 分页获取图片列表
+     *
+     * @param pictureQueryRequest
+     * @param countMode 总数统计方式
+     * @return
+     */
+    Page<Picture> listPictureByPage(PictureQueryRequest pictureQueryRequest, PageCountModeEnum countMode);
 
     /**
      * 获取查询条件
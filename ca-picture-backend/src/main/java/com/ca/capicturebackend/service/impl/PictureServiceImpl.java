@@ -5,6 +5,7 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.lang.TypeReference;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
@@ -22,6 +23,16 @@ import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.exception.ThrowUtils;
 import com.ca.capicturebackend.manager.CacheManager;
 import com.ca.capicturebackend.manager.CosManager;
+import com.ca.capicturebackend.manager.OutPaintingTaskManager;
+import com.ca.capicturebackend.manager.PictureBloomFilterManager;
+import com.ca.capicturebackend.manager.PictureCountManager;
+import com.ca.capicturebackend.manager.PictureQueryStatsManager;
+import com.ca.capicturebackend.manager.SpaceQuotaManager;
+import com.ca.capicturebackend.manager.SpaceUploadStatManager;
+import com.ca.capicturebackend.manager.http.HttpResult;
+import com.ca.capicturebackend.manager.http.OutboundHttpClient;
+import com.ca.capicturebackend.manager.sharding.PictureMigrationFenceManager;
+import com.ca.capicturebackend.manager.sharding.PublicPictureRoute;
 import com.ca.capicturebackend.manager.upload.FilePictureUpload;
 import com.ca.capicturebackend.manager.upload.PictureUploadTemplate;
 import com.ca.capicturebackend.manager.upload.UrlPictureUpload;
@@ -31,6 +42,7 @@ import com.ca.capicturebackend.model.entity.Picture;
 import com.ca.capicturebackend.model.entity.Space;
 import com.ca.capicturebackend.model.entity.User;
 import com.ca.capicturebackend.model.enums.PictureReviewStatusEnum;
+import com.ca.capicturebackend.model.enums.PageCountModeEnum;
 import com.ca.capicturebackend.model.enums.CommonKeyEnum;
 import com.ca.capicturebackend.model.vo.PictureVO;
 import com.ca.capicturebackend.model.vo.UserVO;
@@ -40,6 +52,7 @@ import com.ca.capicturebackend.service.SpaceService;
 import com.ca.capicturebackend.service.UserService;
 import com.ca.capicturebackend.utils.ColorSimilarUtils;
 import com.ca.capicturebackend.utils.ColorTransfromUtils;
+import com.ca.capicturebackend.utils.PictureQueryFingerprintUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -50,6 +63,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.DigestUtils;
@@ -57,12 +71,12 @@ import org.springframework.util.DigestUtils;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import java.awt.*;
-import java.io.IOException;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -109,6 +123,30 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     @Resource
     private SpaceUserAuthManager spaceUserAuthManager;
 
+    @Resource
+    private OutPaintingTaskManager outPaintingTaskManager;
+
+    @Resource
+    private OutboundHttpClient outboundHttpClient;
+
+    @Resource
+    private SpaceQuotaManager spaceQuotaManager;
+
+    @Resource
+    private SpaceUploadStatManager spaceUploadStatManager;
+
+    @Resource
+    private PictureCountManager pictureCountManager;
+
+    @Resource
+    private PictureQueryStatsManager pictureQueryStatsManager;
+
+    @Resource
+    private PictureBloomFilterManager pictureBloomFilterManager;
+
+    @Resource
+    private PictureMigrationFenceManager pictureMigrationFenceManager;
+
     /**
      * 校验图片
      *
@@ -145,20 +183,14 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
         // 校验空间是否存在
         Long spaceId = pictureUploadRequest.getSpaceId();
+        Space space = null;
         if (spaceId != null) {
-            Space space = spaceService.getById(spaceId);
+            space = spaceService.getById(spaceId);
             ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
             // 已经改为使用注解鉴权，必须空间创建人（管理员）才能上传
 //            if (!loginUser.getId().equals(space.getUserId())) {
 //                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
 //            }
-            // 校验空间额度
-            if (space.getTotalCount() >= space.getMaxCount()) {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间条数不足");
-            }
-            if (space.getTotalSize() >= space.getMaxSize()) {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间额度不足");
-            }
         }
         Long pictureId = null;
         if (pictureUploadRequest.getId() != null) {
@@ -186,6 +218,42 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
                 }
             }
         }
+        // 校验并预占空间额度（更新图片不占用条数），上传失败时释放
+        SpaceQuotaManager.QuotaReservation quotaReservation = null;
+        if (spaceId != null) {
+            if (space == null) {
+                space = spaceService.getById(spaceId);
+                ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+            }
+            long estimatedSize = inputSource instanceof MultipartFile ? ((MultipartFile) inputSource).getSize() : 0L;
+            quotaReservation = spaceQuotaManager.reserve(space, oldPicture == null ? 1 : 0, estimatedSize);
+        }
+        PictureVO pictureVO;
+        try {
+            pictureVO = doUploadPicture(inputSource, pictureUploadRequest, loginUser, spaceId, pictureId, oldPicture);
+        } catch (RuntimeException e) {
+            if (quotaReservation != null) {
+                spaceQuotaManager.release(quotaReservation);
+            }
+            throw e;
+        }
+        if (quotaReservation != null) {
+            long oldPictureSize = oldPicture == null ? 0L : oldPicture.getPicSize();
+            spaceQuotaManager.commit(quotaReservation, oldPicture == null ? 1 : 0, pictureVO.getPicSize() - oldPictureSize);
+        }
+        // 新增图片时更新上传统计
+        if (oldPicture == null) {
+            spaceUploadStatManager.recordUpload(spaceId, loginUser.getId(), new Date());
+        }
+        pictureCountManager.invalidate(spaceId);
+        return pictureVO;
+    }
+
+    /**
+     * 上传到对象存储并入库（额度已预占）
+     */
+    private PictureVO doUploadPicture(Object inputSource, PictureUploadRequest pictureUploadRequest, User loginUser,
+                                      Long spaceId, Long pictureId, Picture oldPicture) {
         // 上传图片
         // 按照该用户id划分目录 => 按照空间划分目录
         String uploadPathPrefix;
@@ -228,33 +296,23 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             picture.setId(pictureId);
             picture.setEditTime(new Date());
         }
-        // 开启事务
-        Long finalSpaceId = spaceId;
-        Picture finalOldPicture = oldPicture;
-        transactionTemplate.execute(status -> {
-            // 插入数据
-            boolean result = this.saveOrUpdate(picture);
-            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败，数据库操作失败");
-            // oldPicture 不为空，表示更新，清理对象存储中的旧图片
-            Long oldPictureSize = 0L;
-            int oldPictureCount = 0;
-            if (finalOldPicture != null) {
-                this.clearPictureFile(finalOldPicture);
-                oldPictureSize = finalOldPicture.getPicSize();
-                oldPictureCount = 1;
-            }
-            // 如果更新的是空间内的图片，更新空间的使用额度
-            if (finalSpaceId == null) {
-                return true;
-            }
-            boolean update = spaceService.lambdaUpdate()
-                    .eq(Space::getId, finalSpaceId)
-                    .setSql("totalSize = totalSize + " + picture.getPicSize() + " - " + oldPictureSize)
-                    .setSql("totalCount = totalCount + " + 1 + " - " + oldPictureCount)
-                    .update();
-            ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "额度更新失败");
-            return true;
-        });
+        // 空间图片迁移切换期间不允许写入，在上传完成、写库之前校验，被拒绝时清理已上传的文件
+        try {
+            pictureMigrationFenceManager.checkWritable(spaceId);
+        } catch (BusinessException e) {
+            this.clearPictureFile(picture);
+            throw e;
+        }
+        // 插入数据，空间额度由 SpaceQuotaManager 记账后批量写回
+        boolean result = this.saveOrUpdate(picture);
+        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败，数据库操作失败");
+        if (pictureId == null) {
+            pictureBloomFilterManager.add(picture.getId());
+        }
+        // oldPicture 不为空，表示更新，清理对象存储中的旧图片
+        if (oldPicture != null) {
+            this.clearPictureFile(oldPicture);
+        }
         // 只有当上传公共图库的图片时，才删除主页缓存
         if (spaceId == null) {
             String homePageCacheKey = CommonKeyEnum.PICTURE_CACHE_PREFIX.key("getPictureVOPageWithCache", "");
@@ -293,6 +351,8 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
      */
     @Override
     public PictureVO getPictureVOWithCache(long id, HttpServletRequest request) {
+        // 一定不存在的图片直接拒绝，不访问缓存和数据库
+        ThrowUtils.throwIf(!pictureBloomFilterManager.mightContain(id), ErrorCode.NOT_FOUND_ERROR, "图片不存在");
         // 构建 key
         String queryCondition = String.valueOf(id);
         String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes());
@@ -375,28 +435,75 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
      * @return
      */
     @Override
-    public Page<PictureVO> getPictureVOPageWithCache(PictureQueryRequest pictureQueryRequest, HttpServletRequest request) {
-        long current = pictureQueryRequest.getCurrent();
-        long size = pictureQueryRequest.getPageSize();
-        // 构建 key
-        String queryCondition = JSONUtil.toJsonStr(pictureQueryRequest);
-        String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes());
+    public Page<PictureVO> getPictureVOPageWithCache(PictureQueryRequest pictureQueryRequest, PageCountModeEnum countMode,
+                                                     HttpServletRequest request) {
+        // 构建 key（语义相同的查询条件得到相同的指纹）
+        String hashKey = PictureQueryFingerprintUtils.fingerprint(pictureQueryRequest, true);
         String cacheKey = CommonKeyEnum.PICTURE_CACHE_PREFIX.key("getPictureVOPageWithCache", hashKey);
         String lockKey = CommonKeyEnum.PICTURE_LOCK_PREFIX.key("getPictureVOPageWithCache", hashKey);
         // 查询数据库
+        AtomicBoolean loaded = new AtomicBoolean(false);
         Page<Picture> picturePage = cacheManager.queryWithCache(
                 cacheKey,
                 lockKey,
                 new TypeReference<Page<Picture>>() {
                 },
-                () -> this.page(new Page<>(current, size), this.getQueryWrapper(pictureQueryRequest)),
+                () -> {
+                    loaded.set(true);
+                    return this.listPictureByPage(pictureQueryRequest, countMode);
+                },
                 300,
                 120,
                 TimeUnit.SECONDS
         );
+        // 记录缓存命中情况
+        pictureQueryStatsManager.record(hashKey,
+                () -> PictureQueryFingerprintUtils.canonicalize(pictureQueryRequest, true), !loaded.get());
         return this.getPictureVOPage(picturePage, request);
     }
 
+    /**
+     * 分页获取图片列表
+     *
+     * @param pictureQueryRequest
+     * @param countMode
+     * @return
+     */
+    @Override
+    public Page<Picture> listPictureByPage(PictureQueryRequest pictureQueryRequest, PageCountModeEnum countMode) {
+        // 公共图库只查询 picture，不路由到所有分表
+        if (pictureQueryRequest.isNullSpaceId()) {
+            return PublicPictureRoute.route(() -> this.doListPictureByPage(pictureQueryRequest, countMode));
+        }
+        return this.doListPictureByPage(pictureQueryRequest, countMode);
+    }
+
+    private Page<Picture> doListPictureByPage(PictureQueryRequest pictureQueryRequest, PageCountModeEnum countMode) {
+        long current = pictureQueryRequest.getCurrent();
+        long size = pictureQueryRequest.getPageSize();
+        QueryWrapper<Picture> queryWrapper = this.getQueryWrapper(pictureQueryRequest);
+        if (countMode == PageCountModeEnum.EXACT) {
+            return this.page(new Page<>(current, size), queryWrapper);
+        }
+        // 只查询当前页，总数单独获取
+        Page<Picture> picturePage = this.page(new Page<>(current, size, false), queryWrapper);
+        Long total = null;
+        if (countMode == PageCountModeEnum.ESTIMATED) {
+            total = pictureCountManager.getEstimatedCount(pictureQueryRequest);
+        }
+        if (total == null) {
+            total = pictureCountManager.getCachedCount(pictureQueryRequest, () -> {
+                // 统计总数不需要排序
+                PictureQueryRequest countQueryRequest = new PictureQueryRequest();
+                BeanUtils.copyProperties(pictureQueryRequest, countQueryRequest);
+                countQueryRequest.setSortField(null);
+                return this.count(this.getQueryWrapper(countQueryRequest));
+            });
+        }
+        picturePage.setTotal(total);
+        return picturePage;
+    }
+
     /**
      * 获取查询条件
      *
@@ -496,8 +603,10 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         BeanUtils.copyProperties(pictureReviewRequest, updatePicture);
         updatePicture.setReviewerId(loginUser.getId());
         updatePicture.setReviewTime(new Date());
+        pictureMigrationFenceManager.checkWritable(oldPicture.getSpaceId());
         boolean result = this.updateById(updatePicture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        pictureCountManager.invalidate(oldPicture.getSpaceId());
         // 删除主页缓存
         String cacheKeyPrefix = CommonKeyEnum.PICTURE_CACHE_PREFIX.key("getPictureVOPageWithCache", "");
         cacheManager.deleteCacheByPrefix(cacheKeyPrefix);
@@ -542,14 +651,13 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         }
         ThrowUtils.throwIf(count > 30, ErrorCode.PARAMS_ERROR, "一次性最多 30 条");
         // 抓取内容
-        String fetchUrl = String.format("https://cn.bing.com/images/async?q=%s&mmasync=1", searchText);
-        Document document;
-        try {
-            document = Jsoup.connect(fetchUrl).get();
-        } catch (IOException e) {
-            log.error("获取页面失败：", e);
+        String fetchUrl = String.format("https://cn.bing.com/images/async?q=%s&mmasync=1", URLUtil.encodeQuery(searchText));
+        HttpResult fetchResult = outboundHttpClient.get(fetchUrl, null);
+        if (!fetchResult.isOk()) {
+            log.error("获取页面失败，状态码：{}", fetchResult.getStatus());
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取页面失败");
         }
+        Document document = Jsoup.parse(fetchResult.getBody(), fetchUrl);
         // 解析内容
         Element div = document.getElementsByClass("dgControl").first();
         if (div == null || ObjUtil.isEmpty(div)) {
@@ -640,23 +748,17 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         ThrowUtils.throwIf(oldPicture == null, ErrorCode.NOT_FOUND_ERROR);
         // 已经改为使用注解鉴权，校验权限
         // checkPictureAuth(loginUser, oldPicture);
-        // 开启事务
-        transactionTemplate.execute(status -> {
-            // 操作数据库
-            boolean result = this.removeById(pictureId);
-            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
-            // 释放额度
-            Long spaceId = oldPicture.getSpaceId();
-            if (spaceId != null) {
-                boolean update = spaceService.lambdaUpdate()
-                        .eq(Space::getId, spaceId)
-                        .setSql("totalSize = totalSize - " + oldPicture.getPicSize())
-                        .setSql("totalCount = totalCount - 1")
-                        .update();
-                ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "额度更新失败");
-            }
-            return true;
-        });
+        // 操作数据库
+        pictureMigrationFenceManager.checkWritable(oldPicture.getSpaceId());
+        boolean result = this.removeById(pictureId);
+        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 释放额度
+        Long spaceId = oldPicture.getSpaceId();
+        if (spaceId != null) {
+            spaceQuotaManager.adjust(spaceId, -1, -oldPicture.getPicSize());
+        }
+        spaceUploadStatManager.recordDelete(Collections.singletonList(oldPicture));
+        pictureCountManager.invalidate(spaceId);
         // 删除对应图片缓存和首页缓存
         String queryCondition = String.valueOf(pictureId);
         String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes());
@@ -697,36 +799,32 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         }
         // 3.图片查询
         QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
-        queryWrapper.select("id", "userId", "picSize", "url", "originalUrl", "thumbnailUrl");
+        queryWrapper.select("id", "spaceId", "userId", "picSize", "url", "originalUrl", "thumbnailUrl", "createTime");
         queryWrapper.in("id", pictureIdList);
         if (spaceId == null) {
             queryWrapper.isNull("spaceId");
         } else {
             queryWrapper.eq("spaceId", spaceId);
         }
-        List<Picture> pictureList = this.list(queryWrapper);
+        // 公共图库只查询 picture
+        List<Picture> pictureList = spaceId == null
+                ? PublicPictureRoute.route(() -> this.list(queryWrapper))
+                : this.list(queryWrapper);
         if (pictureList == null || pictureList.isEmpty()) {
             return;
         }
-        // 开启事务
-        transactionTemplate.execute(status -> {
-            // 4.操作数据库
-            boolean result = this.removeByIds(pictureIdList);
-            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
-            // 5.释放额度
-            if (spaceId == null) {
-                return true;
-            }
+        // 4.操作数据库（只删除查到的图片，额度按实际删除的图片释放）
+        List<Long> toDeleteIdList = pictureList.stream().map(Picture::getId).collect(Collectors.toList());
+        pictureMigrationFenceManager.checkWritable(spaceId);
+        boolean result = this.removeByIds(toDeleteIdList);
+        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 5.释放额度
+        if (spaceId != null) {
             long totalPicSize = pictureList.stream().mapToLong(Picture::getPicSize).sum();
-            long totalPicCount = pictureList.size();
-            boolean update = spaceService.lambdaUpdate()
-                    .eq(Space::getId, spaceId)
-                    .setSql("totalSize = totalSize - " + totalPicSize)
-                    .setSql("totalCount = totalCount - " + totalPicCount)
-                    .update();
-            ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "额度更新失败");
-            return true;
-        });
+            spaceQuotaManager.adjust(spaceId, -pictureList.size(), -totalPicSize);
+        }
+        spaceUploadStatManager.recordDelete(pictureList);
+        pictureCountManager.invalidate(spaceId);
         for (Picture picture : pictureList) {
             // 删除对应图片缓存
             String queryCondition = String.valueOf(picture.getId());
@@ -771,8 +869,10 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 补充审核参数
         this.fillReviewParams(picture, loginUser);
         // 操作数据库
+        pictureMigrationFenceManager.checkWritable(oldPicture.getSpaceId());
         boolean result = this.updateById(picture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        pictureCountManager.invalidate(oldPicture.getSpaceId());
         // 删除对应图片缓存和首页缓存
         String queryCondition = String.valueOf(id);
         String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes());
@@ -874,7 +974,10 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         } else {
             queryWrapper.eq("spaceId", spaceId);
         }
-        List<Picture> pictureList = this.list(queryWrapper);
+        // 公共图库只查询 picture
+        List<Picture> pictureList = spaceId == null
+                ? PublicPictureRoute.route(() -> this.list(queryWrapper))
+                : this.list(queryWrapper);
         if (pictureList == null || pictureList.isEmpty()) {
             return;
         }
@@ -890,8 +993,10 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 批量重命名
         String nameRule = pictureEditByBatchRequest.getNameRule();
         fillPictureWithNameRule(pictureList, nameRule);
+        pictureMigrationFenceManager.checkWritable(spaceId);
         boolean result = this.updateBatchById(pictureList);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "批量编辑失败");
+        pictureCountManager.invalidate(spaceId);
         // 5.删除对应图片缓存
         for (Long pictureId : pictureIdList) {
             String queryCondition = String.valueOf(pictureId);
@@ -957,6 +1062,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
                 // 批量重命名
                 String nameRule = pictureEditByBatchRequest.getNameRule();
                 fillPictureWithNameRule(pictureList, nameRule);
+                pictureMigrationFenceManager.checkWritable(spaceId);
                 boolean result = this.updateBatchById(batch);
                 if (!result) {
                     throw new BusinessException(ErrorCode.OPERATION_ERROR, "批量更新图片失败");
@@ -973,6 +1079,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         }
         // 等待所有任务完成
         CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        pictureCountManager.invalidate(spaceId);
     }
 
     @Override
@@ -990,7 +1097,13 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         taskRequest.setInput(input);
         BeanUtil.copyProperties(createPictureOutPaintingTaskRequest, taskRequest);
         // 创建任务
-        return aliYunAiApi.createOutPaintingTask(taskRequest);
+        CreateOutPaintingTaskResponse response = aliYunAiApi.createOutPaintingTask(taskRequest);
+        // 交由服务端轮询任务状态，结束后推送结果
+        if (response.getOutput() != null) {
+            boolean autoSave = Boolean.TRUE.equals(createPictureOutPaintingTaskRequest.getAutoSave());
+            outPaintingTaskManager.track(response.getOutput().getTaskId(), picture, loginUser, autoSave);
+        }
+        return response;
     }
 
     /**
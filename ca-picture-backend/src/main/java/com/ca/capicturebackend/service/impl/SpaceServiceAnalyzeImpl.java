@@ -8,6 +8,9 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.exception.ThrowUtils;
+import com.ca.capicturebackend.manager.SpaceRankManager;
+import com.ca.capicturebackend.manager.SpaceUploadStatManager;
+import com.ca.capicturebackend.manager.sharding.PublicPictureRoute;
 import com.ca.capicturebackend.mapper.SpaceMapper;
 import com.ca.capicturebackend.model.dto.space.analyze.*;
 import com.ca.capicturebackend.model.entity.Picture;
@@ -21,9 +24,11 @@ import com.ca.capicturebackend.service.UserService;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -43,6 +48,12 @@ public class SpaceServiceAnalyzeImpl extends ServiceImpl<SpaceMapper, Space>
     @Resource
     private SpaceService spaceService;
 
+    @Resource
+    private SpaceRankManager spaceRankManager;
+
+    @Resource
+    private SpaceUploadStatManager spaceUploadStatManager;
+
     /**
      * 获取空间使用情况分析
      *
@@ -62,7 +73,8 @@ public class SpaceServiceAnalyzeImpl extends ServiceImpl<SpaceMapper, Space>
             queryWrapper.select("picSize");
             // 补充查询范围
             fillAnalyzeQueryWrapper(spaceUsageAnalyzeRequest, queryWrapper);
-            List<Object> pictureObjList = pictureService.getBaseMapper().selectObjs(queryWrapper);
+            List<Object> pictureObjList = queryPictures(spaceUsageAnalyzeRequest,
+                    () -> pictureService.getBaseMapper().selectObjs(queryWrapper));
             long usedSize = pictureObjList.stream().mapToLong(result -> result instanceof Long ? (Long) result : 0).sum();
             long usedCount = pictureObjList.size();
             // 封装返回结果
@@ -124,7 +136,7 @@ public class SpaceServiceAnalyzeImpl extends ServiceImpl<SpaceMapper, Space>
                 .groupBy("category");
 
         // 查询并转换结果
-        return pictureService.getBaseMapper().selectMaps(queryWrapper)
+        return queryPictures(spaceCategoryAnalyzeRequest, () -> pictureService.getBaseMapper().selectMaps(queryWrapper))
                 .stream()
                 .map(result -> {
                     String category = result.get("category") != null ? result.get("category").toString() : "未分类";
@@ -155,7 +167,7 @@ public class SpaceServiceAnalyzeImpl extends ServiceImpl<SpaceMapper, Space>
 
         // 查询所有符合条件的标签
         queryWrapper.select("tags");
-        List<String> tagsJsonList = pictureService.getBaseMapper().selectObjs(queryWrapper)
+        List<String> tagsJsonList = queryPictures(spaceTagAnalyzeRequest, () -> pictureService.getBaseMapper().selectObjs(queryWrapper))
                 .stream()
                 .filter(ObjUtil::isNotNull)
                 .map(Object::toString)
@@ -193,7 +205,7 @@ public class SpaceServiceAnalyzeImpl extends ServiceImpl<SpaceMapper, Space>
 
         // 查询所有符合条件的图片大小
         queryWrapper.select("picSize");
-        List<Long> picSizes = pictureService.getBaseMapper().selectObjs(queryWrapper)
+        List<Long> picSizes = queryPictures(spaceSizeAnalyzeRequest, () -> pictureService.getBaseMapper().selectObjs(queryWrapper))
                 .stream()
                 .map(size -> ((Number) size).longValue())
                 .collect(Collectors.toList());
@@ -218,14 +230,28 @@ public class SpaceServiceAnalyzeImpl extends ServiceImpl<SpaceMapper, Space>
         // 检查权限
         checkSpaceAnalyzeAuth(spaceUserAnalyzeRequest, loginUser);
 
-        // 构造查询条件
+        // 优先使用按天维护的上传统计
+        Long userId = spaceUserAnalyzeRequest.getUserId();
+        String timeDimension = spaceUserAnalyzeRequest.getTimeDimension();
+        ThrowUtils.throwIf(!Arrays.asList("day", "week", "month").contains(timeDimension),
+                ErrorCode.PARAMS_ERROR, "不支持的时间维度");
+        if (spaceUserAnalyzeRequest.isQueryAll() || spaceUserAnalyzeRequest.isQueryPublic()
+                || spaceUserAnalyzeRequest.getSpaceId() != null) {
+            Map<String, Long> uploadCounts = spaceUploadStatManager.getUploadCounts(spaceUserAnalyzeRequest.getSpaceId(),
+                    spaceUserAnalyzeRequest.isQueryPublic(), spaceUserAnalyzeRequest.isQueryAll(), userId, timeDimension);
+            if (uploadCounts != null) {
+                return uploadCounts.entrySet().stream()
+                        .map(entry -> new SpaceUserAnalyzeResponse(entry.getKey(), entry.getValue()))
+                        .collect(Collectors.toList());
+            }
+        }
+
+        // 统计还没有回填完成，按 SQL 统计
         QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
         fillAnalyzeQueryWrapper(spaceUserAnalyzeRequest, queryWrapper);
         // 补充用户 id 查询
-        Long userId = spaceUserAnalyzeRequest.getUserId();
         queryWrapper.eq(ObjUtil.isNotNull(userId), "userId", userId);
         // 补充分析维度：每日、每周、每月
-        String timeDimension = spaceUserAnalyzeRequest.getTimeDimension();
         switch (timeDimension) {
             case "day":
                 queryWrapper.select("DATE_FORMAT(createTime, '%Y-%m-%d') AS period", "COUNT(*) AS count");
@@ -244,7 +270,7 @@ public class SpaceServiceAnalyzeImpl extends ServiceImpl<SpaceMapper, Space>
         queryWrapper.groupBy("period").orderByAsc("period");
 
         // 查询并封装返回结果
-        return pictureService.getBaseMapper().selectMaps(queryWrapper)
+        return queryPictures(spaceUserAnalyzeRequest, () -> pictureService.getBaseMapper().selectMaps(queryWrapper))
                 .stream()
                 .map(result -> {
                     String period = result.get("period").toString();
@@ -267,12 +293,21 @@ public class SpaceServiceAnalyzeImpl extends ServiceImpl<SpaceMapper, Space>
 
         // 仅管理员可查看空间排行
         ThrowUtils.throwIf(!userService.isAdmin(loginUser), ErrorCode.NO_AUTH_ERROR, "无权查看空间排行");
+        Integer topN = spaceRankAnalyzeRequest.getTopN();
+        ThrowUtils.throwIf(topN == null || topN <= 0 || topN > 100, ErrorCode.PARAMS_ERROR, "排名数量不合法");
 
+        // 优先从实时排行中获取
+        List<Space> topSpaces = spaceRankManager.getTopSpaces(topN);
+        if (topSpaces != null) {
+            return topSpaces;
+        }
+
+        // 排行还没有建立时查询数据库
         // 构造查询条件
         QueryWrapper<Space> queryWrapper = new QueryWrapper<>();
         queryWrapper.select("id", "spaceName", "userId", "totalSize")
                 .orderByDesc("totalSize")
-                .last("LIMIT " + spaceRankAnalyzeRequest.getTopN()); // 取前 N 名
+                .last("LIMIT " + topN); // 取前 N 名
 
         // 查询结果
         return spaceService.list(queryWrapper);
@@ -299,6 +334,16 @@ public class SpaceServiceAnalyzeImpl extends ServiceImpl<SpaceMapper, Space>
         }
     }
 
+    /**
+     * 执行图片查询，公共图库只查询 picture
+     */
+    private <T> T queryPictures(SpaceAnalyzeRequest spaceAnalyzeRequest, Supplier<T> query) {
+        if (spaceAnalyzeRequest.isQueryPublic() && !spaceAnalyzeRequest.isQueryAll()) {
+            return PublicPictureRoute.route(query);
+        }
+        return query.get();
+    }
+
     /**
      * 填充查询参数
      *
@@ -9,6 +9,8 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.exception.ThrowUtils;
+import com.ca.capicturebackend.manager.SpaceQuotaManager;
+import com.ca.capicturebackend.manager.auth.SpaceUserAuthCache;
 import com.ca.capicturebackend.manager.sharding.DynamicShardingManager;
 import com.ca.capicturebackend.model.dto.space.SpaceAddRequest;
 import com.ca.capicturebackend.model.dto.space.SpaceQueryRequest;
@@ -62,10 +64,15 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
     @Resource
     private RedissonClient redissonClient;
 
-    // 数据库分表（可选）
-//    @Resource
-//    @Lazy
-//    private DynamicShardingManager dynamicShardingManager;
+    @Resource
+    private SpaceUserAuthCache spaceUserAuthCache;
+
+    @Resource
+    private SpaceQuotaManager spaceQuotaManager;
+
+    // 数据库分表（可选，picture-sharding.dynamic=true 时生效）
+    @Autowired(required = false)
+    private DynamicShardingManager dynamicShardingManager;
 
     /**
      * 创建空间
@@ -126,11 +133,13 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
                         result = spaceUserService.save(spaceUser);
                         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "创建团队成员记录失败");
                     }
-//                    // 创建分表（仅对旗舰团队空间生效，可选）
-//                    dynamicShardingManager.createSpacePictureTable(space);
                     // 返回写入数据库的 id
                     return space.getId();
                 });
+                // 创建分表（仅对旗舰团队空间生效，可选），建表语句会隐式提交，放在事务之外
+                if (newSpaceId != null && dynamicShardingManager != null) {
+                    dynamicShardingManager.createSpacePictureTable(space);
+                }
                 return Optional.ofNullable(newSpaceId).orElse(-1L);
             }
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "系统繁忙，请稍后再试");
@@ -160,6 +169,9 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
             queryWrapper.eq("spaceId", oldSpace.getId());
             spaceUserService.remove(queryWrapper);
         }
+        // 清除该空间的权限缓存和额度
+        spaceUserAuthCache.evictSpace(spaceId);
+        spaceQuotaManager.evict(spaceId);
     }
 
     /**
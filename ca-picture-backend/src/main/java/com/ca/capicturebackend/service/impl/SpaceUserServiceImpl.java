@@ -8,6 +8,7 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.exception.ThrowUtils;
+import com.ca.capicturebackend.manager.auth.SpaceUserAuthCache;
 import com.ca.capicturebackend.model.dto.spaceuser.SpaceUserAddRequest;
 import com.ca.capicturebackend.model.dto.spaceuser.SpaceUserQueryRequest;
 import com.ca.capicturebackend.model.entity.Space;
@@ -49,6 +50,9 @@ public class SpaceUserServiceImpl extends ServiceImpl<SpaceUserMapper, SpaceUser
     @Resource
     SpaceService spaceService;
 
+    @Resource
+    SpaceUserAuthCache spaceUserAuthCache;
+
     /**
      * 创建空间成员
      *
@@ -71,6 +75,8 @@ public class SpaceUserServiceImpl extends ServiceImpl<SpaceUserMapper, SpaceUser
         // 数据库操作
         boolean result = this.save(spaceUser);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 清除之前缓存的“非成员”结果
+        spaceUserAuthCache.evictSpaceRole(spaceUser.getSpaceId(), spaceUser.getUserId());
         return spaceUser.getId();
     }
 
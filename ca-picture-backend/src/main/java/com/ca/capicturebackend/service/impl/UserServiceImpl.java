@@ -11,6 +11,7 @@ import com.ca.capicturebackend.constant.UserConstant;
 import com.ca.capicturebackend.exception.BusinessException;
 import com.ca.capicturebackend.exception.ErrorCode;
 import com.ca.capicturebackend.exception.ThrowUtils;
+import com.ca.capicturebackend.manager.LoginUserCacheManager;
 import com.ca.capicturebackend.manager.auth.StpKit;
 import com.ca.capicturebackend.model.dto.user.UserQueryRequest;
 import com.ca.capicturebackend.model.entity.User;
@@ -43,6 +44,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     @Resource
     private TransactionTemplate transactionTemplate;
 
+    @Resource
+    private LoginUserCacheManager loginUserCacheManager;
+
     /**
      * 用户注册
      *
@@ -143,6 +147,20 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
             ThrowUtils.throwIf(!result, ErrorCode.SYSTEM_ERROR, "删除失败，数据库错误");
             return true;
         });
+        // 事务提交后再失效缓存，避免其他请求在提交前把旧数据重新缓存
+        loginUserCacheManager.bumpVersion(userId);
+    }
+
+    /**
+     * 根据 id 更新用户，成功后使登录用户缓存失效（修改信息、密码、角色都会经过这里）
+     */
+    @Override
+    public boolean updateById(User entity) {
+        boolean result = super.updateById(entity);
+        if (result) {
+            loginUserCacheManager.bumpVersion(entity.getId());
+        }
+        return result;
     }
 
     /**
@@ -210,9 +228,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (currentUser == null || currentUser.getId() == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
-        // 从数据库中查询（追求性能的话可以注释，直接返回上述结果）
+        // 用户信息未变化时直接使用缓存，版本号变化后才查询数据库
         Long userId = currentUser.getId();
-        currentUser = this.getById(userId);
+        currentUser = loginUserCacheManager.getUser(userId, this::getById);
         if (currentUser == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
@@ -0,0 +1,109 @@
+package com.ca.capicturebackend.utils;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.lang.hash.MurmurHash;
+import cn.hutool.core.util.StrUtil;
+import com.ca.capicturebackend.model.dto.picture.PictureQueryRequest;
+
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 工具类：图片查询条件指纹
+ * <p>
+ * 按固定的字段顺序拼接实际参与查询的条件（跳过 null 和空字符串，标签排序去重，没有排序字段时忽略排序方向），
+ * 再用 MurmurHash 计算 128 位哈希。语义相同的查询得到相同的指纹，不需要把整个请求对象序列化为 JSON。
+ * <p>
+ * 哪些条件参与查询必须与 PictureService#getQueryWrapper 一致：标签列表中的 null 和空字符串同样会生成查询条件，不能跳过。
+ */
+public class PictureQueryFingerprintUtils {
+
+    private PictureQueryFingerprintUtils() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * 计算查询条件的指纹
+     *
+     * @param pictureQueryRequest 查询条件
+     * @param includePaging       是否包含分页和排序参数（统计总数时不需要）
+     * @return 32 位十六进制字符串
+     */
+    public static String fingerprint(PictureQueryRequest pictureQueryRequest, boolean includePaging) {
+        return hash(canonicalize(pictureQueryRequest, includePaging));
+    }
+
+    /**
+     * 规范化后的查询条件，格式为 字段=长度:值; 用于计算指纹和排查问题
+     */
+    public static String canonicalize(PictureQueryRequest pictureQueryRequest, boolean includePaging) {
+        StringBuilder builder = new StringBuilder(128);
+        append(builder, "id", pictureQueryRequest.getId());
+        append(builder, "name", pictureQueryRequest.getName());
+        append(builder, "introduction", pictureQueryRequest.getIntroduction());
+        append(builder, "category", pictureQueryRequest.getCategory());
+        List<String> tags = pictureQueryRequest.getTags();
+        if (CollUtil.isNotEmpty(tags)) {
+            // 与查询条件 like "\"tag\"" 使用相同的值，null 拼接为 "null"
+            TreeSet<String> sortedTags = new TreeSet<>();
+            for (String tag : tags) {
+                sortedTags.add("\"" + tag + "\"");
+            }
+            for (String tag : sortedTags) {
+                append(builder, "tag", tag);
+            }
+        }
+        append(builder, "picSize", pictureQueryRequest.getPicSize());
+        append(builder, "picWidth", pictureQueryRequest.getPicWidth());
+        append(builder, "picHeight", pictureQueryRequest.getPicHeight());
+        append(builder, "picScale", pictureQueryRequest.getPicScale());
+        append(builder, "picFormat", pictureQueryRequest.getPicFormat());
+        append(builder, "searchText", pictureQueryRequest.getSearchText());
+        append(builder, "userId", pictureQueryRequest.getUserId());
+        append(builder, "reviewStatus", pictureQueryRequest.getReviewStatus());
+        append(builder, "reviewMessage", pictureQueryRequest.getReviewMessage());
+        append(builder, "reviewerId", pictureQueryRequest.getReviewerId());
+        append(builder, "spaceId", pictureQueryRequest.getSpaceId());
+        if (pictureQueryRequest.isNullSpaceId()) {
+            append(builder, "nullSpaceId", Boolean.TRUE);
+        }
+        append(builder, "startEditTime", pictureQueryRequest.getStartEditTime());
+        append(builder, "endEditTime", pictureQueryRequest.getEndEditTime());
+        if (includePaging) {
+            append(builder, "current", pictureQueryRequest.getCurrent());
+            append(builder, "pageSize", pictureQueryRequest.getPageSize());
+            String sortField = pictureQueryRequest.getSortField();
+            if (StrUtil.isNotEmpty(sortField)) {
+                append(builder, "sortField", sortField);
+                append(builder, "ascend", "ascend".equals(pictureQueryRequest.getSortOrder()));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String hash(String canonical) {
+        long[] hash = MurmurHash.hash128(canonical);
+        return String.format("%016x%016x", hash[0], hash[1]);
+    }
+
+    /**
+     * 追加一个条件，值带上长度前缀，避免值中的分隔符造成歧义
+     */
+    private static void append(StringBuilder builder, String field, Object value) {
+        if (value == null) {
+            return;
+        }
+        String text;
+        if (value instanceof Date) {
+            text = String.valueOf(((Date) value).getTime());
+        } else {
+            text = value.toString();
+            // 空字符串不作为查询条件
+            if (text.isEmpty()) {
+                return;
+            }
+        }
+        builder.append(field).append('=').append(text.length()).append(':').append(text).append(';');
+    }
+}
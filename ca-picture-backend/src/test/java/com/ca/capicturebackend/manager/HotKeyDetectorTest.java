@@ -0,0 +1,53 @@
+package com.ca.capicturebackend.manager;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 热点 key 探测
+ */
+public class HotKeyDetectorTest {
+
+    @Test
+    public void estimateNeverUndercounts() {
+        HotKeyDetector detector = new HotKeyDetector(3, 256);
+        for (int i = 0; i < 1000; i++) {
+            detector.increment("key-" + (i % 100));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue(detector.estimate("key-" + i) >= 10);
+        }
+        assertEquals(1000L, detector.getTotal());
+    }
+
+    @Test
+    public void incrementReturnsWindowEstimate() {
+        HotKeyDetector detector = new HotKeyDetector(3, 1024);
+        int estimate = 0;
+        for (int i = 0; i < 5; i++) {
+            estimate = detector.increment("hot");
+        }
+        assertEquals(5, estimate);
+    }
+
+    @Test
+    public void rotateDropsOldestWindow() {
+        HotKeyDetector detector = new HotKeyDetector(2, 1024);
+        detector.increment("hot");
+        detector.increment("hot");
+        detector.rotate();
+        detector.increment("hot");
+        // 两个子窗口内的访问都还在统计时长内
+        assertEquals(3, detector.estimate("hot"));
+        assertEquals(3L, detector.getTotal());
+        detector.rotate();
+        // 回到第一个子窗口，其中的旧数据被清空
+        assertEquals(1, detector.estimate("hot"));
+        assertEquals(1L, detector.getTotal());
+        detector.rotate();
+        assertEquals(0, detector.estimate("hot"));
+        assertEquals(0L, detector.getTotal());
+    }
+}
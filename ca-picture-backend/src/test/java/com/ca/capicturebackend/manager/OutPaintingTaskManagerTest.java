@@ -0,0 +1,113 @@
+package com.ca.capicturebackend.manager;
+
+import cn.hutool.json.JSONUtil;
+import com.ca.capicturebackend.api.aliyunai.AliYunAiApi;
+import com.ca.capicturebackend.api.aliyunai.model.GetOutPaintingTaskResponse;
+import com.ca.capicturebackend.model.entity.Picture;
+import com.ca.capicturebackend.model.entity.User;
+import com.ca.capicturebackend.model.enums.CommonKeyEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * AI 扩图任务状态查询（DashScope 接口使用桩对象）
+ */
+@ExtendWith(MockitoExtension.class)
+public class OutPaintingTaskManagerTest {
+
+    private static final String TASK_ID = "task-1";
+
+    private static final String TASK_KEY = CommonKeyEnum.OUT_PAINTING_TASK_PREFIX.key(TASK_ID);
+
+    @Mock
+    private AliYunAiApi aliYunAiApi;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private ScheduledExecutorService scheduledExecutor;
+
+    @InjectMocks
+    private OutPaintingTaskManager outPaintingTaskManager;
+
+    @BeforeEach
+    public void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    public void cachedStatusIsReturnedWithoutQueryingApi() {
+        when(valueOperations.get(TASK_KEY)).thenReturn(JSONUtil.toJsonStr(buildResponse("SUCCEEDED")));
+
+        GetOutPaintingTaskResponse response = outPaintingTaskManager.getTask(TASK_ID);
+
+        assertEquals("SUCCEEDED", response.getOutput().getTaskStatus());
+        verifyNoInteractions(aliYunAiApi);
+    }
+
+    @Test
+    public void runningStatusIsCachedForSecondsOnly() {
+        when(valueOperations.get(TASK_KEY)).thenReturn(null);
+        when(aliYunAiApi.getOutPaintingTask(TASK_ID)).thenReturn(buildResponse("RUNNING"));
+
+        GetOutPaintingTaskResponse response = outPaintingTaskManager.getTask(TASK_ID);
+
+        assertEquals("RUNNING", response.getOutput().getTaskStatus());
+        verify(valueOperations).set(eq(TASK_KEY), anyString(), eq(5L), eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void finishedStatusIsCachedForHours() {
+        when(valueOperations.get(TASK_KEY)).thenReturn(null);
+        when(aliYunAiApi.getOutPaintingTask(TASK_ID)).thenReturn(buildResponse("FAILED"));
+
+        outPaintingTaskManager.getTask(TASK_ID);
+
+        verify(valueOperations).set(eq(TASK_KEY), anyString(), eq(24L), eq(TimeUnit.HOURS));
+    }
+
+    @Test
+    public void trackedStatusOutlivesNextPoll() {
+        when(aliYunAiApi.getOutPaintingTask(TASK_ID)).thenReturn(buildResponse("RUNNING"));
+        ArgumentCaptor<Runnable> pollCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+        outPaintingTaskManager.track(TASK_ID, new Picture(), new User(), false);
+        // 初始状态保留到首次轮询（2 秒）之后
+        verify(valueOperations).set(eq(TASK_KEY), anyString(), eq(7000L), eq(TimeUnit.MILLISECONDS));
+        verify(scheduledExecutor).schedule(pollCaptor.capture(), eq(2000L), eq(TimeUnit.MILLISECONDS));
+
+        pollCaptor.getValue().run();
+        // 下一次轮询在 4 秒后
+        verify(valueOperations).set(eq(TASK_KEY), anyString(), eq(9000L), eq(TimeUnit.MILLISECONDS));
+        verify(scheduledExecutor).schedule(any(Runnable.class), eq(4000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    private static GetOutPaintingTaskResponse buildResponse(String taskStatus) {
+        GetOutPaintingTaskResponse response = new GetOutPaintingTaskResponse();
+        GetOutPaintingTaskResponse.Output output = new GetOutPaintingTaskResponse.Output();
+        output.setTaskId(TASK_ID);
+        output.setTaskStatus(taskStatus);
+        response.setOutput(output);
+        return response;
+    }
+}
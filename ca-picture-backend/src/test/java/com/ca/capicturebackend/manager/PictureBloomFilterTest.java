@@ -0,0 +1,55 @@
+package com.ca.capicturebackend.manager;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 图片 id 布隆过滤器
+ */
+public class PictureBloomFilterTest {
+
+    @Test
+    public void addedIdsAreAlwaysFound() {
+        PictureBloomFilterManager.BloomFilter filter = new PictureBloomFilterManager.BloomFilter(10_000L, 0.01, 20_000L);
+        for (long id = 1L; id <= 10_000L; id++) {
+            filter.put(id * 2);
+        }
+        for (long id = 1L; id <= 10_000L; id++) {
+            assertTrue(filter.mightContain(id * 2));
+        }
+    }
+
+    @Test
+    public void falsePositiveRateIsNearConfigured() {
+        PictureBloomFilterManager.BloomFilter filter = new PictureBloomFilterManager.BloomFilter(10_000L, 0.01, 20_000L);
+        for (long id = 1L; id <= 10_000L; id++) {
+            filter.put(id * 2);
+        }
+        int falsePositives = 0;
+        for (long id = 1L; id <= 10_000L; id++) {
+            if (filter.mightContain(id * 2 - 1)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "误判数过多：" + falsePositives);
+    }
+
+    @Test
+    public void idsAboveMaxIdMightExist() {
+        PictureBloomFilterManager.BloomFilter filter = new PictureBloomFilterManager.BloomFilter(1_000L, 0.01, 100L);
+        // 重建之后新增的 id 没有收到通知时也不能判定为不存在
+        assertTrue(filter.mightContain(101L));
+        assertTrue(filter.mightContain(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void putReportsCapacityOnce() {
+        PictureBloomFilterManager.BloomFilter filter = new PictureBloomFilterManager.BloomFilter(3L, 0.01, 100L);
+        assertFalse(filter.put(1L));
+        assertFalse(filter.put(2L));
+        assertFalse(filter.put(3L));
+        assertTrue(filter.put(4L));
+        assertFalse(filter.put(5L));
+    }
+}
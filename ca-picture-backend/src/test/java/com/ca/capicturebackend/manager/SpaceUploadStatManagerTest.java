@@ -0,0 +1,46 @@
+package com.ca.capicturebackend.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 上传统计周期，期望值为 MySQL DATE_FORMAT 的结果
+ */
+public class SpaceUploadStatManagerTest {
+
+    @Test
+    public void weekMatchesMysqlWeekFormat() {
+        // 1 月 1 日为周一，所在周为第 1 周
+        assertEquals("2024-01", week("2024-01-01"));
+        assertEquals("2024-01", week("2024-01-07"));
+        assertEquals("2024-02", week("2024-01-08"));
+        assertEquals("2024-53", week("2024-12-31"));
+        // 1 月 1 日为周三，所在周有 5 天属于当年，为第 1 周
+        assertEquals("2020-01", week("2020-01-01"));
+        assertEquals("2020-02", week("2020-01-06"));
+        // 1 月 1 日为周五，所在周只有 3 天属于当年，为第 0 周
+        assertEquals("2021-00", week("2021-01-01"));
+        assertEquals("2021-00", week("2021-01-03"));
+        assertEquals("2021-01", week("2021-01-04"));
+        // 1 月 1 日为周日
+        assertEquals("2023-00", week("2023-01-01"));
+        assertEquals("2023-01", week("2023-01-02"));
+        assertEquals("2023-52", week("2023-12-31"));
+    }
+
+    @Test
+    public void dayAndMonth() {
+        LocalDate day = LocalDate.parse("2025-03-09");
+        assertEquals("2025-03-09", SpaceUploadStatManager.toPeriod(day, "day"));
+        assertEquals("2025-03", SpaceUploadStatManager.toPeriod(day, "month"));
+        assertThrows(IllegalArgumentException.class, () -> SpaceUploadStatManager.toPeriod(day, "year"));
+    }
+
+    private static String week(String day) {
+        return SpaceUploadStatManager.toPeriod(LocalDate.parse(day), "week");
+    }
+}
@@ -0,0 +1,67 @@
+package com.ca.capicturebackend.manager.sharding;
+
+import com.google.common.collect.Range;
+import org.apache.shardingsphere.sharding.api.sharding.standard.PreciseShardingValue;
+import org.apache.shardingsphere.sharding.api.sharding.standard.RangeShardingValue;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 图片分表算法
+ */
+public class PictureShardingAlgorithmTest {
+
+    private static final String LOGIC_TABLE_NAME = "picture";
+
+    private final PictureShardingAlgorithm algorithm = new PictureShardingAlgorithm();
+
+    @Test
+    public void preciseRoutesToSpaceTableFirst() {
+        long spaceId = 100L;
+        List<String> targets = Arrays.asList("picture", "picture_100",
+                PictureShardingAlgorithm.getBucketTableName(LOGIC_TABLE_NAME, spaceId));
+        assertEquals("picture_100", algorithm.doSharding(targets, precise(spaceId)));
+    }
+
+    @Test
+    public void preciseRoutesToBucketTableWhenRegistered() {
+        long spaceId = 100L;
+        String bucketTableName = PictureShardingAlgorithm.getBucketTableName(LOGIC_TABLE_NAME, spaceId);
+        List<String> targets = Arrays.asList("picture", bucketTableName);
+        assertEquals(bucketTableName, algorithm.doSharding(targets, precise(spaceId)));
+    }
+
+    @Test
+    public void preciseFallsBackToLogicTable() {
+        List<String> targets = Arrays.asList("picture", "picture_200");
+        assertEquals("picture", algorithm.doSharding(targets, precise(100L)));
+        assertEquals("picture", algorithm.doSharding(targets, precise(null)));
+    }
+
+    @Test
+    public void rangeKeepsSharedTablesAndSpaceTablesInRange() {
+        List<String> targets = Arrays.asList("picture", "picture_b07", "picture_100", "picture_200", "picture_300");
+        Collection<String> result = algorithm.doSharding(targets,
+                new RangeShardingValue<>(LOGIC_TABLE_NAME, "spaceId", null, Range.closed(150L, 250L)));
+        assertEquals(Arrays.asList("picture", "picture_b07", "picture_200"), Arrays.asList(result.toArray()));
+    }
+
+    @Test
+    public void bucketIsStableAndInRange() {
+        for (long spaceId = 1L; spaceId < 10_000L; spaceId++) {
+            int bucket = PictureShardingAlgorithm.getBucket(spaceId);
+            assertTrue(bucket >= 0 && bucket < PictureShardingAlgorithm.BUCKET_COUNT);
+            assertEquals(bucket, PictureShardingAlgorithm.getBucket(spaceId));
+        }
+        assertEquals("picture_b05", PictureShardingAlgorithm.getBucketTableNameByIndex(LOGIC_TABLE_NAME, 5));
+    }
+
+    private static PreciseShardingValue<Long> precise(Long spaceId) {
+        return new PreciseShardingValue<>(LOGIC_TABLE_NAME, "spaceId", null, spaceId);
+    }
+}
@@ -0,0 +1,210 @@
+package com.ca.capicturebackend.manager.sharding;
+
+import org.apache.shardingsphere.driver.api.yaml.YamlShardingSphereDataSourceFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分表后的跨表查询（H2 内存库 + ShardingSphere-JDBC，使用与 application.yml 相同的分片规则）
+ * <p>
+ * picture 存放公共图库和未分表的空间，picture_100 为旗舰版空间的独立分表，另有一个分桶表存放空间 200，
+ * 校验各种 spaceId 条件的路由以及 ShardingSphere 归并后的排序、分页、聚合结果。
+ * ShardingSphere 按 PUBLIC 模式和原始大小写读取 H2 的表结构，所以建表时表名、列名加引号，并开启标识符大小写不敏感。
+ */
+public class PictureShardingScatterGatherTest {
+
+    private static final String JDBC_URL = "jdbc:h2:mem:picture_sharding;DB_CLOSE_DELAY=-1;MODE=MySQL;CASE_INSENSITIVE_IDENTIFIERS=TRUE";
+
+    private static final long FLAGSHIP_SPACE_ID = 100L;
+
+    private static final long BUCKET_SPACE_ID = 200L;
+
+    // 没有分表、所在分桶也没有注册的空间，图片仍在 picture 中
+    private static final long PLAIN_SPACE_ID = 300L;
+
+    private static final String BUCKET_TABLE_NAME = PictureShardingAlgorithm.getBucketTableName("picture", BUCKET_SPACE_ID);
+
+    // id -> {spaceId, picSize}，createTime 按 id 的顺序错开，分散在各个表中
+    private static final Map<Long, Long[]> PICTURES = new LinkedHashMap<>();
+
+    private static DataSource shardingDataSource;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        assertNotEquals(BUCKET_TABLE_NAME, PictureShardingAlgorithm.getBucketTableName("picture", PLAIN_SPACE_ID));
+        PICTURES.put(1L, new Long[]{null, 10L});
+        PICTURES.put(2L, new Long[]{null, 20L});
+        PICTURES.put(3L, new Long[]{PLAIN_SPACE_ID, 30L});
+        PICTURES.put(4L, new Long[]{FLAGSHIP_SPACE_ID, 40L});
+        PICTURES.put(5L, new Long[]{BUCKET_SPACE_ID, 50L});
+        PICTURES.put(6L, new Long[]{FLAGSHIP_SPACE_ID, 60L});
+        PICTURES.put(7L, new Long[]{null, 70L});
+        PICTURES.put(8L, new Long[]{BUCKET_SPACE_ID, 80L});
+        PICTURES.put(9L, new Long[]{PLAIN_SPACE_ID, 90L});
+        PICTURES.put(10L, new Long[]{FLAGSHIP_SPACE_ID, 100L});
+
+        try (Connection connection = h2DataSource().getConnection(); Statement statement = connection.createStatement()) {
+            for (String tableName : Arrays.asList("picture", "picture_" + FLAGSHIP_SPACE_ID, BUCKET_TABLE_NAME)) {
+                statement.execute("CREATE TABLE \"" + tableName
+                        + "\" (\"id\" BIGINT PRIMARY KEY, \"spaceId\" BIGINT, \"picSize\" BIGINT, \"createTime\" TIMESTAMP)");
+            }
+            for (Map.Entry<Long, Long[]> entry : PICTURES.entrySet()) {
+                Long spaceId = entry.getValue()[0];
+                String tableName = spaceId == null || spaceId == PLAIN_SPACE_ID ? "picture"
+                        : (spaceId == FLAGSHIP_SPACE_ID ? "picture_" + FLAGSHIP_SPACE_ID : BUCKET_TABLE_NAME);
+                statement.execute(String.format("INSERT INTO %s VALUES (%d, %s, %d, TIMESTAMP '2025-01-01 00:00:00' + INTERVAL '%d' MINUTE)",
+                        tableName, entry.getKey(), spaceId, entry.getValue()[1], entry.getKey()));
+            }
+        }
+        String yaml = "databaseName: logic_db\n"
+                + "dataSources:\n"
+                + "  ca_picture_rw:\n"
+                + "    dataSourceClassName: com.zaxxer.hikari.HikariDataSource\n"
+                + "    jdbcUrl: " + JDBC_URL + "\n"
+                + "    username: sa\n"
+                + "    password: \"\"\n"
+                + "rules:\n"
+                + "- !SHARDING\n"
+                + "  tables:\n"
+                + "    picture:\n"
+                + "      actualDataNodes: ca_picture_rw.picture,ca_picture_rw.picture_" + FLAGSHIP_SPACE_ID
+                + ",ca_picture_rw." + BUCKET_TABLE_NAME + "\n"
+                + "      tableStrategy:\n"
+                + "        standard:\n"
+                + "          shardingColumn: spaceId\n"
+                + "          shardingAlgorithmName: picture_sharding_algorithm\n"
+                + "    picture_public:\n"
+                + "      actualDataNodes: ca_picture_rw.picture\n"
+                + "  shardingAlgorithms:\n"
+                + "    picture_sharding_algorithm:\n"
+                + "      type: CLASS_BASED\n"
+                + "      props:\n"
+                + "        strategy: standard\n"
+                + "        algorithmClassName: " + PictureShardingAlgorithm.class.getName() + "\n";
+        shardingDataSource = YamlShardingSphereDataSourceFactory.createDataSource(yaml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterAll
+    public static void tearDown() throws Exception {
+        if (shardingDataSource instanceof AutoCloseable) {
+            ((AutoCloseable) shardingDataSource).close();
+        }
+        executeOnH2("DROP ALL OBJECTS");
+    }
+
+    @Test
+    public void pageAcrossAllTablesIsMergedInOrder() throws SQLException {
+        // 按创建时间倒序的第 2 页（每页 3 条）：id 7, 6, 5
+        assertEquals(Arrays.asList(7L, 6L, 5L),
+                queryIds("SELECT id FROM picture ORDER BY createTime DESC LIMIT 3, 3"));
+        assertEquals(Arrays.asList(10L, 9L, 8L, 7L, 6L, 5L, 4L, 3L, 2L, 1L),
+                queryIds("SELECT id FROM picture ORDER BY createTime DESC"));
+    }
+
+    @Test
+    public void aggregatesAcrossAllTables() throws SQLException {
+        try (Connection connection = shardingDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*), SUM(picSize) FROM picture")) {
+            assertTrue(resultSet.next());
+            assertEquals(10L, resultSet.getLong(1));
+            assertEquals(550L, resultSet.getLong(2));
+        }
+        Map<Long, Long> counts = new LinkedHashMap<>();
+        try (Connection connection = shardingDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT spaceId, COUNT(*) FROM picture WHERE spaceId IS NOT NULL GROUP BY spaceId ORDER BY spaceId")) {
+            while (resultSet.next()) {
+                counts.put(resultSet.getLong(1), resultSet.getLong(2));
+            }
+        }
+        Map<Long, Long> expected = new LinkedHashMap<>();
+        expected.put(FLAGSHIP_SPACE_ID, 3L);
+        expected.put(BUCKET_SPACE_ID, 2L);
+        expected.put(PLAIN_SPACE_ID, 2L);
+        assertEquals(expected, counts);
+    }
+
+    @Test
+    public void preciseAndMultiValueConditions() throws SQLException {
+        assertEquals(Arrays.asList(4L, 6L, 10L), queryIds("SELECT id FROM picture WHERE spaceId = ? ORDER BY id", FLAGSHIP_SPACE_ID));
+        assertEquals(Arrays.asList(5L, 8L), queryIds("SELECT id FROM picture WHERE spaceId = ? ORDER BY id", BUCKET_SPACE_ID));
+        assertEquals(Arrays.asList(3L, 9L), queryIds("SELECT id FROM picture WHERE spaceId = ? ORDER BY id", PLAIN_SPACE_ID));
+        assertEquals(Arrays.asList(3L, 4L, 5L, 6L, 8L, 9L, 10L),
+                queryIds("SELECT id FROM picture WHERE spaceId IN (?, ?, ?) ORDER BY id",
+                        FLAGSHIP_SPACE_ID, BUCKET_SPACE_ID, PLAIN_SPACE_ID));
+    }
+
+    @Test
+    public void rangeConditions() throws SQLException {
+        assertEquals(Arrays.asList(4L, 6L, 10L),
+                queryIds("SELECT id FROM picture WHERE spaceId BETWEEN ? AND ? ORDER BY id", 50L, 150L));
+        assertEquals(Arrays.asList(3L, 5L, 8L, 9L),
+                queryIds("SELECT id FROM picture WHERE spaceId > ? ORDER BY id", FLAGSHIP_SPACE_ID));
+    }
+
+    @Test
+    public void publicGalleryRoutesOnlyToPicture() throws SQLException {
+        assertEquals(Arrays.asList(7L, 2L, 1L),
+                queryIds("SELECT id FROM picture_public WHERE spaceId IS NULL ORDER BY createTime DESC"));
+        // 分表中混入一条 spaceId 为空的数据：picture 上的 IS NULL 条件不参与分片，会查询全部分表，picture_public 只查询 picture
+        executeOnH2(String.format("INSERT INTO \"%s\" VALUES (11, NULL, 110, TIMESTAMP '2025-01-01 00:11:00')", BUCKET_TABLE_NAME));
+        try {
+            assertEquals(Arrays.asList(11L, 7L, 2L, 1L),
+                    queryIds("SELECT id FROM picture WHERE spaceId IS NULL ORDER BY createTime DESC"));
+            assertEquals(Arrays.asList(7L, 2L, 1L),
+                    queryIds("SELECT id FROM picture_public WHERE spaceId IS NULL ORDER BY createTime DESC"));
+            try (Connection connection = shardingDataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM picture_public WHERE spaceId IS NULL")) {
+                assertTrue(resultSet.next());
+                assertEquals(3L, resultSet.getLong(1));
+            }
+        } finally {
+            executeOnH2(String.format("DELETE FROM \"%s\" WHERE id = 11", BUCKET_TABLE_NAME));
+        }
+    }
+
+    private static void executeOnH2(String sql) throws SQLException {
+        try (Connection connection = h2DataSource().getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static DataSource h2DataSource() {
+        JdbcDataSource h2DataSource = new JdbcDataSource();
+        h2DataSource.setURL(JDBC_URL);
+        h2DataSource.setUser("sa");
+        return h2DataSource;
+    }
+
+    private static List<Long> queryIds(String sql, Object... params) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (Connection connection = shardingDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+}
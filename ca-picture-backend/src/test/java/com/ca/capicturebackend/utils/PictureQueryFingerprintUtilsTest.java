@@ -0,0 +1,81 @@
+package com.ca.capicturebackend.utils;
+
+import com.ca.capicturebackend.model.dto.picture.PictureQueryRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * 图片查询条件指纹
+ */
+public class PictureQueryFingerprintUtilsTest {
+
+    @Test
+    public void sameConditionsHaveSameFingerprint() {
+        PictureQueryRequest first = new PictureQueryRequest();
+        first.setTags(Arrays.asList("cat", "dog", "cat"));
+        first.setName("");
+        PictureQueryRequest second = new PictureQueryRequest();
+        second.setTags(Arrays.asList("dog", "cat"));
+        assertEquals(PictureQueryFingerprintUtils.fingerprint(first, true),
+                PictureQueryFingerprintUtils.fingerprint(second, true));
+    }
+
+    @Test
+    public void nullAndEmptyTagsAreConditions() {
+        PictureQueryRequest noTags = new PictureQueryRequest();
+        PictureQueryRequest emptyTag = new PictureQueryRequest();
+        emptyTag.setTags(Collections.singletonList(""));
+        PictureQueryRequest nullTag = new PictureQueryRequest();
+        nullTag.setTags(Collections.singletonList(null));
+        String noTagsFingerprint = PictureQueryFingerprintUtils.fingerprint(noTags, true);
+        assertNotEquals(noTagsFingerprint, PictureQueryFingerprintUtils.fingerprint(emptyTag, true));
+        assertNotEquals(noTagsFingerprint, PictureQueryFingerprintUtils.fingerprint(nullTag, true));
+        // getQueryWrapper 中 null 拼接为 "null"，两者是同一个查询条件
+        PictureQueryRequest nullTextTag = new PictureQueryRequest();
+        nullTextTag.setTags(Collections.singletonList("null"));
+        assertEquals(PictureQueryFingerprintUtils.fingerprint(nullTag, true),
+                PictureQueryFingerprintUtils.fingerprint(nullTextTag, true));
+    }
+
+    @Test
+    public void pagingOnlyCountsWhenIncluded() {
+        PictureQueryRequest first = new PictureQueryRequest();
+        first.setCurrent(1);
+        PictureQueryRequest second = new PictureQueryRequest();
+        second.setCurrent(2);
+        assertEquals(PictureQueryFingerprintUtils.fingerprint(first, false),
+                PictureQueryFingerprintUtils.fingerprint(second, false));
+        assertNotEquals(PictureQueryFingerprintUtils.fingerprint(first, true),
+                PictureQueryFingerprintUtils.fingerprint(second, true));
+    }
+
+    @Test
+    public void sortOrderIgnoredWithoutSortField() {
+        PictureQueryRequest first = new PictureQueryRequest();
+        first.setSortOrder("ascend");
+        PictureQueryRequest second = new PictureQueryRequest();
+        second.setSortOrder("descend");
+        assertEquals(PictureQueryFingerprintUtils.fingerprint(first, true),
+                PictureQueryFingerprintUtils.fingerprint(second, true));
+        first.setSortField("createTime");
+        second.setSortField("createTime");
+        assertNotEquals(PictureQueryFingerprintUtils.fingerprint(first, true),
+                PictureQueryFingerprintUtils.fingerprint(second, true));
+    }
+
+    @Test
+    public void valuesCannotShiftBetweenFields() {
+        PictureQueryRequest first = new PictureQueryRequest();
+        first.setName("a;introduction=1:b");
+        PictureQueryRequest second = new PictureQueryRequest();
+        second.setName("a");
+        second.setIntroduction("b");
+        assertNotEquals(PictureQueryFingerprintUtils.fingerprint(first, true),
+                PictureQueryFingerprintUtils.fingerprint(second, true));
+    }
+}